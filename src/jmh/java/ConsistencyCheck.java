@@ -0,0 +1,367 @@
+import ch.qos.logback.classic.Level;
+import org.cloudsimplus.allocationpolicies.VmAllocationPolicy;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.util.Log;
+import org.cloudsimplus.vms.Vm;
+import org.cloudsimplus.vms.VmSimple;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Deterministic checks of the invariants the optimized paths promise, for runs without
+ * a test suite: {@code java -cp target/vm-placement-1.0-benchmarks.jar ConsistencyCheck},
+ * with {@code --add-modules jdk.incubator.vector} to include the vector engine.
+ *
+ * <p>It replays one seeded sequence of placements and removals against the scan, the
+ * host index and the scalar and vector score arrays, and requires every engine to pick
+ * the same host each time. It round-trips experiments through a {@link RunLog}, including
+ * a torn and a corrupted tail, and checks that every {@link LatencyHistogram} bucket holds
+ * its values within one sub-bucket width. Each check prints one line; any failure ends
+ * the run with an exception listing them.</p>
+ */
+public final class ConsistencyCheck {
+
+    private static final long SEED = 7L;
+    private static final int PLACEMENT_STEPS = 1_500;
+    private static final String MIXED_FLEET = "STANDARD:2,HP_PROLIANT_ML110_G5:1,IBM_X3550_M3:1";
+
+    private final List<String> failures = new ArrayList<>();
+
+    private ConsistencyCheck() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        // Filling the fixture fleets logs an error for every host that runs out of PEs or bandwidth.
+        Log.setLevel(Level.OFF);
+        final ConsistencyCheck check = new ConsistencyCheck();
+        check.placementEngines();
+        check.runLog();
+        check.latencyHistogram();
+        if (!check.failures.isEmpty()) {
+            throw new IllegalStateException(check.failures.size() + " consistency checks failed:\n"
+                    + String.join("\n", check.failures));
+        }
+        System.out.println("Consistency | all checks passed");
+    }
+
+    private void placementEngines() {
+        final List<String> engines = new ArrayList<>(List.of("SCAN", "INDEXED", "SCALAR"));
+        if (HostScoreArrays.VECTOR_API_AVAILABLE) {
+            engines.add("VECTOR");
+        } else {
+            System.out.println("Consistency | VECTOR skipped, start the JVM with --add-modules jdk.incubator.vector");
+        }
+
+        for (String policyName : List.of("ENERGY_AWARE", "CIAVMP")) {
+            for (String fleet : List.of("STANDARD", MIXED_FLEET)) {
+                for (int hostCount : new int[]{300, 3_000}) {
+                    for (double fill : new double[]{0.0, 0.5, 0.9}) {
+                        for (int zones : new int[]{1, 4}) {
+                            comparePlacements(policyName, fleet, hostCount, fill, zones, engines);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Places and removes the same VMs on one fleet per engine, asking every engine for a
+     * host at each step before any of them changes.
+     */
+    private void comparePlacements(
+            final String policyName,
+            final String fleet,
+            final int hostCount,
+            final double fill,
+            final int zones,
+            final List<String> engines) {
+        final String label = String.format(
+                "placement %s %s %d hosts fill %.1f %d zones",
+                policyName,
+                fleet.equals("STANDARD") ? "STANDARD" : "mixed",
+                hostCount,
+                fill,
+                zones
+        );
+        final List<VmAllocationPolicy> policies = new ArrayList<>();
+        final List<List<Vm>> placed = new ArrayList<>();
+        for (String engine : engines) {
+            policies.add(PlacementFixtures.scoringPolicy(policyName, engine, hostCount, fill, zones, fleet));
+            placed.add(new ArrayList<>());
+        }
+
+        final Random random = new Random(SEED);
+        int decisions = 0;
+        for (int step = 0; step < PLACEMENT_STEPS; step++) {
+            if (!placed.get(0).isEmpty() && random.nextInt(10) < 3) {
+                final int victim = random.nextInt(placed.get(0).size());
+                for (int e = 0; e < engines.size(); e++) {
+                    policies.get(e).deallocateHostForVm(placed.get(e).remove(victim));
+                }
+                continue;
+            }
+
+            final int pes = 1 + random.nextInt(4);
+            final long ram = 512L << random.nextInt(3);
+            final Vm[] vms = new Vm[engines.size()];
+            final Optional<Host>[] chosen = newOptionalArray(engines.size());
+            for (int e = 0; e < engines.size(); e++) {
+                vms[e] = new VmSimple(1000, pes);
+                vms[e].setRam(ram).setBw(1000).setSize(10000);
+                chosen[e] = policies.get(e).findHostForVm(vms[e]);
+            }
+            decisions++;
+
+            final long expected = chosen[0].map(Host::getId).orElse(-1L);
+            for (int e = 1; e < engines.size(); e++) {
+                final long actual = chosen[e].map(Host::getId).orElse(-1L);
+                if (actual != expected) {
+                    fail(label, String.format(
+                            "step %d: %s chose host %d, %s host %d",
+                            step,
+                            engines.get(0),
+                            expected,
+                            engines.get(e),
+                            actual
+                    ));
+                    return;
+                }
+            }
+            if (expected >= 0) {
+                for (int e = 0; e < engines.size(); e++) {
+                    if (!policies.get(e).allocateHostForVm(vms[e], chosen[e].get()).fully()) {
+                        fail(label, "step " + step + ": " + engines.get(e) + " could not allocate its chosen host");
+                        return;
+                    }
+                    placed.get(e).add(vms[e]);
+                }
+            }
+        }
+        pass(label, String.format("%s agree on %d decisions", String.join("/", engines), decisions));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Optional<Host>[] newOptionalArray(final int length) {
+        return new Optional[length];
+    }
+
+    private void runLog() throws IOException {
+        final Path directory = Files.createTempDirectory("consistency-run-log");
+        final Path file = directory.resolve("run_log.bin");
+        final long configHash = RunLog.configHash("consistency");
+        final List<byte[]> written = new ArrayList<>();
+        try {
+            try (RunLog log = RunLog.open(file, configHash, false)) {
+                for (int run = 1; run <= 3; run++) {
+                    written.add(appendExperiment(log, run));
+                }
+            }
+            expectReplay("run log round trip", file, configHash, written);
+            expectReplay("run log other configuration", file, RunLog.configHash("other"), List.of());
+
+            // A crash mid-batch leaves part of a record: replay stops before it and cuts it off.
+            final long intact = Files.size(file);
+            try (RunLog log = RunLog.open(file, configHash, true)) {
+                appendExperiment(log, 4);
+            }
+            truncate(file, Files.size(file) - 5);
+            expectReplay("run log torn tail", file, configHash, written);
+            if (Files.size(file) != intact) {
+                fail("run log torn tail", "file is " + Files.size(file) + " bytes, expected " + intact);
+            }
+
+            // A complete record whose payload no longer matches its checksum is dropped the same way.
+            try (RunLog log = RunLog.open(file, configHash, true)) {
+                appendExperiment(log, 4);
+            }
+            flipByte(file, intact + 20);
+            expectReplay("run log corrupted tail", file, configHash, written);
+
+            try (RunLog log = RunLog.open(file, configHash, true)) {
+                written.add(appendExperiment(log, 4));
+            }
+            expectReplay("run log append after recovery", file, configHash, written);
+
+            RunLog.open(file, configHash, false).close();
+            expectReplay("run log fresh campaign", file, configHash, List.of());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Appends one experiment, with placement stats on odd runs only, and returns its encoding.
+     */
+    private static byte[] appendExperiment(final RunLog log, final int run) throws IOException {
+        final ResultsLogger.EvaluationMetrics metrics = new ResultsLogger.EvaluationMetrics(
+                "2026-01-01T00:00:0" + run,
+                run,
+                run % 2 == 0 ? "ENERGY_AWARE" : "CIAVMP",
+                100,
+                90 + run,
+                90.0 + run,
+                14.3 * run,
+                14.4 * run,
+                0.0249 * run,
+                0.0069 * run,
+                run,
+                1.5 * run,
+                run * 2L,
+                0.0001 * run,
+                10.0 * run
+        );
+        PlacementStats stats = null;
+        if (run % 2 == 1) {
+            stats = new PlacementStats();
+            for (int decision = 0; decision < 50 * run; decision++) {
+                stats.recordDecision(1_000L * decision + run);
+                stats.addHostsExamined(decision % 7);
+                stats.recordScoreLookup(decision % 3 == 0);
+            }
+        }
+        log.append(metrics, 10 * run, stats);
+        log.sync();
+        return encode(metrics, 10 * run, stats);
+    }
+
+    private static byte[] encode(
+            final ResultsLogger.EvaluationMetrics metrics,
+            final int hostsUsed,
+            final PlacementStats stats) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        metrics.writeTo(out);
+        out.writeInt(hostsUsed);
+        out.writeBoolean(stats != null);
+        if (stats != null) {
+            stats.writeTo(out);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void expectReplay(
+            final String label,
+            final Path file,
+            final long configHash,
+            final List<byte[]> expected) throws IOException {
+        final List<RunLog.Entry> replayed;
+        try (RunLog log = RunLog.open(file, configHash, true)) {
+            replayed = log.getReplayed();
+        }
+        if (replayed.size() != expected.size()) {
+            fail(label, "replayed " + replayed.size() + " experiments, expected " + expected.size());
+            return;
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            final RunLog.Entry entry = replayed.get(i);
+            if (!Arrays.equals(encode(entry.metrics(), entry.hostsUsed(), entry.placementStats()), expected.get(i))) {
+                fail(label, "experiment " + (i + 1) + " differs from the one appended");
+                return;
+            }
+        }
+        pass(label, "replayed " + expected.size() + " experiments as appended");
+    }
+
+    private static void truncate(final Path file, final long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static void flipByte(final Path file, final long position) throws IOException {
+        final byte[] content = Files.readAllBytes(file);
+        content[(int) position] ^= 0x5A;
+        Files.write(file, content);
+    }
+
+    /**
+     * Every value must land in a bucket whose upper bound is at least the value and less than
+     * one sub-bucket width (1/16 of its power of two) above it, exact below 16 ns, with bounds
+     * non-decreasing in the value.
+     */
+    private void latencyHistogram() throws IOException {
+        final List<Long> values = new ArrayList<>();
+        for (long value = 0; value <= 4_096; value++) {
+            values.add(value);
+        }
+        for (int bit = 12; bit < 63; bit++) {
+            values.add((1L << bit) - 1);
+            values.add(1L << bit);
+            values.add((1L << bit) + 1);
+        }
+        final Random random = new Random(SEED);
+        for (int i = 0; i < 10_000; i++) {
+            values.add((random.nextLong() >>> 1) >>> random.nextInt(63));
+        }
+        values.add(Long.MAX_VALUE);
+        values.sort(null);
+
+        long previousBound = 0L;
+        for (long value : values) {
+            final long bound = upperBound(value);
+            final long width = value < 16 ? 1L : Long.highestOneBit(value) >>> 4;
+            if (bound < value || bound - value >= width || bound < previousBound) {
+                fail("latency histogram bounds", "value " + value + " has bucket upper bound " + bound);
+                return;
+            }
+            previousBound = bound;
+        }
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5L);
+        for (long value : values) {
+            histogram.record(value % 10_000_000L);
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        histogram.writeTo(new DataOutputStream(bytes));
+        final LatencyHistogram copy = new LatencyHistogram();
+        copy.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        for (double percentile : new double[]{0.0, 1.0, 50.0, 99.0, 99.9, 100.0}) {
+            if (copy.percentileNanos(percentile) != histogram.percentileNanos(percentile)) {
+                fail("latency histogram round trip", "p" + percentile + " changed");
+                return;
+            }
+        }
+        if (copy.count() != histogram.count() || copy.meanNanos() != histogram.meanNanos()) {
+            fail("latency histogram round trip", "totals changed");
+            return;
+        }
+        pass("latency histogram bounds", values.size() + " values within one sub-bucket of their bound");
+        pass("latency histogram round trip", histogram.count() + " values, percentiles unchanged");
+    }
+
+    /**
+     * Upper bound of the bucket holding {@code value}: the median of it and a larger value.
+     */
+    private static long upperBound(final long value) {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        histogram.record(Long.MAX_VALUE);
+        return histogram.percentileNanos(50.0);
+    }
+
+    private void pass(final String label, final String detail) {
+        System.out.println("Consistency | " + label + " | ok | " + detail);
+    }
+
+    private void fail(final String label, final String detail) {
+        System.out.println("Consistency | " + label + " | FAILED | " + detail);
+        failures.add(label + ": " + detail);
+    }
+}
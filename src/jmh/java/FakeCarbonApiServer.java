@@ -0,0 +1,202 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local stand-in for the Electricity Maps {@code carbon-intensity/latest} endpoint, so the
+ * real-time provider's fetch path can be benchmarked without network access or an API key.
+ *
+ * <p>Every zone gets a fixed intensity derived from its name. Each request waits
+ * {@code latencyMillis} plus a uniform jitter of up to {@code jitterMillis}. Then it is
+ * answered with 429 if the server's own token bucket is empty, 503 with probability
+ * {@code errorRate}, and otherwise 200 with a body shaped like the real one. Randomness is
+ * seeded, so a benchmark sees the same sequence of errors every run.</p>
+ *
+ * <p>Run {@link #main(String[])} to serve on a fixed port for manual runs of the simulator;
+ * it prints the value to use as CARBON_API_URL_TEMPLATE.</p>
+ */
+public final class FakeCarbonApiServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final TokenBucket throttle;
+    private final Random random;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    private FakeCarbonApiServer(
+            final HttpServer server,
+            final long latencyMillis,
+            final long jitterMillis,
+            final double errorRate,
+            final double throttlePerSecond,
+            final long seed) {
+        this.server = server;
+        this.executor = Executors.newCachedThreadPool(task -> {
+            final Thread thread = new Thread(task, "fake-carbon-api");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.errorRate = errorRate;
+        this.throttle = throttlePerSecond > 0.0
+                ? new TokenBucket(throttlePerSecond, (int) Math.max(1.0, Math.ceil(throttlePerSecond)))
+                : null;
+        this.random = new Random(seed);
+        server.setExecutor(executor);
+        server.createContext("/v3/carbon-intensity/latest", this::handle);
+    }
+
+    /**
+     * Starts a server on the loopback interface.
+     *
+     * @param port              port to listen on, 0 for any free port
+     * @param throttlePerSecond requests per second served before answering 429, 0 for no limit
+     */
+    public static FakeCarbonApiServer start(
+            final int port,
+            final long latencyMillis,
+            final long jitterMillis,
+            final double errorRate,
+            final double throttlePerSecond,
+            final long seed) {
+        try {
+            final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            final FakeCarbonApiServer fake = new FakeCarbonApiServer(
+                    server,
+                    latencyMillis,
+                    jitterMillis,
+                    errorRate,
+                    throttlePerSecond,
+                    seed
+            );
+            server.start();
+            return fake;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to start fake carbon intensity API on port " + port + ".", e);
+        }
+    }
+
+    /**
+     * Endpoint template for {@link RealTimeCarbonIntensityProvider}, with {@code %s} for the zone.
+     */
+    public String endpointTemplate() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+                + "/v3/carbon-intensity/latest?zone=%s";
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        requests.increment();
+        final long delayMillis;
+        final boolean fail;
+        synchronized (random) {
+            delayMillis = latencyMillis + (jitterMillis > 0L ? (long) (random.nextDouble() * jitterMillis) : 0L);
+            fail = random.nextDouble() < errorRate;
+        }
+        try {
+            if (delayMillis > 0L) {
+                Thread.sleep(delayMillis);
+            }
+            if (throttle != null && !throttle.tryAcquire()) {
+                throttled.increment();
+                respond(exchange, 429, "{\"error\":\"rate limit exceeded\"}");
+            } else if (fail) {
+                errors.increment();
+                respond(exchange, 503, "{\"error\":\"service unavailable\"}");
+            } else {
+                final String zone = zoneOf(exchange.getRequestURI());
+                respond(exchange, 200, String.format(
+                        Locale.US,
+                        "{\"zone\":\"%s\",\"carbonIntensity\":%d,\"datetime\":\"2024-01-01T00:00:00.000Z\","
+                                + "\"updatedAt\":\"2024-01-01T00:05:00.000Z\",\"createdAt\":\"2023-12-29T00:00:00.000Z\","
+                                + "\"emissionFactorType\":\"lifecycle\",\"isEstimated\":false,\"estimationMethod\":null}",
+                        zone,
+                        intensityOf(zone)
+                ));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        }
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String zoneOf(final URI uri) {
+        final String query = uri.getQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("zone=")) {
+                    return parameter.substring("zone=".length());
+                }
+            }
+        }
+        return "UNKNOWN";
+    }
+
+    /**
+     * A stable intensity between 50 and 699 gCO2/kWh for a zone.
+     */
+    static int intensityOf(final String zone) {
+        return 50 + Math.floorMod(zone.hashCode(), 650);
+    }
+
+    /**
+     * Serves until killed. Configured from FAKE_API_PORT (default 18080), FAKE_API_LATENCY_MS
+     * (default 50), FAKE_API_JITTER_MS (default 0), FAKE_API_ERROR_RATE (default 0),
+     * FAKE_API_THROTTLE_PER_SECOND (default 0, unlimited) and FAKE_API_SEED (default 42).
+     */
+    public static void main(final String[] args) throws InterruptedException {
+        final FakeCarbonApiServer server = start(
+                Integer.parseInt(System.getenv().getOrDefault("FAKE_API_PORT", "18080")),
+                Long.parseLong(System.getenv().getOrDefault("FAKE_API_LATENCY_MS", "50")),
+                Long.parseLong(System.getenv().getOrDefault("FAKE_API_JITTER_MS", "0")),
+                Double.parseDouble(System.getenv().getOrDefault("FAKE_API_ERROR_RATE", "0")),
+                Double.parseDouble(System.getenv().getOrDefault("FAKE_API_THROTTLE_PER_SECOND", "0")),
+                Long.parseLong(System.getenv().getOrDefault("FAKE_API_SEED", "42"))
+        );
+        System.out.println("Fake carbon intensity API listening; CARBON_API_URL_TEMPLATE=" + server.endpointTemplate());
+        Thread.currentThread().join();
+    }
+}
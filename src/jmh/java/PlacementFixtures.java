@@ -0,0 +1,349 @@
+import org.cloudsimplus.allocationpolicies.VmAllocationPolicy;
+import org.cloudsimplus.brokers.DatacenterBroker;
+import org.cloudsimplus.brokers.DatacenterBrokerSimple;
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.cloudlets.CloudletSimple;
+import org.cloudsimplus.core.CloudSimPlus;
+import org.cloudsimplus.datacenters.DatacenterSimple;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.utilizationmodels.UtilizationModelDynamic;
+import org.cloudsimplus.vms.Vm;
+import org.cloudsimplus.vms.VmSimple;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the fleets the JMH benchmarks run against.
+ *
+ * <p>JMH refuses benchmarks in the default package, where the simulator classes
+ * live, so the benchmarks look these factories up reflectively once per trial and
+ * only see CloudSim Plus and JDK types afterwards. Everything is seeded, so a
+ * given parameter set always produces the same fleet.</p>
+ */
+public final class PlacementFixtures {
+
+    private static final long SEED = 42L;
+    private static final double MIPS_PER_PE = 1000;
+
+    private PlacementFixtures() {
+    }
+
+    /**
+     * A policy bound to a datacenter of {@code hostCount} hosts spread over {@code zoneCount}
+     * zones, with about {@code fill} of all PEs already taken by single-PE VMs.
+     */
+    public static VmAllocationPolicy placementPolicy(
+            final String policyName,
+            final boolean indexedPlacement,
+            final int hostCount,
+            final double fill,
+            final int zoneCount) {
+        return placementPolicy(policyName, indexedPlacement, hostCount, fill, zoneCount, "STANDARD");
+    }
+
+    /**
+     * Like {@link #placementPolicy(String, boolean, int, double, int)}, on a fleet of the given
+     * {@link HostClass#fleet(String, int)} definition whose hosts carry their class's power curve.
+     */
+    public static VmAllocationPolicy placementPolicy(
+            final String policyName,
+            final boolean indexedPlacement,
+            final int hostCount,
+            final double fill,
+            final int zoneCount,
+            final String fleetDefinition) {
+        final CloudSimPlus simulation = new CloudSimPlus();
+        final List<HostClass> fleet = HostClass.fleet(fleetDefinition, hostCount);
+        final List<Host> hosts = new FleetBuilder(fleet).build();
+        final List<String> zones = zones(zoneCount);
+        final CarbonIntensityProvider provider = new InMemoryCarbonIntensityProvider(zones, SEED, 500.0);
+        final List<PowerCurve> powerCurves = new ArrayList<>(hostCount);
+        long totalPes = 0;
+        for (HostClass hostClass : fleet) {
+            powerCurves.add(hostClass.powerCurve());
+            totalPes += hostClass.pes();
+        }
+        final VmAllocationPolicy policy = createPolicy(
+                policyName,
+                indexedPlacement,
+                provider,
+                HostMetadata.roundRobin(hosts, zones, zones.get(0), powerCurves)
+        );
+        new DatacenterSimple(simulation, hosts, policy);
+
+        // Take random free PEs until the target fill is reached, so hosts end up unevenly loaded.
+        final Random random = new Random(SEED);
+        final long target = Math.round(fill * totalPes);
+        final int[] usedPes = new int[hostCount];
+        for (long placed = 0; placed < target; ) {
+            final int host = random.nextInt(hostCount);
+            final int hostPes = fleet.get(host).pes();
+            if (usedPes[host] == hostPes) {
+                continue;
+            }
+            if (policy.allocateHostForVm(createVm(1), hosts.get(host)).fully()) {
+                usedPes[host]++;
+                placed++;
+            } else {
+                usedPes[host] = hostPes;
+            }
+        }
+        return policy;
+    }
+
+    /**
+     * Like {@link #placementPolicy(String, boolean, int, double, int)}, searching single
+     * placements with the given engine: {@code SCAN} or {@code INDEXED}, or the
+     * {@link ScoredVmAllocationPolicy.ArrayScoring} {@code SCALAR} or {@code VECTOR}.
+     */
+    public static VmAllocationPolicy scoringPolicy(
+            final String policyName,
+            final String engine,
+            final int hostCount,
+            final double fill,
+            final int zoneCount) {
+        return scoringPolicy(policyName, engine, hostCount, fill, zoneCount, "STANDARD");
+    }
+
+    /**
+     * Like {@link #scoringPolicy(String, String, int, double, int)}, on a fleet of the given
+     * {@link HostClass#fleet(String, int)} definition.
+     */
+    public static VmAllocationPolicy scoringPolicy(
+            final String policyName,
+            final String engine,
+            final int hostCount,
+            final double fill,
+            final int zoneCount,
+            final String fleetDefinition) {
+        final VmAllocationPolicy policy = placementPolicy(
+                policyName,
+                engine.equals("INDEXED"),
+                hostCount,
+                fill,
+                zoneCount,
+                fleetDefinition
+        );
+        if (engine.equals("VECTOR") && !HostScoreArrays.VECTOR_API_AVAILABLE) {
+            throw new IllegalStateException("The VECTOR engine needs a JVM started with --add-modules jdk.incubator.vector.");
+        }
+        if (engine.equals("SCALAR") || engine.equals("VECTOR")) {
+            ((ScoredVmAllocationPolicy) policy).setArrayScoring(ScoredVmAllocationPolicy.ArrayScoring.valueOf(engine));
+        } else if (!engine.equals("SCAN") && !engine.equals("INDEXED")) {
+            throw new IllegalArgumentException("Unsupported scoring engine: " + engine);
+        }
+        return policy;
+    }
+
+    /**
+     * Host power in watts as a function of utilization: the linear formula the simulator used
+     * before power curves ({@code LINEAR_FORMULA}), or the curve of a built-in {@link HostClass}.
+     */
+    public static DoubleUnaryOperator powerModel(final String name) {
+        if (name.equals("LINEAR_FORMULA")) {
+            return utilization -> 175 + (250 - 175) * utilization;
+        }
+        return HostClass.named(name).powerCurve()::watts;
+    }
+
+    /**
+     * Pseudo-random utilizations in 0..1, as seen by the energy accounting pass.
+     */
+    public static double[] utilizations(final int count) {
+        final Random random = new Random(SEED + 2);
+        final double[] utilizations = new double[count];
+        for (int i = 0; i < count; i++) {
+            utilizations[i] = random.nextDouble();
+        }
+        return utilizations;
+    }
+
+    /**
+     * VMs of one to three PEs, in a fixed pseudo-random order, to query placement with.
+     */
+    public static List<Vm> probeVms(final int count) {
+        final Random random = new Random(SEED + 1);
+        final List<Vm> vms = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            vms.add(createVm(1 + random.nextInt(3)));
+        }
+        return vms;
+    }
+
+    /**
+     * Runs one CIAVMP simulation and returns a task that recomputes its metrics with
+     * {@link ResultsLogger#buildMetrics}.
+     */
+    public static Supplier<Object> metricsBuilder(
+            final int hostCount,
+            final int cloudletCount,
+            final int zoneCount) {
+        final CloudSimPlus simulation = new CloudSimPlus();
+        final DatacenterBroker broker = new DatacenterBrokerSimple(simulation);
+        final List<Host> hosts = FleetBuilder.of("STANDARD", hostCount).build();
+        final List<String> zones = zones(zoneCount);
+        final CarbonIntensityProvider provider = new InMemoryCarbonIntensityProvider(zones, SEED, 500.0);
+        final HostMetadata hostMetadata = HostMetadata.roundRobin(hosts, zones, zones.get(0));
+        final HostEnergyMeter energyMeter = new HostEnergyMeter(
+                simulation,
+                hosts,
+                hostMetadata,
+                new IntensityProfile(hostMetadata, provider, 300)
+        );
+        final BatchVmAllocationPolicy policy = createPolicy("CIAVMP", true, provider, hostMetadata);
+        policy.setEnergyMeter(energyMeter);
+        new DatacenterSimple(simulation, hosts, policy);
+
+        final List<Vm> vms = new ArrayList<>();
+        for (int i = 0; i < hostCount * 2; i++) {
+            vms.add(createVm(1));
+        }
+        final Random random = new Random(SEED);
+        final List<Cloudlet> cloudlets = new ArrayList<>(cloudletCount);
+        for (int i = 0; i < cloudletCount; i++) {
+            final Cloudlet cloudlet = new CloudletSimple(
+                    5000 + random.nextInt(15000),
+                    1,
+                    new UtilizationModelDynamic(0.7)
+            );
+            cloudlet.setVm(vms.get(i % vms.size()));
+            cloudlets.add(cloudlet);
+        }
+        broker.submitVmList(vms);
+        broker.submitCloudletList(cloudlets);
+        simulation.start();
+        energyMeter.finish(simulation.clock(), cloudlets);
+
+        return () -> ResultsLogger.buildMetrics(1, "CIAVMP", cloudlets, energyMeter);
+    }
+
+    /**
+     * A {@link FakeCarbonApiServer} on a free loopback port.
+     */
+    public static AutoCloseable carbonApiServer(
+            final long latencyMillis,
+            final long jitterMillis,
+            final double errorRate,
+            final double throttlePerSecond) {
+        return FakeCarbonApiServer.start(0, latencyMillis, jitterMillis, errorRate, throttlePerSecond, SEED);
+    }
+
+    /**
+     * A task that fetches the intensity of {@code zoneCount} zones from the fake server once and
+     * returns how many came back live. {@code STREAMING} is the provider's asynchronous path
+     * (rate limiter and breaker set out of the way); {@code LEGACY} is the blocking
+     * per-zone request with a regex over the whole body that it replaced, one thread per zone.
+     */
+    public static Supplier<Object> carbonApiFetchRound(
+            final String implementation,
+            final AutoCloseable server,
+            final int zoneCount) {
+        final String template = ((FakeCarbonApiServer) server).endpointTemplate();
+        final List<String> zones = zones(zoneCount);
+        if (implementation.equals("STREAMING")) {
+            final RealTimeCarbonIntensityProvider provider = new RealTimeCarbonIntensityProvider(
+                    "benchmark",
+                    template,
+                    60_000L,
+                    -1.0,
+                    null,
+                    new TokenBucket(1_000_000.0, 1_000_000),
+                    new CircuitBreaker(Integer.MAX_VALUE, 0L),
+                    Duration.ofSeconds(10)
+            );
+            return () -> {
+                provider.prewarm(zones);
+                return zones.stream().filter(zone -> provider.getIntensityGco2PerKwh(zone) >= 0.0).count();
+            };
+        }
+        if (implementation.equals("LEGACY")) {
+            return legacyFetchRound(template, zones);
+        }
+        throw new IllegalArgumentException("Unsupported fetch implementation: " + implementation);
+    }
+
+    private static Supplier<Object> legacyFetchRound(final String template, final List<String> zones) {
+        final Pattern pattern = Pattern.compile("\"carbonIntensity\"\\s*:\\s*(-?\\d+(?:\\.\\d+)?)");
+        final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        final ExecutorService executor = Executors.newCachedThreadPool(task -> {
+            final Thread thread = new Thread(task, "legacy-fetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        return () -> zones.stream()
+                .map(zone -> CompletableFuture.supplyAsync(() -> {
+                    final HttpRequest request = HttpRequest.newBuilder(URI.create(
+                                    String.format(template, URLEncoder.encode(zone, StandardCharsets.UTF_8))))
+                            .timeout(Duration.ofSeconds(10))
+                            .header("auth-token", "benchmark")
+                            .header("Accept", "application/json")
+                            .GET()
+                            .build();
+                    try {
+                        final HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() >= 200 && response.statusCode() < 300) {
+                            final Matcher matcher = pattern.matcher(response.body());
+                            return matcher.find();
+                        }
+                    } catch (IOException e) {
+                        return false;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return false;
+                }, executor))
+                .collect(Collectors.toList())
+                .stream()
+                .filter(CompletableFuture::join)
+                .count();
+    }
+
+    private static BatchVmAllocationPolicy createPolicy(
+            final String policyName,
+            final boolean indexedPlacement,
+            final CarbonIntensityProvider provider,
+            final HostMetadata hostMetadata) {
+        switch (policyName) {
+            case "FIRST_FIT":
+                return new FirstFitVmAllocationPolicy();
+            case "ENERGY_AWARE":
+                return new EnergyVmAllocationPolicy(indexedPlacement, hostMetadata);
+            case "CIAVMP":
+                return new CarbonVmAllocationPolicy(provider, hostMetadata, indexedPlacement);
+            default:
+                throw new IllegalArgumentException("Unsupported policy: " + policyName);
+        }
+    }
+
+    private static Vm createVm(final int pes) {
+        final Vm vm = new VmSimple(MIPS_PER_PE, pes);
+        vm.setRam(1024).setBw(1000).setSize(10000);
+        return vm;
+    }
+
+    private static List<String> zones(final int count) {
+        final List<String> zones = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            zones.add("ZONE-" + i);
+        }
+        return zones;
+    }
+}
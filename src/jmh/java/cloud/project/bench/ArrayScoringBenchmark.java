@@ -0,0 +1,74 @@
+package cloud.project.bench;
+
+import org.cloudsimplus.allocationpolicies.VmAllocationPolicy;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a {@code findHostForVm} that scores the whole fleet: the per-host scan over
+ * {@code Host} objects against the struct-of-arrays engine with the scalar loop and with
+ * the Vector API kernel, plus the index for reference. Set up like
+ * {@link PlacementBenchmark}, with the fleet built once per trial and never modified.
+ *
+ * <p>The fork adds the {@code jdk.incubator.vector} module. A million hosts at half fill
+ * is two million VMs; on small machines lower {@code fill} or give the fork a larger heap,
+ * repeating the module since {@code -jvmArgsAppend} replaces it:
+ * {@code -jvmArgsAppend "-Xmx4g --add-modules=jdk.incubator.vector"}.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ArrayScoringBenchmark {
+
+    @Param({"SCAN", "INDEXED", "SCALAR", "VECTOR"})
+    public String engine;
+
+    @Param({"CIAVMP"})
+    public String policy;
+
+    @Param({"10000", "100000", "1000000"})
+    public int hosts;
+
+    @Param({"0.5"})
+    public double fill;
+
+    @Param({"4"})
+    public int zones;
+
+    private VmAllocationPolicy allocationPolicy;
+    private Vm[] probes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void buildFleet() {
+        allocationPolicy = Fixtures.call("scoringPolicy", policy, engine, hosts, fill, zones);
+        final List<Vm> vms = Fixtures.call("probeVms", 1024);
+        probes = vms.toArray(new Vm[0]);
+    }
+
+    @Benchmark
+    public Optional<Host> findHostForVm() {
+        final Vm vm = probes[next];
+        next = (next + 1) & (probes.length - 1);
+        return allocationPolicy.findHostForVm(vm);
+    }
+}
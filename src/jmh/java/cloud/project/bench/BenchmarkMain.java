@@ -0,0 +1,43 @@
+package cloud.project.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Runs the benchmarks with the usual JMH command line, but writes JSON results to
+ * {@code results/benchmarks/jmh-<timestamp>.json} unless {@code -rf}/{@code -rff}
+ * say otherwise, so results from two versions can be diffed directly.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(final String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        final OptionsBuilder defaults = new OptionsBuilder();
+        if (!commandLine.getResultFormat().hasValue()) {
+            defaults.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            final Path resultDir = Path.of("results", "benchmarks");
+            Files.createDirectories(resultDir);
+            final String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            defaults.result(resultDir.resolve("jmh-" + timestamp + ".json").toString());
+        }
+
+        final Options options = defaults.parent(commandLine).build();
+        new Runner(options).run();
+    }
+}
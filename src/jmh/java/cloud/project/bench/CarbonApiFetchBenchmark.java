@@ -0,0 +1,64 @@
+package cloud.project.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Time to refresh every zone's intensity from the local fake API, as the real-time provider
+ * does at prewarm and on expiry: the asynchronous streaming path against the blocking
+ * regex one it replaced. Sampled, so JMH reports the p50/p99/p99.9 of a whole round
+ * along with the mean; {@code errorRate} shows how failures stretch the tail.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class CarbonApiFetchBenchmark {
+
+    @Param({"LEGACY", "STREAMING"})
+    public String implementation;
+
+    @Param({"32"})
+    public int zones;
+
+    @Param({"5"})
+    public long latencyMillis;
+
+    @Param({"0.0", "0.1"})
+    public double errorRate;
+
+    private AutoCloseable server;
+    private Supplier<Object> fetchRound;
+
+    @Setup(Level.Trial)
+    public void startServer() {
+        server = Fixtures.call("carbonApiServer", latencyMillis, latencyMillis, errorRate, 0.0);
+        fetchRound = Fixtures.call("carbonApiFetchRound", implementation, server, zones);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws Exception {
+        server.close();
+    }
+
+    @Benchmark
+    public Object fetchAllZones() {
+        return fetchRound.get();
+    }
+}
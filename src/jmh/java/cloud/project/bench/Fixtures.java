@@ -0,0 +1,31 @@
+package cloud.project.bench;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Reflective access to {@code PlacementFixtures}, which lives in the default package
+ * with the rest of the simulator and so cannot be referenced from here directly.
+ * Only used during setup, never inside a measured method.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T call(final String method, final Object... args) {
+        try {
+            for (Method candidate : Class.forName("PlacementFixtures").getMethods()) {
+                if (candidate.getName().equals(method) && candidate.getParameterCount() == args.length) {
+                    return (T) candidate.invoke(null, args);
+                }
+            }
+            throw new IllegalArgumentException("No fixture named " + method + " taking " + args.length + " arguments.");
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException("Failed to build benchmark fixture " + method + ".", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Failed to build benchmark fixture " + method + ".", e);
+        }
+    }
+}
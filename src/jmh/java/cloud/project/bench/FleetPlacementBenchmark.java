@@ -0,0 +1,72 @@
+package cloud.project.bench;
+
+import org.cloudsimplus.allocationpolicies.VmAllocationPolicy;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@code findHostForVm} on a homogeneous fleet with the linear power model
+ * against a mixed fleet of SPECpower host classes, for the policies that score power.
+ * Set up like {@link PlacementBenchmark}: the fleet is built once per trial and never
+ * modified.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FleetPlacementBenchmark {
+
+    @Param({"ENERGY_AWARE", "CIAVMP"})
+    public String policy;
+
+    @Param({"true", "false"})
+    public boolean indexedPlacement;
+
+    @Param({"STANDARD", "STANDARD:2,HP_PROLIANT_ML110_G5:1,IBM_X3550_M3:1"})
+    public String fleet;
+
+    @Param({"1000", "10000"})
+    public int hosts;
+
+    @Param({"0.5"})
+    public double fill;
+
+    @Param({"4"})
+    public int zones;
+
+    private VmAllocationPolicy allocationPolicy;
+    private Vm[] probes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void buildFleet() {
+        allocationPolicy = Fixtures.call("placementPolicy", policy, indexedPlacement, hosts, fill, zones, fleet);
+        final List<Vm> vms = Fixtures.call("probeVms", 1024);
+        probes = vms.toArray(new Vm[0]);
+    }
+
+    @Benchmark
+    public Optional<Host> findHostForVm() {
+        final Vm vm = probes[next];
+        next = (next + 1) & (probes.length - 1);
+        return allocationPolicy.findHostForVm(vm);
+    }
+}
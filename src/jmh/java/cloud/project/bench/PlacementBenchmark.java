@@ -0,0 +1,71 @@
+package cloud.project.bench;
+
+import org.cloudsimplus.allocationpolicies.VmAllocationPolicy;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single {@code findHostForVm} call for each placement policy, across fleet
+ * size, fleet fill and zone count. The fleet is built once per trial and never
+ * modified: the benchmark only asks where a VM would go, so every invocation sees
+ * the same state. Probe VMs of one to three PEs are cycled so no single bucket or
+ * branch is measured in isolation. Each point is run with the host index and with
+ * the linear scan it replaces, so the two can be compared at every fleet size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlacementBenchmark {
+
+    @Param({"FIRST_FIT", "ENERGY_AWARE", "CIAVMP"})
+    public String policy;
+
+    @Param({"true", "false"})
+    public boolean indexedPlacement;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int hosts;
+
+    @Param({"0.0", "0.5", "0.9"})
+    public double fill;
+
+    @Param({"1", "4", "16"})
+    public int zones;
+
+    private VmAllocationPolicy allocationPolicy;
+    private Vm[] probes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void buildFleet() {
+        allocationPolicy = Fixtures.call("placementPolicy", policy, indexedPlacement, hosts, fill, zones);
+        final List<Vm> vms = Fixtures.call("probeVms", 1024);
+        probes = vms.toArray(new Vm[0]);
+    }
+
+    @Benchmark
+    public Optional<Host> findHostForVm() {
+        final Vm vm = probes[next];
+        next = (next + 1) & (probes.length - 1);
+        return allocationPolicy.findHostForVm(vm);
+    }
+}
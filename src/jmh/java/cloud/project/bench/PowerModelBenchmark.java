@@ -0,0 +1,56 @@
+package cloud.project.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Cost of evaluating host power over a fleet's utilizations, as the energy accounting
+ * pass does once per host: the old inline linear formula against the precomputed
+ * {@code PowerCurve} tables of the linear and the SPECpower host classes. All models
+ * are called through the same interface so only the evaluation differs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PowerModelBenchmark {
+
+    @Param({"LINEAR_FORMULA", "STANDARD", "HP_PROLIANT_ML110_G5", "IBM_X3550_M3"})
+    public String model;
+
+    @Param({"4096"})
+    public int hosts;
+
+    private DoubleUnaryOperator power;
+    private double[] utilizations;
+
+    @Setup(Level.Trial)
+    public void loadModel() {
+        power = Fixtures.call("powerModel", model);
+        utilizations = Fixtures.call("utilizations", hosts);
+    }
+
+    @Benchmark
+    public double fleetWatts() {
+        double watts = 0.0;
+        for (double utilization : utilizations) {
+            watts += power.applyAsDouble(utilization);
+        }
+        return watts;
+    }
+}
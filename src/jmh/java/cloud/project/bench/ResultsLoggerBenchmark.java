@@ -0,0 +1,51 @@
+package cloud.project.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cost of {@code ResultsLogger.buildMetrics} over a finished simulation. The
+ * simulation runs once per trial; only the metrics pass is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultsLoggerBenchmark {
+
+    @Param({"100", "1000"})
+    public int hosts;
+
+    @Param({"1000", "10000", "100000"})
+    public int cloudlets;
+
+    @Param({"4"})
+    public int zones;
+
+    private Supplier<Object> metrics;
+
+    @Setup(Level.Trial)
+    public void runSimulation() {
+        metrics = Fixtures.call("metricsBuilder", hosts, cloudlets, zones);
+    }
+
+    @Benchmark
+    public Object buildMetrics() {
+        return metrics.get();
+    }
+}
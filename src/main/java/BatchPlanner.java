@@ -0,0 +1,264 @@
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Plans the placement of a whole VM submission with sorted bin-packing.
+ *
+ * <p>VMs are packed in decreasing demand (requested MIPS, then RAM) against a
+ * snapshot of each host's free MIPS, RAM, bandwidth and storage. Hosts are
+ * considered in ascending order of a score evaluated once per batch, ties
+ * going to the earlier host in the list. Both strategies find the first host in
+ * score order with enough free MIPS in a segment tree, so a VM costs O(log hosts)
+ * plus the hosts it skips for lack of RAM, bandwidth or storage. The plan is only
+ * a proposal: the policy re-checks suitability when the datacenter actually
+ * creates each VM.</p>
+ */
+final class BatchPlanner {
+
+    enum Strategy {
+        /** Each VM goes to the first host, in score order, that still fits it. */
+        FIRST_FIT_DECREASING,
+        /** Each VM goes to the lowest-score host that fits it, preferring the tightest free MIPS. */
+        BEST_FIT_DECREASING
+    }
+
+    private final List<Host> hosts;
+    private final double[] freeMips;
+    private final long[] freeRam;
+    private final long[] freeBw;
+    private final long[] freeStorage;
+    private final long[] workingPes;
+
+    private BatchPlanner(final List<Host> hosts) {
+        final int count = hosts.size();
+        this.hosts = hosts;
+        this.freeMips = new double[count];
+        this.freeRam = new long[count];
+        this.freeBw = new long[count];
+        this.freeStorage = new long[count];
+        this.workingPes = new long[count];
+        for (int i = 0; i < count; i++) {
+            final Host host = hosts.get(i);
+            freeMips[i] = host.getVmScheduler().getTotalAvailableMips();
+            freeRam[i] = host.getRamProvisioner().getAvailableResource();
+            freeBw[i] = host.getBwProvisioner().getAvailableResource();
+            freeStorage[i] = host.getStorage().getAvailableResource();
+            workingPes[i] = host.getWorkingPesNumber();
+        }
+    }
+
+    /**
+     * Returns a proposed host for every VM that fits somewhere; VMs that fit nowhere are left out.
+     *
+     * @param hostScores score of each host, by position in {@code hosts}; lower is preferred
+     */
+    static Map<Vm, Host> plan(
+            final List<Host> hosts,
+            final double[] hostScores,
+            final List<? extends Vm> vms,
+            final Strategy strategy) {
+        final BatchPlanner planner = new BatchPlanner(hosts);
+
+        final List<Vm> sortedVms = new ArrayList<>(vms);
+        sortedVms.sort(Comparator
+                .comparingDouble((Vm vm) -> vm.getCurrentRequestedMips().totalMips())
+                .thenComparingLong(vm -> vm.getRam().getCapacity())
+                .reversed());
+
+        final Map<Vm, Host> plan = new IdentityHashMap<>();
+        if (strategy == Strategy.FIRST_FIT_DECREASING) {
+            planner.firstFitDecreasing(hostScores, sortedVms, plan);
+        } else {
+            planner.bestFitDecreasing(hostScores, sortedVms, plan);
+        }
+        return plan;
+    }
+
+    private void firstFitDecreasing(
+            final double[] hostScores,
+            final List<Vm> sortedVms,
+            final Map<Vm, Host> plan) {
+        final int[] order = scoreOrder(hostScores);
+        final MaxTree tree = new MaxTree(order.length);
+        for (int i = 0; i < order.length; i++) {
+            tree.set(i, freeMips[order[i]]);
+        }
+
+        for (Vm vm : sortedVms) {
+            final double mips = vm.getCurrentRequestedMips().totalMips();
+            int slot = tree.firstAtLeast(0, mips);
+            while (slot >= 0 && !fits(order[slot], vm, mips)) {
+                slot = tree.firstAtLeast(slot + 1, mips);
+            }
+            if (slot < 0) {
+                continue;
+            }
+
+            final int host = order[slot];
+            reserve(host, vm, mips);
+            tree.set(slot, freeMips[host]);
+            plan.put(vm, hosts.get(host));
+        }
+    }
+
+    private void bestFitDecreasing(
+            final double[] hostScores,
+            final List<Vm> sortedVms,
+            final Map<Vm, Host> plan) {
+        final Comparator<Slot> slotOrder = Comparator
+                .comparingDouble((Slot slot) -> slot.freeMips)
+                .thenComparingInt(slot -> slot.host);
+        // Hosts in score order, split into levels of equal score; the tree finds the first
+        // level with enough free MIPS, the level's set the tightest host in it.
+        final int[] order = scoreOrder(hostScores);
+        final MaxTree tree = new MaxTree(order.length);
+        final int[] levelOfSlot = new int[order.length];
+        final List<NavigableSet<Slot>> levels = new ArrayList<>();
+        final List<Integer> levelEnds = new ArrayList<>();
+        for (int i = 0; i < order.length; i++) {
+            final int host = order[i];
+            if (i == 0 || Double.compare(hostScores[host], hostScores[order[i - 1]]) != 0) {
+                levels.add(new TreeSet<>(slotOrder));
+                levelEnds.add(i);
+            }
+            final int level = levels.size() - 1;
+            levels.get(level).add(new Slot(host, freeMips[host]));
+            levelEnds.set(level, i + 1);
+            levelOfSlot[i] = level;
+            tree.set(i, freeMips[host]);
+        }
+        final int[] slotOfHost = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            slotOfHost[order[i]] = i;
+        }
+
+        for (Vm vm : sortedVms) {
+            final double mips = vm.getCurrentRequestedMips().totalMips();
+            final Slot probe = new Slot(-1, mips);
+
+            Slot chosen = null;
+            NavigableSet<Slot> chosenLevel = null;
+            int from = tree.firstAtLeast(0, mips);
+            while (from >= 0 && chosen == null) {
+                final int level = levelOfSlot[from];
+                for (Slot slot : levels.get(level).tailSet(probe, true)) {
+                    if (fits(slot.host, vm, mips)) {
+                        chosen = slot;
+                        chosenLevel = levels.get(level);
+                        break;
+                    }
+                }
+                from = tree.firstAtLeast(levelEnds.get(level), mips);
+            }
+            if (chosen == null) {
+                continue;
+            }
+
+            chosenLevel.remove(chosen);
+            reserve(chosen.host, vm, mips);
+            chosen.freeMips = freeMips[chosen.host];
+            chosenLevel.add(chosen);
+            tree.set(slotOfHost[chosen.host], freeMips[chosen.host]);
+            plan.put(vm, hosts.get(chosen.host));
+        }
+    }
+
+    private boolean fits(final int host, final Vm vm, final double mips) {
+        return freeMips[host] >= mips
+                && workingPes[host] >= vm.getPesNumber()
+                && freeRam[host] >= vm.getRam().getCapacity()
+                && freeBw[host] >= vm.getBw().getCapacity()
+                && freeStorage[host] >= vm.getStorage().getCapacity();
+    }
+
+    private void reserve(final int host, final Vm vm, final double mips) {
+        freeMips[host] -= mips;
+        freeRam[host] -= vm.getRam().getCapacity();
+        freeBw[host] -= vm.getBw().getCapacity();
+        freeStorage[host] -= vm.getStorage().getCapacity();
+    }
+
+    /**
+     * Host positions sorted by score, keeping host list order for equal scores.
+     */
+    private static int[] scoreOrder(final double[] hostScores) {
+        final Integer[] boxed = new Integer[hostScores.length];
+        for (int i = 0; i < boxed.length; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, Comparator.comparingDouble((Integer i) -> hostScores[i]));
+
+        final int[] order = new int[boxed.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = boxed[i];
+        }
+        return order;
+    }
+
+    private static final class Slot {
+        private final int host;
+        private double freeMips;
+
+        private Slot(final int host, final double freeMips) {
+            this.host = host;
+            this.freeMips = freeMips;
+        }
+    }
+
+    /**
+     * Segment tree of free MIPS by slot, answering "first slot from i with at least x" in O(log n).
+     */
+    private static final class MaxTree {
+        private final int size;
+        private final double[] max;
+
+        private MaxTree(final int slots) {
+            int size = 1;
+            while (size < slots) {
+                size <<= 1;
+            }
+            this.size = size;
+            this.max = new double[2 * size];
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        }
+
+        private void set(final int slot, final double value) {
+            int node = slot + size;
+            max[node] = value;
+            for (node >>= 1; node >= 1; node >>= 1) {
+                max[node] = Math.max(max[2 * node], max[2 * node + 1]);
+            }
+        }
+
+        private int firstAtLeast(final int from, final double value) {
+            return firstAtLeast(1, 0, size, from, value);
+        }
+
+        private int firstAtLeast(
+                final int node,
+                final int lo,
+                final int hi,
+                final int from,
+                final double value) {
+            if (hi <= from || max[node] < value) {
+                return -1;
+            }
+            if (hi - lo == 1) {
+                return lo;
+            }
+
+            final int mid = (lo + hi) >>> 1;
+            final int left = firstAtLeast(2 * node, lo, mid, from, value);
+            return left >= 0 ? left : firstAtLeast(2 * node + 1, mid, hi, from, value);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+import org.cloudsimplus.allocationpolicies.VmAllocationPolicySimple;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.hosts.HostSuitability;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Base for the placement policies that adds a batch path next to per-VM placement.
+ *
+ * <p>{@link #placeAll(List)} packs a whole submission at once with {@link BatchPlanner},
+ * using host scores evaluated once for the batch. The resulting plan is consumed as the
+ * datacenter creates each VM; a VM without a plan, or whose planned host no longer
+ * suits it, falls back to {@link #findHostForSingleVm(Vm)}.</p>
+ *
+ * <p>A {@link RegionTopology} likewise hands over the host its own search found when it
+ * routed a VM to this policy's datacenter. That search is recorded as the decision when
+ * the VM is routed here; searches of regions the VM was not routed to are not recorded.</p>
+ *
+ * <p>With a {@link HostEnergyMeter} attached, every host the policy places a VM on or
+ * removes one from is sampled at that moment.</p>
+ */
+public abstract class BatchVmAllocationPolicy extends VmAllocationPolicySimple {
+
+    private final Map<Vm, Host> plannedHosts = new IdentityHashMap<>();
+    private final Map<Vm, Host> routedHosts = new IdentityHashMap<>();
+    private PlacementStats placementStats;
+    private PlacementStats searchStats;
+    private HostEnergyMeter energyMeter;
+
+    /**
+     * Plans hosts for all given VMs. Call it after the policy is attached to a datacenter
+     * and before the VMs are submitted to the broker.
+     */
+    public BatchPlacement placeAll(final List<? extends Vm> vms) {
+        final long startNanos = System.nanoTime();
+        final List<Host> hosts = getHostList();
+        final Map<Vm, Host> plan = BatchPlanner.plan(hosts, batchScores(hosts), vms, packingStrategy());
+        plannedHosts.putAll(plan);
+        final long elapsedNanos = System.nanoTime() - startNanos;
+
+        final Set<Host> hostsUsed = Collections.newSetFromMap(new IdentityHashMap<>());
+        hostsUsed.addAll(plan.values());
+        return new BatchPlacement(vms.size(), plan.size(), hostsUsed.size(), elapsedNanos);
+    }
+
+    /**
+     * Scores of the given hosts, by position, evaluated once per batch. Lower is preferred.
+     */
+    protected double[] batchScores(final List<Host> hosts) {
+        return new double[hosts.size()];
+    }
+
+    protected BatchPlanner.Strategy packingStrategy() {
+        return BatchPlanner.Strategy.FIRST_FIT_DECREASING;
+    }
+
+    /**
+     * Records every following host decision into {@code placementStats}; null stops recording.
+     */
+    public void setPlacementStats(final PlacementStats placementStats) {
+        this.placementStats = placementStats;
+    }
+
+    public PlacementStats getPlacementStats() {
+        return placementStats;
+    }
+
+    /**
+     * Samples hosts into {@code energyMeter} as VMs are placed on and removed from them; null stops it.
+     */
+    public void setEnergyMeter(final HostEnergyMeter energyMeter) {
+        this.energyMeter = energyMeter;
+    }
+
+    @Override
+    public HostSuitability allocateHostForVm(final Vm vm, final Host host) {
+        final HostSuitability suitability = super.allocateHostForVm(vm, host);
+        if (suitability.fully() && energyMeter != null) {
+            energyMeter.sample(host);
+        }
+        return suitability;
+    }
+
+    @Override
+    public void deallocateHostForVm(final Vm vm) {
+        final Host host = vm.getHost();
+        super.deallocateHostForVm(vm);
+        if (energyMeter != null && host != Host.NULL) {
+            energyMeter.sample(host);
+        }
+    }
+
+    /**
+     * Called once a VM has started migrating to {@code target}, which takes it other than
+     * through {@link #allocateHostForVm(Vm, Host)} until the migration finishes.
+     */
+    void migrationStarted(final Host target) {
+        if (energyMeter != null) {
+            energyMeter.sample(target);
+        }
+    }
+
+    /**
+     * The host this policy would choose for the VM, but without {@link #findHostForVm(Vm)}
+     * powering the host on, so it is safe to ask several policies concurrently and use only
+     * one answer. The search is recorded apart from the policy's stats, which only take it
+     * in if {@link #routeTo} follows; the next search discards it otherwise.
+     */
+    Optional<Host> searchHost(final Vm vm) {
+        final PlacementStats recorded = placementStats;
+        if (recorded == null) {
+            return defaultFindHostForVm(vm);
+        }
+
+        if (searchStats == null) {
+            searchStats = new PlacementStats();
+        } else {
+            searchStats.clear();
+        }
+        placementStats = searchStats;
+        try {
+            return defaultFindHostForVm(vm);
+        } finally {
+            placementStats = recorded;
+        }
+    }
+
+    /**
+     * Makes {@code host} the placement of {@code vm} when the datacenter creates it, if it still
+     * suits the VM then. The caller found the host through {@link #searchHost(Vm)}, which is
+     * recorded as the decision now.
+     */
+    void routeTo(final Vm vm, final Host host) {
+        routedHosts.put(vm, host);
+        if (placementStats != null && searchStats != null) {
+            placementStats.addAll(searchStats);
+            searchStats.clear();
+        }
+    }
+
+    /**
+     * Selects a host for a VM that has no usable batch plan.
+     */
+    protected Optional<Host> findHostForSingleVm(final Vm vm) {
+        // The default search tests every host.
+        recordHostsExamined(getHostList().size());
+        return super.defaultFindHostForVm(vm);
+    }
+
+    /**
+     * Counts hosts a search looked at towards the current decision, when stats are recorded.
+     */
+    protected final void recordHostsExamined(final int hosts) {
+        if (placementStats != null) {
+            placementStats.addHostsExamined(hosts);
+        }
+    }
+
+    @Override
+    protected final Optional<Host> defaultFindHostForVm(final Vm vm) {
+        final Host routed = routedHosts.remove(vm);
+        if (routed != null && routed.isSuitableForVm(vm)) {
+            return Optional.of(routed);
+        }
+
+        final PlacementStats stats = placementStats;
+        if (stats == null) {
+            return findHost(vm);
+        }
+
+        final long start = System.nanoTime();
+        final Optional<Host> host = findHost(vm);
+        stats.recordDecision(System.nanoTime() - start);
+        return host;
+    }
+
+    private Optional<Host> findHost(final Vm vm) {
+        final Host planned = plannedHosts.remove(vm);
+        if (planned != null && planned.isSuitableForVm(vm)) {
+            recordHostsExamined(1);
+            return Optional.of(planned);
+        }
+
+        return findHostForSingleVm(vm);
+    }
+
+    public static final class BatchPlacement {
+        private final int requestedVms;
+        private final int plannedVms;
+        private final int hostsUsed;
+        private final long elapsedNanos;
+
+        public BatchPlacement(
+                final int requestedVms,
+                final int plannedVms,
+                final int hostsUsed,
+                final long elapsedNanos) {
+            this.requestedVms = requestedVms;
+            this.plannedVms = plannedVms;
+            this.hostsUsed = hostsUsed;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int requestedVms() {
+            return requestedVms;
+        }
+
+        public int plannedVms() {
+            return plannedVms;
+        }
+
+        public int hostsUsed() {
+            return hostsUsed;
+        }
+
+        public double elapsedMillis() {
+            return elapsedNanos / 1_000_000.0;
+        }
+    }
+}
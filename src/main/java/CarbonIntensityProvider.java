@@ -1,3 +1,10 @@
 public interface CarbonIntensityProvider {
     double getIntensityGco2PerKwh(String region);
+
+    /**
+     * Intensity at the given simulation time. Providers without history return the current value.
+     */
+    default double getIntensityGco2PerKwh(String region, double simulationTimeSeconds) {
+        return getIntensityGco2PerKwh(region);
+    }
 }
@@ -1,79 +1,184 @@
 import org.cloudsimplus.brokers.DatacenterBroker;
 import org.cloudsimplus.brokers.DatacenterBrokerSimple;
-import org.cloudsimplus.allocationpolicies.VmAllocationPolicy;
 import org.cloudsimplus.cloudlets.Cloudlet;
 import org.cloudsimplus.cloudlets.CloudletSimple;
 import org.cloudsimplus.core.CloudSimPlus;
+import org.cloudsimplus.datacenters.Datacenter;
 import org.cloudsimplus.datacenters.DatacenterSimple;
 import org.cloudsimplus.hosts.Host;
-import org.cloudsimplus.hosts.HostSimple;
-import org.cloudsimplus.provisioners.PeProvisionerSimple;
-import org.cloudsimplus.provisioners.ResourceProvisionerSimple;
-import org.cloudsimplus.resources.Pe;
-import org.cloudsimplus.resources.PeSimple;
-import org.cloudsimplus.schedulers.vm.VmSchedulerTimeShared;
 import org.cloudsimplus.utilizationmodels.UtilizationModelDynamic;
 import org.cloudsimplus.vms.Vm;
 import org.cloudsimplus.vms.VmSimple;
 
 import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.IdentityHashMap;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class CarbonSimulation {
 
+    private static final List<String> POLICIES = List.of("FIRST_FIT", "ENERGY_AWARE", "CIAVMP");
+
+    /**
+     * Suffix of the sampled variant of a policy, run next to it when PLACEMENT_SAMPLES is set.
+     */
+    private static final String SAMPLED_SUFFIX = "_SAMPLED";
+
+    /**
+     * Campaigns with at least this many hosts, VMs and cloudlets together print their
+     * footprint before they start, see {@link #fitWorkersToHeap}.
+     */
+    private static final long LARGE_CAMPAIGN_OBJECTS = 100_000;
+
+    /**
+     * Hosts, VMs and cloudlets built to measure the footprint.
+     */
+    private static final int FOOTPRINT_SAMPLE = 10_000;
+
+    /**
+     * Rough retained bytes of a host, VM or cloudlet, about twice the measured ~1.1 KB of a
+     * host or VM: below half the heap at this size, workers are not capped and the
+     * footprint is not measured.
+     */
+    private static final long ROUGH_BYTES_PER_OBJECT = 2_048;
+
+    /**
+     * Heap reserved per experiment over the retained size of its hosts, VMs and cloudlets as
+     * built. Placement and execution state added about 10% at 20,000 and at 200,000 hosts;
+     * the rest keeps the collector from running back to back.
+     */
+    private static final double RUN_HEAP_FACTOR = 1.5;
+
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("sweep")) {
+            ParameterSweep.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         final int runs = getIntEnv("EVAL_RUNS", 5);
+        // EVAL_CI_TARGET_PCT turns EVAL_RUNS into an upper bound: each policy stops once its
+        // energy and carbon 95% CIs are within that percentage of their means, after EVAL_MIN_RUNS.
+        final double ciTargetPct = getDoubleEnv("EVAL_CI_TARGET_PCT", 0.0);
+        final int minRuns = ciTargetPct > 0.0 ? Math.min(runs, Math.max(2, getIntEnv("EVAL_MIN_RUNS", 3))) : runs;
         final int hostCount = getIntEnv("HOST_COUNT", 50);
         final int vmCount = getIntEnv("VM_COUNT", 100);
         final int cloudletCount = getIntEnv("CLOUDLET_COUNT", 100);
 
         final List<String> zones = resolveZones();
-        final CarbonIntensityProvider carbonIntensityProvider = new RealTimeCarbonIntensityProvider();
-        final List<ResultsLogger.EvaluationMetrics> allMetrics = new ArrayList<>();
-
-        for (int run = 1; run <= runs; run++) {
-            allMetrics.add(runSingleExperiment(
-                    run,
-                    "FIRST_FIT",
-                    hostCount,
-                    vmCount,
-                    cloudletCount,
-                    zones,
-                    carbonIntensityProvider
-            ));
-            allMetrics.add(runSingleExperiment(
-                    run,
-                    "ENERGY_AWARE",
-                    hostCount,
-                    vmCount,
-                    cloudletCount,
-                    zones,
-                    carbonIntensityProvider
-            ));
-            allMetrics.add(runSingleExperiment(
-                    run,
-                    "CIAVMP",
-                    hostCount,
-                    vmCount,
-                    cloudletCount,
-                    zones,
-                    carbonIntensityProvider
-            ));
+        final CarbonIntensityProvider carbonIntensityProvider = createCarbonIntensityProvider(zones);
+        final ScoredVmAllocationPolicy.ArrayScoring arrayScoring = arrayScoring();
+        if (arrayScoring != ScoredVmAllocationPolicy.ArrayScoring.OFF) {
+            System.out.println("Array scoring | " + arrayScoring + " | kernel: "
+                    + HostScoreArrays.kernel(arrayScoring == ScoredVmAllocationPolicy.ArrayScoring.VECTOR).name()
+                    + (arrayScoring == ScoredVmAllocationPolicy.ArrayScoring.VECTOR && !HostScoreArrays.VECTOR_API_AVAILABLE
+                    ? " (start the JVM with --add-modules jdk.incubator.vector for SIMD)"
+                    : ""));
         }
-
-        ResultsLogger.writeResearchOutputs(
-                allMetrics,
-                runs,
+        final int workers = fitWorkersToHeap(
+                getIntEnv("EVAL_WORKERS", Runtime.getRuntime().availableProcessors()),
                 hostCount,
                 vmCount,
                 cloudletCount
         );
+        // Completed experiments go to a durable run log; EVAL_RESUME=true replays the ones of
+        // the same campaign configuration and only runs what is missing. Without it the log
+        // keeps earlier campaigns and marks where this one starts.
+        final boolean resume = getBooleanEnv("EVAL_RESUME", false);
+        final long configHash = RunLog.configHash(campaignConfiguration(hostCount, vmCount, cloudletCount, zones));
+        try (RunLog runLog = RunLog.open(Path.of("results", "evaluation_run_log.bin"), configHash, resume);
+             ResultsLogger.ResearchOutputWriter writer = ResultsLogger.openResearchOutputs(
+                     runs,
+                     hostCount,
+                     vmCount,
+                     cloudletCount,
+                     getBooleanEnv("CONSOLIDATION", false),
+                     getIntEnv("TEMPORAL_SHIFT_PCT", 0) > 0)) {
+            if (resume) {
+                System.out.printf(
+                        Locale.US,
+                        "Resume | %d completed experiments read from %s in %.1f ms%n",
+                        runLog.getReplayed().size(),
+                        runLog.getFile().toAbsolutePath(),
+                        runLog.getReplayMillis()
+                );
+            }
+            if (minRuns < runs) {
+                writer.setStoppingRule(String.format(
+                        Locale.US,
+                        "%d to %d runs per policy, until the energy and carbon 95%% CI half-widths are within %.2f%% of the mean",
+                        minRuns,
+                        runs,
+                        ciTargetPct
+                ));
+            }
+            writer.setWorkers(workers);
+            runCampaign(
+                    minRuns,
+                    runs,
+                    ciTargetPct / 100.0,
+                    workers,
+                    hostCount,
+                    vmCount,
+                    cloudletCount,
+                    zones,
+                    carbonIntensityProvider,
+                    writer,
+                    runLog
+            );
+            writer.finish();
+        }
 
+        if (carbonIntensityProvider instanceof RealTimeCarbonIntensityProvider) {
+            final RealTimeCarbonIntensityProvider realTime = (RealTimeCarbonIntensityProvider) carbonIntensityProvider;
+            System.out.printf(
+                    "Carbon intensity cache | hits: %d | misses: %d | stale served: %d"
+                            + " | from cache file: %d | network requests: %d%n",
+                    realTime.getHitCount(),
+                    realTime.getMissCount(),
+                    realTime.getStaleServedCount(),
+                    realTime.getPersistentHitCount(),
+                    realTime.getNetworkRequestCount()
+            );
+            System.out.printf(
+                    Locale.US,
+                    "Carbon intensity API | failed: %d | short-circuited: %d | breaker trips: %d"
+                            + " | rate-limited: %d | latency p50 %.1f ms, p99 %.1f ms%n",
+                    realTime.getFailedRequestCount(),
+                    realTime.getShortCircuitedCount(),
+                    realTime.getCircuitBreakerTripCount(),
+                    realTime.getRateLimitedCount(),
+                    realTime.getFetchLatencyPercentileMillis(50.0),
+                    realTime.getFetchLatencyPercentileMillis(99.0)
+            );
+            final IntensityCacheFile cacheFile = realTime.getPersistentCache();
+            if (cacheFile != null) {
+                System.out.printf(
+                        "Carbon intensity cache file | %s | %d slots | evictions: %d%n",
+                        cacheFile.getFile(),
+                        cacheFile.getSlotCount(),
+                        cacheFile.getEvictions()
+                );
+            }
+        }
         System.out.println("Raw metrics written to: "
                 + Path.of("results", "evaluation_raw_metrics.csv").toAbsolutePath());
         System.out.println("Policy summary written to: "
@@ -82,110 +187,919 @@ public class CarbonSimulation {
                 + Path.of("results", "evaluation_research_summary.txt").toAbsolutePath());
     }
 
-    private static ResultsLogger.EvaluationMetrics runSingleExperiment(
+    /**
+     * The requested worker count, lowered so that as many experiments fit in the heap at once:
+     * each builds its own fleet, VMs and cloudlets. Measuring their retained bytes per object
+     * builds a sample and collects garbage several times, so it is only done when
+     * FOOTPRINT_REPORT is set, by default for a campaign of at least
+     * {@value #LARGE_CAMPAIGN_OBJECTS} objects, or when the workers' objects at
+     * {@value #ROUGH_BYTES_PER_OBJECT} bytes each would take half the heap. The measured
+     * sizes are printed when FOOTPRINT_REPORT is set. The heap an experiment needs is
+     * extrapolated from the sample, not measured on the experiment itself.
+     *
+     * <p>A trace workload reads its jobs lazily, but the broker keeps the VM and cloudlet of
+     * every job until the run ends, so it counts one of each per job in the trace.</p>
+     */
+    private static int fitWorkersToHeap(
+            final int requestedWorkers,
+            final int hostCount,
+            final int vmCount,
+            final int cloudletCount) {
+        final String workloadTrace = System.getenv("WORKLOAD_TRACE_FILE");
+        final long jobs = workloadTrace == null || workloadTrace.isBlank()
+                ? -1L
+                : WorkloadTraceReader.countJobs(Path.of(workloadTrace.trim()));
+        final long vms = jobs < 0 ? vmCount : jobs;
+        final long cloudlets = jobs < 0 ? cloudletCount : jobs;
+        final long objects = hostCount + vms + cloudlets;
+        final boolean report = getBooleanEnv("FOOTPRINT_REPORT", objects >= LARGE_CAMPAIGN_OBJECTS);
+        final long maxHeap = Runtime.getRuntime().maxMemory();
+        final boolean nearHeap = requestedWorkers > 1
+                && RUN_HEAP_FACTOR * ROUGH_BYTES_PER_OBJECT * objects * requestedWorkers >= maxHeap / 2.0;
+        if (!report && !nearHeap) {
+            return requestedWorkers;
+        }
+
+        final FleetBuilder.Footprint footprint = FleetBuilder.of(System.getenv("HOST_CLASSES"), FOOTPRINT_SAMPLE)
+                .measureFootprint(FOOTPRINT_SAMPLE, CarbonSimulation::createVMs, CarbonSimulation::createCloudlets);
+        final long perExperiment = Math.round(RUN_HEAP_FACTOR * footprint.bytesFor(hostCount, vms, cloudlets));
+        final int workers = (int) Math.max(1, Math.min(requestedWorkers, maxHeap / Math.max(1, perExperiment)));
+        if (!report) {
+            return workers;
+        }
+        System.out.printf(
+                Locale.US,
+                "Footprint | %.0f bytes/host | %.0f bytes/VM | %.0f bytes/cloudlet"
+                        + " | ~%.2f GB per experiment of %d hosts, %d VMs, %d cloudlets (estimated from %d sampled)"
+                        + " | heap %.2f GB | workers: %d of %d%s%n",
+                footprint.bytesPerHost(),
+                footprint.bytesPerVm(),
+                footprint.bytesPerCloudlet(),
+                perExperiment / 1e9,
+                hostCount,
+                vms,
+                cloudlets,
+                FOOTPRINT_SAMPLE,
+                maxHeap / 1e9,
+                workers,
+                requestedWorkers,
+                perExperiment > maxHeap ? " (one experiment may not fit, raise -Xmx)" : ""
+        );
+        return workers;
+    }
+
+    /**
+     * Runs the (run, policy) experiments on a pool of {@code workers} threads.
+     * Each experiment owns its CloudSimPlus instance; only the carbon provider is shared.
+     * Metrics are handed to {@code writer} and console lines printed in submission order
+     * as soon as each experiment and all earlier ones are done, so the output does not depend
+     * on the worker count and finished results are not retained.
+     *
+     * <p>Every policy first gets {@code minRuns} runs, submitted run-then-policy. Once those
+     * have completed, a policy keeps getting runs, up to {@code maxRuns}, while the relative
+     * 95% confidence interval half-width of its mean energy or carbon is above
+     * {@code targetRelativeHalfWidth}. With {@code minRuns == maxRuns} the run count is fixed.</p>
+     *
+     * <p>Experiments replayed from {@code runLog} are handed to {@code writer} first, with their
+     * placement stats, and count as completed, so they are not run again; see {@link #replay}. Each new result is appended to the log, which
+     * is synced whenever the campaign is about to wait for the next experiment.</p>
+     */
+    private static void runCampaign(
+            final int minRuns,
+            final int maxRuns,
+            final double targetRelativeHalfWidth,
+            final int workers,
+            final int hostCount,
+            final int vmCount,
+            final int cloudletCount,
+            final List<String> zones,
+            final CarbonIntensityProvider carbonIntensityProvider,
+            final ResultsLogger.ResearchOutputWriter writer,
+            final RunLog runLog) {
+        final List<String> policies = campaignPolicies();
+        final Map<String, Integer> placementSamples = placementSamples();
+        final Set<String> logged = replay(
+                runLog,
+                policies,
+                minRuns,
+                maxRuns,
+                targetRelativeHalfWidth,
+                placementSamples,
+                writer
+        );
+        final ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            final Deque<Future<ExperimentOutcome>> outcomes = new ArrayDeque<>();
+            final Map<String, Integer> issuedRuns = new HashMap<>();
+            final Map<String, Integer> runsInFlight = new HashMap<>();
+            for (String policyName : policies) {
+                issuedRuns.put(policyName, 0);
+                runsInFlight.put(policyName, 0);
+            }
+            // Extra runs are only judged on completed ones, so keep just enough in flight per
+            // policy to fill the pool; each one beyond that could overshoot the target.
+            final int lookahead = Math.max(1, workers / policies.size());
+            final BiConsumer<Integer, String> submit = (runId, policyName) -> {
+                issuedRuns.merge(policyName, 1, Integer::sum);
+                if (logged.contains(runId + ":" + policyName)) {
+                    return;
+                }
+                runsInFlight.merge(policyName, 1, Integer::sum);
+                outcomes.add(executor.submit(() -> runSingleExperiment(
+                        runId,
+                        policyName,
+                        hostCount,
+                        vmCount,
+                        cloudletCount,
+                        zones,
+                        carbonIntensityProvider,
+                        CarbonVmAllocationPolicy.Weights.DEFAULT
+                )));
+            };
+            final Consumer<String> topUp = policyName -> {
+                final double relativeHalfWidth = writer.relativeHalfWidth(policyName);
+                final int completedRuns = issuedRuns.get(policyName) - runsInFlight.get(policyName);
+                if (completedRuns >= minRuns && relativeHalfWidth > targetRelativeHalfWidth) {
+                    while (runsInFlight.get(policyName) < lookahead && issuedRuns.get(policyName) < maxRuns) {
+                        submit.accept(issuedRuns.get(policyName) + 1, policyName);
+                    }
+                }
+                if (runsInFlight.get(policyName) == 0 && minRuns < maxRuns) {
+                    System.out.printf(
+                            Locale.US,
+                            "Adaptive | %s | stopped after %d runs, energy/carbon 95%% CI half-width %.2f %%%n",
+                            policyName,
+                            issuedRuns.get(policyName),
+                            relativeHalfWidth * 100.0
+                    );
+                }
+            };
+            for (int run = 1; run <= minRuns; run++) {
+                for (String policyName : policies) {
+                    submit.accept(run, policyName);
+                }
+            }
+            // A resumed policy may already have all its minimum runs.
+            for (String policyName : policies) {
+                if (runsInFlight.get(policyName) == 0) {
+                    topUp.accept(policyName);
+                }
+            }
+
+            while (!outcomes.isEmpty()) {
+                final Future<ExperimentOutcome> next = outcomes.poll();
+                if (!next.isDone()) {
+                    runLog.sync();
+                }
+                final ExperimentOutcome completed = awaitOutcome(next);
+                final String policyName = completed.metrics.policyName();
+                System.out.print(completed.console);
+                writer.append(completed.metrics);
+                runLog.append(completed.metrics, completed.hostsUsed, completed.placementStats);
+                if (completed.regionMetrics != null) {
+                    writer.appendRegionMetrics(completed.metrics.runId(), policyName, completed.regionMetrics);
+                }
+                if (completed.placementStats != null) {
+                    appendPlacementStats(
+                            writer,
+                            completed.metrics,
+                            completed.hostsUsed,
+                            completed.placementStats,
+                            placementSamples
+                    );
+                }
+
+                runsInFlight.merge(policyName, -1, Integer::sum);
+                topUp.accept(policyName);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Hands the experiments replayed from {@code runLog} to {@code writer} and returns their
+     * "run:policy" keys, so they are not run again.
+     *
+     * <p>A policy's replayed runs are taken in run order, the way the campaign would have
+     * reached them: its first {@code minRuns}, then further ones up to {@code maxRuns} only
+     * while its confidence interval is still above the target and no run is missing before
+     * them. Runs an earlier session had in flight when it met the target are left out, so
+     * resuming does not overshoot.</p>
+     */
+    private static Set<String> replay(
+            final RunLog runLog,
+            final List<String> policies,
+            final int minRuns,
+            final int maxRuns,
+            final double targetRelativeHalfWidth,
+            final Map<String, Integer> placementSamples,
+            final ResultsLogger.ResearchOutputWriter writer) {
+        final Map<String, Map<Integer, RunLog.Entry>> entriesByPolicy = new HashMap<>();
+        for (RunLog.Entry entry : runLog.getReplayed()) {
+            entriesByPolicy.computeIfAbsent(entry.metrics().policyName(), policyName -> new TreeMap<>())
+                    .putIfAbsent(entry.metrics().runId(), entry);
+        }
+
+        final Set<String> logged = new HashSet<>();
+        int accepted = 0;
+        for (String policyName : policies) {
+            int taken = 0;
+            for (RunLog.Entry entry : entriesByPolicy.getOrDefault(policyName, Map.of()).values()) {
+                final int runId = entry.metrics().runId();
+                if (runId > minRuns && (runId > maxRuns || runId != taken + 1
+                        || writer.relativeHalfWidth(policyName) <= targetRelativeHalfWidth)) {
+                    break;
+                }
+                taken++;
+                accepted++;
+                logged.add(runId + ":" + policyName);
+                writer.append(entry.metrics());
+                if (entry.placementStats() != null) {
+                    appendPlacementStats(
+                            writer,
+                            entry.metrics(),
+                            entry.hostsUsed(),
+                            entry.placementStats(),
+                            placementSamples
+                    );
+                }
+            }
+        }
+        final int readCount = entriesByPolicy.values().stream().mapToInt(Map::size).sum();
+        if (accepted < readCount) {
+            System.out.printf("Resume | %d logged experiments past the stopping rule not replayed%n", readCount - accepted);
+        }
+        return logged;
+    }
+
+    private static void appendPlacementStats(
+            final ResultsLogger.ResearchOutputWriter writer,
+            final ResultsLogger.EvaluationMetrics metrics,
+            final int hostsUsed,
+            final PlacementStats placementStats,
+            final Map<String, Integer> placementSamples) {
+        final String policyName = metrics.policyName();
+        writer.appendPlacementStats(metrics.runId(), policyName, placementStats);
+        writer.recordPlacementOutcome(
+                metrics,
+                exactPolicyName(policyName),
+                policyName.endsWith(SAMPLED_SUFFIX) ? placementSamples.get(exactPolicyName(policyName)) : 0,
+                hostsUsed,
+                placementStats.getMeanMicros()
+        );
+    }
+
+    private static ExperimentOutcome awaitOutcome(final Future<ExperimentOutcome> outcome) {
+        try {
+            return outcome.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for an experiment.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Experiment failed.", e.getCause());
+        }
+    }
+
+    /**
+     * Runs one CIAVMP experiment with the given score weights, for {@link ParameterSweep}.
+     */
+    static ResultsLogger.EvaluationMetrics runWeightedExperiment(
+            final int runId,
+            final int hostCount,
+            final int vmCount,
+            final int cloudletCount,
+            final List<String> zones,
+            final CarbonIntensityProvider carbonIntensityProvider,
+            final CarbonVmAllocationPolicy.Weights weights) {
+        return runSingleExperiment(
+                runId,
+                "CIAVMP",
+                hostCount,
+                vmCount,
+                cloudletCount,
+                zones,
+                carbonIntensityProvider,
+                weights
+        ).metrics;
+    }
+
+    /**
+     * Runs one policy on a fresh simulation. Host energy is metered as the run goes and priced
+     * at the mean intensity of each interval, see {@link #pricingStepSeconds}, when
+     * {@link #meterEnergy} asks for it; otherwise it is settled after the run.
+     */
+    private static ExperimentOutcome runSingleExperiment(
             final int runId,
             final String policyName,
             final int hostCount,
             final int vmCount,
             final int cloudletCount,
             final List<String> zones,
-            final CarbonIntensityProvider carbonIntensityProvider) {
+            final CarbonIntensityProvider carbonIntensityProvider,
+            final CarbonVmAllocationPolicy.Weights weights) {
 
         final CloudSimPlus simulation = new CloudSimPlus();
         final DatacenterBroker broker = new DatacenterBrokerSimple(simulation);
 
-        final List<Host> hosts = createHosts(hostCount);
-        final Map<Host, String> hostRegionMap = createHostRegionMap(hosts, zones);
-        final VmAllocationPolicy policy = createPolicy(
-                policyName,
+        final FleetBuilder fleet = FleetBuilder.of(System.getenv("HOST_CLASSES"), hostCount);
+        final List<Host> hosts = fleet.build();
+        final HostMetadata hostMetadata = createHostRegionMap(hosts, zones, fleet.classes());
+        final IntensityProfile intensityProfile = new IntensityProfile(
+                hostMetadata,
                 carbonIntensityProvider,
-                hostRegionMap
+                pricingStepSeconds(carbonIntensityProvider)
         );
+        final HostEnergyMeter energyMeter = meterEnergy(carbonIntensityProvider)
+                ? new HostEnergyMeter(simulation, hosts, hostMetadata, intensityProfile)
+                : new HostEnergyMeter(hosts, hostMetadata, intensityProfile);
+        final RegionTopology topology = getBooleanEnv("REGION_SHARDING", false)
+                ? createRegionTopology(
+                        simulation,
+                        hosts,
+                        hostMetadata,
+                        energyMeter,
+                        runId,
+                        policyName,
+                        carbonIntensityProvider,
+                        weights
+                )
+                : null;
+        final BatchVmAllocationPolicy policy = topology != null
+                ? null
+                : createPolicy(runId, policyName, carbonIntensityProvider, hostMetadata, weights);
+        if (policy != null && placementStatsEnabled()) {
+            policy.setPlacementStats(new PlacementStats());
+        }
+        if (policy != null) {
+            policy.setEnergyMeter(energyMeter);
+        }
 
-        new DatacenterSimple(simulation, hosts, policy);
+        final DatacenterSimple datacenter = policy == null ? null : new DatacenterSimple(simulation, hosts, policy);
+        final ConsolidationEngine consolidation = datacenter != null && getBooleanEnv("CONSOLIDATION", false)
+                ? createConsolidationEngine(datacenter, hosts, hostMetadata, carbonIntensityProvider)
+                : null;
+        final Supplier<PlacementStats> placementStats = topology != null
+                ? topology::getPlacementStats
+                : policy::getPlacementStats;
+
+        final String workloadTrace = System.getenv("WORKLOAD_TRACE_FILE");
+        if (workloadTrace != null && !workloadTrace.isBlank()) {
+            return runTraceExperiment(
+                    runId,
+                    policyName,
+                    simulation,
+                    topology != null ? topology : (lastDatacenter, vm) -> datacenter,
+                    broker,
+                    hosts,
+                    hostMetadata,
+                    energyMeter,
+                    Path.of(workloadTrace.trim()),
+                    consolidation,
+                    topology,
+                    placementStats
+            );
+        }
 
         final List<Vm> vmList = createVMs(vmCount);
         final List<Cloudlet> cloudletList = createCloudlets(cloudletCount);
+        final StringBuilder console = new StringBuilder();
+
+        if (topology != null) {
+            broker.setDatacenterMapper(topology);
+        } else if (getBooleanEnv("BATCH_PLACEMENT", false)) {
+            final BatchVmAllocationPolicy.BatchPlacement placement = policy.placeAll(vmList);
+            console.append(String.format(
+                    Locale.US,
+                    "Run %d | %s | batch placement: %d/%d VMs on %d hosts in %.3f ms%n",
+                    runId,
+                    policyName,
+                    placement.plannedVms(),
+                    placement.requestedVms(),
+                    placement.hostsUsed(),
+                    placement.elapsedMillis()
+            ));
+        }
 
         broker.submitVmList(vmList);
-        broker.submitCloudletList(cloudletList);
         bindCloudletsToVms(broker, cloudletList, vmList);
+        final TemporalShiftScheduler shifting = deferCloudlets(
+                broker,
+                cloudletList,
+                hostMetadata,
+                carbonIntensityProvider,
+                energyMeter.intensityProfile()
+        );
 
         simulation.start();
+        energyMeter.finish(simulation.clock(), cloudletList);
         final long finishedCloudlets = broker.getCloudletFinishedList().size();
-        System.out.printf(
+        console.append(String.format(
                 "Run %d | %s | finished cloudlets: %d%n",
                 runId,
                 policyName,
                 finishedCloudlets
+        ));
+        appendConsolidation(console, runId, policyName, consolidation);
+        appendTemporalShift(console, runId, policyName, shifting);
+        final List<ResultsLogger.RegionMetrics> regionMetrics = topology == null
+                ? null
+                : ResultsLogger.buildRegionMetrics(cloudletList, energyMeter);
+        appendRegionTopology(console, runId, policyName, topology, regionMetrics);
+        appendSampledPlacement(console, runId, policyName, placementStats.get());
+
+        return new ExperimentOutcome(
+                buildMetrics(
+                        runId,
+                        policyName,
+                        cloudletList,
+                        energyMeter,
+                        consolidation,
+                        shifting
+                ),
+                console.toString(),
+                placementStats.get(),
+                regionMetrics,
+                ResultsLogger.hostsUsed(cloudletList, hosts, hostMetadata)
+        );
+    }
+
+    /**
+     * Drives the experiment from WORKLOAD_TRACE_FILE instead of the synthetic workload.
+     * Jobs are submitted as the clock reaches their arrival time, and each job's VM is
+     * destroyed a second after its cloudlet finishes, returning its capacity. Energy is
+     * accounted as in a synthetic run. The ingest line's peak heap is the whole JVM's, so
+     * it is the run's own only with EVAL_WORKERS=1.
+     */
+    private static ExperimentOutcome runTraceExperiment(
+            final int runId,
+            final String policyName,
+            final CloudSimPlus simulation,
+            final BiFunction<Datacenter, Vm, Datacenter> datacenterMapper,
+            final DatacenterBroker broker,
+            final List<Host> hosts,
+            final HostMetadata hostMetadata,
+            final HostEnergyMeter energyMeter,
+            final Path workloadTrace,
+            final ConsolidationEngine consolidation,
+            final RegionTopology topology,
+            final Supplier<PlacementStats> placementStats) {
+        // The default mapper stops offering the datacenter once each one has been tried,
+        // which silently drops VMs submitted while the simulation is running.
+        broker.setDatacenterMapper(datacenterMapper);
+        broker.setVmDestructionDelay(1.0);
+        // Idle gaps in the trace must not end the broker; the run ends once the trace is exhausted.
+        broker.setShutdownWhenIdle(false);
+
+        final StringBuilder console = new StringBuilder();
+        try (WorkloadTraceReader reader = new WorkloadTraceReader(workloadTrace, broker)) {
+            simulation.start();
+            energyMeter.finish(simulation.clock(), broker.getCloudletSubmittedList());
+            console.append(String.format(
+                    Locale.US,
+                    "Run %d | %s | trace ingest: %d records in %.3f s (%.0f records/s), peak batch %d jobs, "
+                            + "peak JVM heap %.1f MB%n",
+                    runId,
+                    policyName,
+                    reader.getRecords(),
+                    reader.getIngestSeconds(),
+                    reader.getRecordsPerSecond(),
+                    reader.getPeakBatchJobs(),
+                    reader.getPeakHeapBytes() / (1024.0 * 1024.0)
+            ));
+        }
+
+        final List<Cloudlet> cloudletList = broker.getCloudletSubmittedList();
+        console.append(String.format(
+                "Run %d | %s | finished cloudlets: %d | rejected VMs: %d%n",
+                runId,
+                policyName,
+                broker.getCloudletFinishedList().size(),
+                broker.getVmFailedList().size()
+        ));
+        appendConsolidation(console, runId, policyName, consolidation);
+        final List<ResultsLogger.RegionMetrics> regionMetrics = topology == null
+                ? null
+                : ResultsLogger.buildRegionMetrics(cloudletList, energyMeter);
+        appendRegionTopology(console, runId, policyName, topology, regionMetrics);
+        appendSampledPlacement(console, runId, policyName, placementStats.get());
+
+        return new ExperimentOutcome(
+                buildMetrics(
+                        runId,
+                        policyName,
+                        cloudletList,
+                        energyMeter,
+                        consolidation,
+                        null
+                ),
+                console.toString(),
+                placementStats.get(),
+                regionMetrics,
+                ResultsLogger.hostsUsed(cloudletList, hosts, hostMetadata)
+        );
+    }
+
+    /**
+     * One datacenter per zone with hierarchical placement (REGION_SHARDING). Regions whose
+     * ranking key is within REGION_TIE_PCT percent (default 1) of the best are searched in
+     * parallel. CIAVMP ranks regions by carbon intensity; the other policies by free capacity.
+     */
+    private static RegionTopology createRegionTopology(
+            final CloudSimPlus simulation,
+            final List<Host> hosts,
+            final HostMetadata hostMetadata,
+            final HostEnergyMeter energyMeter,
+            final int runId,
+            final String policyName,
+            final CarbonIntensityProvider carbonIntensityProvider,
+            final CarbonVmAllocationPolicy.Weights weights) {
+        if (getBooleanEnv("CONSOLIDATION", false) || getBooleanEnv("BATCH_PLACEMENT", false)) {
+            throw new IllegalArgumentException("REGION_SHARDING cannot be combined with CONSOLIDATION or BATCH_PLACEMENT.");
+        }
+
+        final boolean placementStats = placementStatsEnabled();
+        return new RegionTopology(
+                simulation,
+                hosts,
+                hostMetadata,
+                regionMetadata -> {
+                    final BatchVmAllocationPolicy policy = createPolicy(
+                            runId,
+                            policyName,
+                            carbonIntensityProvider,
+                            regionMetadata,
+                            weights
+                    );
+                    if (placementStats) {
+                        policy.setPlacementStats(new PlacementStats());
+                    }
+                    policy.setEnergyMeter(energyMeter);
+                    return policy;
+                },
+                carbonIntensityProvider,
+                exactPolicyName(policyName).equals("CIAVMP"),
+                getDoubleEnv("REGION_TIE_PCT", 1.0) / 100.0
+        );
+    }
+
+    private static void appendRegionTopology(
+            final StringBuilder console,
+            final int runId,
+            final String policyName,
+            final RegionTopology topology,
+            final List<ResultsLogger.RegionMetrics> regionMetrics) {
+        if (topology == null) {
+            return;
+        }
+
+        console.append(String.format(
+                Locale.US,
+                "Run %d | %s | region routing: %d decisions, %d tied, %.2f regions searched per VM, %d unplaceable%n",
+                runId,
+                policyName,
+                topology.getDecisions(),
+                topology.getTiedDecisions(),
+                topology.getMeanRegionsSearched(),
+                topology.getUnplaceable()
+        ));
+        final Map<String, Long> routedVms = topology.getRoutedVms();
+        for (ResultsLogger.RegionMetrics region : regionMetrics) {
+            console.append(String.format(
+                    Locale.US,
+                    "Run %d | %s | region %s: %d hosts, %d VMs routed, CPU %.2f %%, energy %.6f kWh, carbon %.6f kg CO2%n",
+                    runId,
+                    policyName,
+                    region.region(),
+                    region.hosts(),
+                    routedVms.getOrDefault(region.region(), 0L),
+                    region.cpuUtilizationPct(),
+                    region.energyKwh(),
+                    region.carbonKg()
+            ));
+        }
+    }
+
+    /**
+     * Periodic consolidation configured by CONSOLIDATION_INTERVAL (seconds), CONSOLIDATION_MAX_MIGRATIONS
+     * (per interval) and the CONSOLIDATION_LOWER_PCT / CONSOLIDATION_UPPER_PCT host CPU thresholds.
+     */
+    private static ConsolidationEngine createConsolidationEngine(
+            final DatacenterSimple datacenter,
+            final List<Host> hosts,
+            final HostMetadata hostMetadata,
+            final CarbonIntensityProvider carbonIntensityProvider) {
+        return new ConsolidationEngine(
+                datacenter,
+                hosts,
+                hostMetadata,
+                carbonIntensityProvider,
+                getIntEnv("CONSOLIDATION_INTERVAL", 5),
+                getIntEnv("CONSOLIDATION_MAX_MIGRATIONS", 20),
+                getIntEnv("CONSOLIDATION_LOWER_PCT", 40) / 100.0,
+                getIntEnv("CONSOLIDATION_UPPER_PCT", 80) / 100.0
         );
+    }
+
+    private static void appendSampledPlacement(
+            final StringBuilder console,
+            final int runId,
+            final String policyName,
+            final PlacementStats stats) {
+        if (stats == null || stats.getSampledDecisions() == 0) {
+            return;
+        }
+
+        console.append(String.format(
+                Locale.US,
+                "Run %d | %s | sampled placement: %d decisions, %d fell back to the full search,"
+                        + " %.1f hosts examined and %.2f us per decision%n",
+                runId,
+                policyName,
+                stats.getSampledDecisions(),
+                stats.getSampleFallbacks(),
+                stats.getMeanHostsExamined(),
+                stats.getMeanMicros()
+        ));
+    }
+
+    private static void appendConsolidation(
+            final StringBuilder console,
+            final int runId,
+            final String policyName,
+            final ConsolidationEngine consolidation) {
+        if (consolidation == null) {
+            return;
+        }
+
+        console.append(String.format(
+                Locale.US,
+                "Run %d | %s | consolidation: %d migrations, %d hosts powered down, planning %.3f ms over %d rounds%n",
+                runId,
+                policyName,
+                consolidation.getMigrations(),
+                consolidation.getPoweredDownHosts(),
+                consolidation.getPlanningMillis(),
+                consolidation.getRounds()
+        ));
+    }
+
+    /**
+     * Whether host energy is metered while the run goes rather than settled after it from the
+     * CPU time of each cloudlet: consolidation moves VMs between hosts and powers hosts down,
+     * temporal shifting leaves hosts idle between releases, and a carbon trace changes the
+     * intensity during the run. Without any of them, settling after the run gives the numbers
+     * runs had before metering.
+     */
+    private static boolean meterEnergy(final CarbonIntensityProvider carbonIntensityProvider) {
+        return getBooleanEnv("CONSOLIDATION", false)
+                || getIntEnv("TEMPORAL_SHIFT_PCT", 0) > 0
+                || carbonIntensityProvider instanceof TraceCarbonIntensityProvider;
+    }
 
+    /**
+     * Step of the {@link IntensityProfile} energy is priced with: CARBON_PRICING_STEP seconds,
+     * by default the step of a replayed trace, so that each step holds one sample, or 300.
+     */
+    private static int pricingStepSeconds(final CarbonIntensityProvider carbonIntensityProvider) {
+        return getIntEnv(
+                "CARBON_PRICING_STEP",
+                carbonIntensityProvider instanceof TraceCarbonIntensityProvider
+                        ? ((TraceCarbonIntensityProvider) carbonIntensityProvider).getStepSeconds()
+                        : 300
+        );
+    }
+
+    /**
+     * Submits the cloudlets to the broker, except that when TEMPORAL_SHIFT_PCT is set that
+     * percentage of them, spread evenly over the list, is handed to a {@link TemporalShiftScheduler}
+     * with a deadline of TEMPORAL_SHIFT_DEADLINE seconds (default one day) and a forecast step of
+     * TEMPORAL_SHIFT_STEP seconds (default 300). Returns the scheduler, or null when nothing is deferred.
+     *
+     * <p>The broker then destroys each VM as soon as it is idle and no deferred cloudlet is held
+     * for it, instead of keeping every VM, and so every host, on until the last release.</p>
+     */
+    private static TemporalShiftScheduler deferCloudlets(
+            final DatacenterBroker broker,
+            final List<Cloudlet> cloudletList,
+            final HostMetadata hostMetadata,
+            final CarbonIntensityProvider carbonIntensityProvider,
+            final IntensityProfile intensityProfile) {
+        final int deferrablePct = Math.min(100, getIntEnv("TEMPORAL_SHIFT_PCT", 0));
+        if (deferrablePct == 0) {
+            broker.submitCloudletList(cloudletList);
+            return null;
+        }
+
+        final TemporalShiftScheduler shifting = new TemporalShiftScheduler(
+                broker,
+                hostMetadata,
+                carbonIntensityProvider,
+                intensityProfile,
+                getIntEnv("TEMPORAL_SHIFT_STEP", 300)
+        );
+        final double deadline = getIntEnv("TEMPORAL_SHIFT_DEADLINE", 86_400);
+        final List<Cloudlet> immediate = new ArrayList<>();
+        for (int i = 0; i < cloudletList.size(); i++) {
+            if ((i * deferrablePct) % 100 + deferrablePct >= 100) {
+                shifting.defer(cloudletList.get(i), deadline);
+            } else {
+                immediate.add(cloudletList.get(i));
+            }
+        }
+
+        // Deferred cloudlets arrive after the broker may have run out of work; keep it alive
+        // until the simulation runs out of events instead.
+        broker.setShutdownWhenIdle(false);
+        broker.setVmDestructionDelayFunction(vm -> shifting.isHolding(vm) ? -1.0 : 0.0);
+        broker.submitCloudletList(immediate);
+        return shifting;
+    }
+
+    private static void appendTemporalShift(
+            final StringBuilder console,
+            final int runId,
+            final String policyName,
+            final TemporalShiftScheduler shifting) {
+        if (shifting == null) {
+            return;
+        }
+
+        console.append(String.format(
+                Locale.US,
+                "Run %d | %s | temporal shift: %d/%d cloudlets released, mean delay %.1f s, "
+                        + "slack used %.2f %%, carbon saved %.6f kg CO2%n",
+                runId,
+                policyName,
+                shifting.getReleasedCloudlets(),
+                shifting.getDeferredCloudlets(),
+                shifting.getMeanDelaySeconds(),
+                shifting.getSlackUsedPercent(),
+                shifting.getCarbonSavedKg()
+        ));
+    }
+
+    private static ResultsLogger.EvaluationMetrics buildMetrics(
+            final int runId,
+            final String policyName,
+            final List<Cloudlet> cloudletList,
+            final HostEnergyMeter energyMeter,
+            final ConsolidationEngine consolidation,
+            final TemporalShiftScheduler shifting) {
         return ResultsLogger.buildMetrics(
                 runId,
                 policyName,
                 cloudletList,
-                hosts,
-                hostRegionMap,
-                carbonIntensityProvider
+                energyMeter,
+                consolidation == null ? 0L : consolidation.getMigrations(),
+                consolidation == null ? 0.0 : consolidation.getPlanningMillis(),
+                shifting == null ? 0L : shifting.getDeferredCloudlets(),
+                shifting == null ? 0.0 : shifting.getCarbonSavedKg(),
+                shifting == null ? 0.0 : shifting.getSlackUsedPercent()
         );
     }
 
-    private static VmAllocationPolicy createPolicy(
+    /**
+     * @param runId seeds the host sampling of a {@link #SAMPLED_SUFFIX} policy, together
+     *              with PLACEMENT_SAMPLE_SEED
+     */
+    private static BatchVmAllocationPolicy createPolicy(
+            final int runId,
             final String policyName,
             final CarbonIntensityProvider carbonIntensityProvider,
-            final Map<Host, String> hostRegionMap) {
-        switch (policyName) {
+            final HostMetadata hostMetadata,
+            final CarbonVmAllocationPolicy.Weights weights) {
+        switch (exactPolicyName(policyName)) {
             case "FIRST_FIT":
                 return new FirstFitVmAllocationPolicy();
             case "ENERGY_AWARE":
-                return new EnergyVmAllocationPolicy();
+                return configureScoring(
+                        new EnergyVmAllocationPolicy(getBooleanEnv("INDEXED_PLACEMENT", true), hostMetadata),
+                        runId,
+                        policyName
+                );
             case "CIAVMP":
-                return new CarbonVmAllocationPolicy(carbonIntensityProvider, hostRegionMap);
+                return configureScoring(
+                        new CarbonVmAllocationPolicy(
+                                carbonIntensityProvider,
+                                hostMetadata,
+                                getBooleanEnv("INDEXED_PLACEMENT", true),
+                                weights
+                        ),
+                        runId,
+                        policyName
+                );
             default:
                 throw new IllegalArgumentException("Unsupported policy: " + policyName);
         }
     }
 
-    private static void bindCloudletsToVms(
-            final DatacenterBroker broker,
-            final List<Cloudlet> cloudletList,
-            final List<Vm> vmList) {
-        for (int i = 0; i < cloudletList.size(); i++) {
-            broker.bindCloudletToVm(
-                    cloudletList.get(i),
-                    vmList.get(i % vmList.size())
+    /**
+     * ARRAY_SCORING=SCALAR or VECTOR scores every host from primitive arrays for single
+     * placements, overriding INDEXED_PLACEMENT; OFF (the default) keeps the scan or index.
+     * A {@link #SAMPLED_SUFFIX} policy samples its PLACEMENT_SAMPLES hosts per decision instead.
+     */
+    private static ScoredVmAllocationPolicy configureScoring(
+            final ScoredVmAllocationPolicy policy,
+            final int runId,
+            final String policyName) {
+        policy.setArrayScoring(arrayScoring());
+        if (policyName.endsWith(SAMPLED_SUFFIX)) {
+            policy.setSampledPlacement(
+                    placementSamples().get(exactPolicyName(policyName)),
+                    (long) getIntEnv("PLACEMENT_SAMPLE_SEED", 42) + runId
             );
         }
+        return policy;
     }
 
-    private static List<Host> createHosts(int number) {
-        List<Host> hostList = new ArrayList<>();
+    /**
+     * PLACEMENT_SAMPLES gives the hosts sampled per decision by the power-of-d-choices
+     * variant of each scored policy: a single number for both, or {@code POLICY:d} entries
+     * such as {@code ENERGY_AWARE:8,CIAVMP:16}. Unset or blank means no sampled variants.
+     */
+    static Map<String, Integer> placementSamples() {
+        final String value = System.getenv("PLACEMENT_SAMPLES");
+        final Map<String, Integer> samples = new LinkedHashMap<>();
+        if (value == null || value.isBlank()) {
+            return samples;
+        }
 
-        for (int i = 0; i < number; i++) {
+        for (String entry : value.split(",")) {
+            final String[] parts = entry.trim().split(":");
+            final List<String> policies = parts.length == 1 ? List.of("ENERGY_AWARE", "CIAVMP") : List.of(parts[0].trim());
+            final int sampleSize;
+            try {
+                sampleSize = Integer.parseInt(parts[parts.length - 1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid PLACEMENT_SAMPLES entry: " + entry, e);
+            }
+            if (parts.length > 2 || sampleSize <= 0) {
+                throw new IllegalArgumentException("Invalid PLACEMENT_SAMPLES entry: " + entry);
+            }
+            for (String policy : policies) {
+                if (!policy.equals("ENERGY_AWARE") && !policy.equals("CIAVMP")) {
+                    throw new IllegalArgumentException("Only ENERGY_AWARE and CIAVMP can sample hosts, got " + policy + ".");
+                }
+                samples.put(policy, sampleSize);
+            }
+        }
+        return samples;
+    }
 
-            List<Pe> peList = new ArrayList<>();
-            for (int j = 0; j < 4; j++) {
-                peList.add(new PeSimple(1000, new PeProvisionerSimple()));
+    /**
+     * The evaluated policies, each followed by its sampled variant if it has one.
+     */
+    private static List<String> campaignPolicies() {
+        final Map<String, Integer> samples = placementSamples();
+        final List<String> policies = new ArrayList<>();
+        for (String policyName : POLICIES) {
+            policies.add(policyName);
+            if (samples.containsKey(policyName)) {
+                policies.add(policyName + SAMPLED_SUFFIX);
             }
+        }
+        return policies;
+    }
 
-            HostSimple host = new HostSimple(
-                    16000, // RAM (MB)
-                    10000, // Bandwidth
-                    1000000, // Storage
-                    peList);
+    /**
+     * The policy a sampled variant approximates; other names are returned unchanged.
+     */
+    private static String exactPolicyName(final String policyName) {
+        return policyName.endsWith(SAMPLED_SUFFIX)
+                ? policyName.substring(0, policyName.length() - SAMPLED_SUFFIX.length())
+                : policyName;
+    }
 
-            host.setRamProvisioner(new ResourceProvisionerSimple());
-            host.setBwProvisioner(new ResourceProvisionerSimple());
-            host.setVmScheduler(new VmSchedulerTimeShared());
+    /**
+     * Placement stats are also needed for the decision times of the sampling gap report.
+     */
+    private static boolean placementStatsEnabled() {
+        return getBooleanEnv("PLACEMENT_STATS", false) || !placementSamples().isEmpty();
+    }
 
-            hostList.add(host);
+    private static ScoredVmAllocationPolicy.ArrayScoring arrayScoring() {
+        final String value = System.getenv("ARRAY_SCORING");
+        if (value == null || value.isBlank()) {
+            return ScoredVmAllocationPolicy.ArrayScoring.OFF;
         }
+        return ScoredVmAllocationPolicy.ArrayScoring.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
 
-        return hostList;
+    private static void bindCloudletsToVms(
+            final DatacenterBroker broker,
+            final List<Cloudlet> cloudletList,
+            final List<Vm> vmList) {
+        for (int i = 0; i < cloudletList.size(); i++) {
+            broker.bindCloudletToVm(
+                    cloudletList.get(i),
+                    vmList.get(i % vmList.size())
+            );
+        }
     }
 
     private static List<Vm> createVMs(int number) {
-        List<Vm> vmList = new ArrayList<>();
+        List<Vm> vmList = new ArrayList<>(number);
 
         for (int i = 0; i < number; i++) {
             Vm vm = new VmSimple(1000, 1);
@@ -201,7 +1115,7 @@ public class CarbonSimulation {
     }
 
     private static List<Cloudlet> createCloudlets(int number) {
-        List<Cloudlet> cloudletList = new ArrayList<>();
+        List<Cloudlet> cloudletList = new ArrayList<>(number);
 
         UtilizationModelDynamic utilization = new UtilizationModelDynamic(0.7);
 
@@ -217,19 +1131,47 @@ public class CarbonSimulation {
         return cloudletList;
     }
 
-    private static Map<Host, String> createHostRegionMap(
+    /**
+     * Without HOST_CLASSES, hosts get no power curve of their own, so CIAVMP keeps using the
+     * linear model of its weights (as varied by {@link ParameterSweep}).
+     */
+    private static HostMetadata createHostRegionMap(
             final List<Host> hostList,
-            final List<String> zones) {
-        final Map<Host, String> hostRegionMap = new IdentityHashMap<>();
+            final List<String> zones,
+            final List<HostClass> fleet) {
+        final String hostClasses = System.getenv("HOST_CLASSES");
+        if (hostClasses == null || hostClasses.isBlank()) {
+            return HostMetadata.roundRobin(hostList, zones, "US-CAL-CISO");
+        }
+        return HostMetadata.roundRobin(
+                hostList,
+                zones,
+                "US-CAL-CISO",
+                fleet.stream().map(HostClass::powerCurve).collect(Collectors.toList())
+        );
+    }
 
-        for (int i = 0; i < hostList.size(); i++) {
-            hostRegionMap.put(hostList.get(i), zones.get(i % zones.size()));
+    /**
+     * Replays CARBON_TRACE_FILE (binary or CSV) when set, starting at CARBON_TRACE_START
+     * (ISO-8601) or the beginning of the trace; otherwise uses live intensities.
+     */
+    static CarbonIntensityProvider createCarbonIntensityProvider(final List<String> zones) {
+        final String traceFile = System.getenv("CARBON_TRACE_FILE");
+        if (traceFile != null && !traceFile.isBlank()) {
+            final String traceStart = System.getenv("CARBON_TRACE_START");
+            return TraceCarbonIntensityProvider.open(
+                    Path.of(traceFile.trim()),
+                    traceStart == null || traceStart.isBlank() ? null : Instant.parse(traceStart.trim()),
+                    500.0
+            );
         }
 
-        return hostRegionMap;
+        final RealTimeCarbonIntensityProvider realTime = new RealTimeCarbonIntensityProvider();
+        realTime.prewarm(zones);
+        return realTime;
     }
 
-    private static List<String> resolveZones() {
+    static List<String> resolveZones() {
         final String configuredZones = System.getenv("CARBON_ZONES");
         if (configuredZones == null || configuredZones.isBlank()) {
             return List.of(
@@ -252,7 +1194,49 @@ public class CarbonSimulation {
         return parsedZones;
     }
 
-    private static int getIntEnv(final String envVar, final int defaultValue) {
+    /**
+     * Canonical description of everything that changes a run's results, so a resumed campaign
+     * only reuses logged runs of the same configuration, and a sweep only reuses rows of it.
+     * Run count and workers are left out.
+     */
+    static String campaignConfiguration(
+            final int hostCount,
+            final int vmCount,
+            final int cloudletCount,
+            final List<String> zones) {
+        final StringBuilder configuration = new StringBuilder()
+                .append("hosts=").append(hostCount)
+                .append(";vms=").append(vmCount)
+                .append(";cloudlets=").append(cloudletCount)
+                .append(";zones=").append(String.join(",", zones));
+        for (String envVar : List.of(
+                "BATCH_PLACEMENT",
+                "INDEXED_PLACEMENT",
+                "ARRAY_SCORING",
+                "PLACEMENT_SAMPLES",
+                "PLACEMENT_SAMPLE_SEED",
+                "CONSOLIDATION",
+                "CONSOLIDATION_INTERVAL",
+                "CONSOLIDATION_MAX_MIGRATIONS",
+                "CONSOLIDATION_LOWER_PCT",
+                "CONSOLIDATION_UPPER_PCT",
+                "TEMPORAL_SHIFT_PCT",
+                "TEMPORAL_SHIFT_DEADLINE",
+                "TEMPORAL_SHIFT_STEP",
+                "HOST_CLASSES",
+                "REGION_SHARDING",
+                "REGION_TIE_PCT",
+                "WORKLOAD_TRACE_FILE",
+                "CARBON_TRACE_FILE",
+                "CARBON_TRACE_START",
+                "CARBON_PRICING_STEP")) {
+            final String value = System.getenv(envVar);
+            configuration.append(';').append(envVar).append('=').append(value == null ? "" : value.trim());
+        }
+        return configuration.toString();
+    }
+
+    static int getIntEnv(final String envVar, final int defaultValue) {
         final String value = System.getenv(envVar);
         if (value == null || value.isBlank()) {
             return defaultValue;
@@ -265,4 +1249,48 @@ public class CarbonSimulation {
             return defaultValue;
         }
     }
+
+    static double getDoubleEnv(final String envVar, final double defaultValue) {
+        final String value = System.getenv(envVar);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+
+        try {
+            final double parsed = Double.parseDouble(value.trim());
+            return parsed > 0.0 ? parsed : defaultValue;
+        } catch (NumberFormatException ignored) {
+            return defaultValue;
+        }
+    }
+
+    private static boolean getBooleanEnv(final String envVar, final boolean defaultValue) {
+        final String value = System.getenv(envVar);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    private static final class ExperimentOutcome {
+        private final ResultsLogger.EvaluationMetrics metrics;
+        private final String console;
+        private final PlacementStats placementStats;
+        private final List<ResultsLogger.RegionMetrics> regionMetrics;
+        private final int hostsUsed;
+
+        private ExperimentOutcome(
+                final ResultsLogger.EvaluationMetrics metrics,
+                final String console,
+                final PlacementStats placementStats,
+                final List<ResultsLogger.RegionMetrics> regionMetrics,
+                final int hostsUsed) {
+            this.metrics = metrics;
+            this.console = console;
+            this.placementStats = placementStats;
+            this.regionMetrics = regionMetrics;
+            this.hostsUsed = hostsUsed;
+        }
+    }
 }
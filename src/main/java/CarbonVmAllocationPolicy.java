@@ -1,19 +1,13 @@
-import org.cloudsimplus.allocationpolicies.VmAllocationPolicySimple;
 import org.cloudsimplus.hosts.Host;
-import org.cloudsimplus.vms.Vm;
 
-import java.util.Comparator;
 import java.util.Map;
-import java.util.Optional;
 
-public class CarbonVmAllocationPolicy extends VmAllocationPolicySimple {
+public class CarbonVmAllocationPolicy extends ScoredVmAllocationPolicy {
 
-    private final double alpha = 0.4;
-    private final double beta = 0.3;
-    private final double gamma = 0.3;
+    private final LinearScore linearScore;
+    private final PowerCurve defaultPowerCurve;
     private final CarbonIntensityProvider carbonIntensityProvider;
-    private final Map<Host, String> hostRegionMap;
-    private final String defaultRegion;
+    private final HostMetadata hostMetadata;
 
     public CarbonVmAllocationPolicy() {
         this(new RealTimeCarbonIntensityProvider(), Map.of());
@@ -22,39 +16,133 @@ public class CarbonVmAllocationPolicy extends VmAllocationPolicySimple {
     public CarbonVmAllocationPolicy(
             final CarbonIntensityProvider carbonIntensityProvider,
             final Map<Host, String> hostRegionMap) {
+        this(carbonIntensityProvider, HostMetadata.fromRegionMap(hostRegionMap, "US-CAL-CISO"), true);
+    }
+
+    /**
+     * @param indexedPlacement if true, hosts are searched through a {@link HostPlacementIndex};
+     *                         otherwise every host is scanned and scored for every VM.
+     *                         Both modes select the same host.
+     */
+    public CarbonVmAllocationPolicy(
+            final CarbonIntensityProvider carbonIntensityProvider,
+            final HostMetadata hostMetadata,
+            final boolean indexedPlacement) {
+        this(carbonIntensityProvider, hostMetadata, indexedPlacement, Weights.DEFAULT);
+    }
+
+    public CarbonVmAllocationPolicy(
+            final CarbonIntensityProvider carbonIntensityProvider,
+            final HostMetadata hostMetadata,
+            final boolean indexedPlacement,
+            final Weights weights) {
+        super(indexedPlacement);
         this.carbonIntensityProvider = carbonIntensityProvider;
-        this.hostRegionMap = hostRegionMap;
-        this.defaultRegion = "US-CAL-CISO";
+        this.hostMetadata = hostMetadata;
+        this.linearScore = new LinearScore(weights.alpha, weights.beta, weights.maxPowerWatts, weights.gamma, 700.0);
+        this.defaultPowerCurve = weights.powerCurve;
     }
 
     @Override
-    protected Optional<Host> defaultFindHostForVm(final Vm vm) {
-        return getHostList().stream()
-                .filter(host -> host.isSuitableForVm(vm))
-                .min(Comparator.comparingDouble(this::score));
+    protected double score(final double utilization, final double carbon, final PowerCurve powerCurve) {
+
+        // Power model (Watts)
+        double power = powerCurve.watts(utilization);
+
+        // Weighted score (lower is better):
+        // alpha * utilization + beta * (power / maxPowerWatts) + gamma * (carbon / 700)
+        return linearScore.score(utilization, power, carbon);
     }
 
-    private double score(Host host) {
+    @Override
+    protected LinearScore linearScore() {
+        return linearScore;
+    }
 
-        // CPU utilization (safe for all versions)
-        double utilization = 0.0;
-        if (host.getTotalMipsCapacity() > 0) {
-            utilization = host.getCpuMipsUtilization() / host.getTotalMipsCapacity();
+    /**
+     * Region-aware carbon intensity (gCO2/kWh) at the current simulation time.
+     */
+    @Override
+    protected double regionValue(final int regionId) {
+        final double now = getDatacenter().getSimulation().clock();
+        final PlacementStats stats = getPlacementStats();
+        if (stats != null) {
+            if (hostMetadata.hasIntensitiesAt(carbonIntensityProvider, now)) {
+                stats.recordCacheHit();
+            } else {
+                stats.recordProviderCalls(hostMetadata.regionCount());
+            }
         }
+        return hostMetadata.intensitiesAt(carbonIntensityProvider, now)[regionId];
+    }
 
-        // Power model (Watts)
-        double power = 175 + (250 - 175) * utilization;
-
-        // Region-aware carbon intensity (gCO2/kWh)
-        double carbon = carbonIntensityProvider.getIntensityGco2PerKwh(resolveRegion(host));
+    @Override
+    protected int regionOf(final Host host) {
+        return hostMetadata.regionId(host);
+    }
 
-        // Weighted score (lower is better)
-        return alpha * utilization
-                + beta * (power / 250.0)
-                + gamma * (carbon / 700.0);
+    /**
+     * The host's own curve if the fleet defines one, else the linear model of the weights.
+     */
+    @Override
+    protected PowerCurve powerCurveOf(final Host host) {
+        return hostMetadata.powerCurve(host, defaultPowerCurve);
     }
 
-    private String resolveRegion(final Host host) {
-        return hostRegionMap.getOrDefault(host, defaultRegion);
+    /**
+     * Score weights of utilization, normalized power and normalized carbon intensity.
+     * Power is normalized by {@code maxPowerWatts}; idle and max power also give the linear
+     * power model of hosts whose fleet does not define a {@link PowerCurve}.
+     */
+    public static final class Weights {
+
+        public static final Weights DEFAULT = new Weights(0.4, 0.3, 0.3, 175.0, 250.0);
+
+        private final double alpha;
+        private final double beta;
+        private final double gamma;
+        private final double idlePowerWatts;
+        private final double maxPowerWatts;
+        private final PowerCurve powerCurve;
+
+        public Weights(
+                final double alpha,
+                final double beta,
+                final double gamma,
+                final double idlePowerWatts,
+                final double maxPowerWatts) {
+            if (alpha < 0.0 || beta < 0.0 || gamma < 0.0) {
+                throw new IllegalArgumentException("Weights must not be negative.");
+            }
+            if (idlePowerWatts < 0.0 || maxPowerWatts <= idlePowerWatts) {
+                throw new IllegalArgumentException("Power model needs 0 <= idle < max watts.");
+            }
+            this.alpha = alpha;
+            this.beta = beta;
+            this.gamma = gamma;
+            this.idlePowerWatts = idlePowerWatts;
+            this.maxPowerWatts = maxPowerWatts;
+            this.powerCurve = PowerCurve.linear(idlePowerWatts, maxPowerWatts);
+        }
+
+        public double alpha() {
+            return alpha;
+        }
+
+        public double beta() {
+            return beta;
+        }
+
+        public double gamma() {
+            return gamma;
+        }
+
+        public double idlePowerWatts() {
+            return idlePowerWatts;
+        }
+
+        public double maxPowerWatts() {
+            return maxPowerWatts;
+        }
     }
 }
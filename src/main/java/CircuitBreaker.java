@@ -0,0 +1,95 @@
+/**
+ * Stops calling a failing dependency for a while.
+ *
+ * <p>The breaker starts closed and lets every request through. After
+ * {@code failureThreshold} consecutive failures it opens, and for {@code openMillis}
+ * {@link #allowRequest()} refuses immediately, so callers fall back at once instead of
+ * waiting out a timeout each time. It then lets a single trial request through
+ * (half-open). Success closes it again; failure reopens it for another period.</p>
+ */
+public final class CircuitBreaker {
+
+    /**
+     * Whether requests are let through.
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private long rejected;
+    private long trips;
+
+    public CircuitBreaker(final int failureThreshold, final long openMillis) {
+        if (failureThreshold <= 0 || openMillis < 0L) {
+            throw new IllegalArgumentException("Failure threshold must be positive and the open period not negative.");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openMillis * 1_000_000L;
+    }
+
+    /**
+     * True if a request may be made now. Once the open period is over this admits one trial
+     * request and refuses others until its outcome is recorded.
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openNanos) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        if (state != State.CLOSED) {
+            rejected++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Closes a half-open breaker and resets the failure count of a closed one. Successes of
+     * requests still in flight when it opened are ignored, as only the trial request may
+     * close it.
+     */
+    public synchronized void recordSuccess() {
+        if (state == State.OPEN) {
+            return;
+        }
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            // Failures of requests still in flight when it opened do not extend the open period.
+            if (state != State.OPEN) {
+                trips++;
+                state = State.OPEN;
+                openedAtNanos = System.nanoTime();
+            }
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Requests refused while the breaker was open or half-open.
+     */
+    public synchronized long getRejectedCount() {
+        return rejected;
+    }
+
+    /**
+     * Times the breaker opened.
+     */
+    public synchronized long getTripCount() {
+        return trips;
+    }
+}
@@ -0,0 +1,469 @@
+import org.cloudsimplus.core.CloudSimEntity;
+import org.cloudsimplus.core.CloudSimTag;
+import org.cloudsimplus.core.events.SimEvent;
+import org.cloudsimplus.datacenters.DatacenterSimple;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.listeners.EventListener;
+import org.cloudsimplus.listeners.HostUpdatesVmsProcessingEventInfo;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Periodically revisits placements: drains under-utilized hosts onto fuller hosts in
+ * low-carbon regions, relieves over-utilized hosts and powers empty hosts down.
+ *
+ * <p>The engine is a simulation entity that wakes up every {@code interval} seconds while
+ * anything else is still scheduled. Hosts are classified as they change, from their
+ * processing updates and from the migrations the engine starts, into ordered candidate
+ * sets: under-utilized, over-utilized, idle, and per-region receivers. A planning round
+ * only walks the front of those sets and at most {@code maxMigrations} VMs are moved per
+ * round, so its cost does not grow with the fleet.</p>
+ *
+ * <p>An under-utilized host is drained only if all its VMs fit on hosts that are fuller
+ * than it is and stay under the upper threshold; otherwise none of its VMs move. Regions
+ * are tried in increasing carbon intensity and, within a region, the fullest hosts first.
+ * A drained host is powered down on the round after its last VM has left; the allocation
+ * policy powers it on again when it places a VM there.</p>
+ */
+public final class ConsolidationEngine extends CloudSimEntity {
+
+    /**
+     * Receivers examined per region for one VM before moving on to the next region.
+     */
+    private static final int PROBES_PER_REGION = 16;
+
+    /**
+     * Under-utilized hosts examined per allowed migration in one round.
+     */
+    private static final int DRAIN_ATTEMPTS_PER_MIGRATION = 4;
+
+    /**
+     * Data of the event that plans a round, sent after the datacenter has updated its hosts.
+     */
+    private static final Object PLAN = new Object();
+
+    private static final Comparator<Slot> SLOT_ORDER = Comparator
+            .comparingDouble((Slot slot) -> slot.utilization)
+            .thenComparingInt(slot -> slot.position);
+
+    private final DatacenterSimple datacenter;
+    private final HostMetadata hostMetadata;
+    private final CarbonIntensityProvider carbonIntensityProvider;
+    private final double interval;
+    private final int maxMigrations;
+    private final double lowerThreshold;
+    private final double upperThreshold;
+
+    private final HostPositions positions;
+    private final Slot[] slots;
+    private final NavigableSet<Slot> underloaded = new TreeSet<>(SLOT_ORDER);
+    private final NavigableSet<Slot> overloaded = new TreeSet<>(SLOT_ORDER);
+    private final Set<Slot> idle = new LinkedHashSet<>();
+    private final List<NavigableSet<Slot>> receiversByRegion = new ArrayList<>();
+    private final Map<Vm, Migration> inFlight = new IdentityHashMap<>();
+
+    private long migrations;
+    private long poweredDownHosts;
+    private long rounds;
+    private long planningNanos;
+
+    /**
+     * Registers the engine with the datacenter's simulation; create it before the simulation starts.
+     *
+     * @param lowerThreshold CPU utilization (0..1) under which a host is drained
+     * @param upperThreshold CPU utilization (0..1) over which a host sheds a VM, and that
+     *                       no receiver may exceed
+     */
+    public ConsolidationEngine(
+            final DatacenterSimple datacenter,
+            final List<Host> hosts,
+            final HostMetadata hostMetadata,
+            final CarbonIntensityProvider carbonIntensityProvider,
+            final double interval,
+            final int maxMigrations,
+            final double lowerThreshold,
+            final double upperThreshold) {
+        super(datacenter.getSimulation());
+        this.datacenter = datacenter;
+        this.hostMetadata = hostMetadata;
+        this.carbonIntensityProvider = carbonIntensityProvider;
+        this.interval = interval;
+        this.maxMigrations = maxMigrations;
+        this.lowerThreshold = lowerThreshold;
+        this.upperThreshold = upperThreshold;
+
+        for (int region = 0; region < hostMetadata.regionCount(); region++) {
+            receiversByRegion.add(new TreeSet<>(SLOT_ORDER));
+        }
+        this.positions = new HostPositions(hosts);
+        this.slots = new Slot[hosts.size()];
+        final EventListener<HostUpdatesVmsProcessingEventInfo> processingListener = info -> refresh(info.getHost());
+        for (int i = 0; i < hosts.size(); i++) {
+            final Host host = hosts.get(i);
+            slots[i] = new Slot(host, i, hostMetadata.regionId(host));
+            host.addOnUpdateProcessingListener(processingListener);
+        }
+        datacenter.addOnVmMigrationFinishListener(info -> finishMigration(info.getVm()));
+    }
+
+    @Override
+    protected void startInternal() {
+        schedule(interval, CloudSimTag.NONE);
+    }
+
+    @Override
+    public void processEvent(final SimEvent event) {
+        if (event.getTag() != CloudSimTag.NONE) {
+            return;
+        }
+
+        if (event.getData() != PLAN) {
+            // Hosts are only updated on cloudlet events, so have the datacenter bring them up to
+            // the current time first; the listeners reclassify them before the round is planned.
+            sendNow(datacenter, CloudSimTag.VM_UPDATE_CLOUDLET_PROCESSING);
+            schedule(0.0, CloudSimTag.NONE, PLAN);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        plan();
+        planningNanos += System.nanoTime() - start;
+        rounds++;
+
+        // Keep waking up only while something else can still change the hosts.
+        if (getSimulation().isThereAnyFutureEvt(future -> future.getSource() != this)) {
+            schedule(interval, CloudSimTag.NONE);
+        }
+    }
+
+    /**
+     * VM migrations started.
+     */
+    public long getMigrations() {
+        return migrations;
+    }
+
+    public long getPoweredDownHosts() {
+        return poweredDownHosts;
+    }
+
+    public long getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Wall-clock time spent planning, summed over all rounds.
+     */
+    public double getPlanningMillis() {
+        return planningNanos / 1_000_000.0;
+    }
+
+    private void plan() {
+        powerDownIdleHosts();
+
+        final double[] intensities = hostMetadata.intensitiesAt(carbonIntensityProvider, getSimulation().clock());
+        final Integer[] regionOrder = new Integer[receiversByRegion.size()];
+        for (int region = 0; region < regionOrder.length; region++) {
+            regionOrder[region] = region;
+        }
+        Arrays.sort(regionOrder, Comparator.comparingDouble(region -> intensities[region]));
+
+        int budget = maxMigrations;
+        budget -= relieveOverloaded(regionOrder, budget);
+        drainUnderloaded(regionOrder, budget);
+    }
+
+    private void powerDownIdleHosts() {
+        for (Slot slot : new ArrayList<>(idle)) {
+            slot.host.setActive(false);
+            poweredDownHosts++;
+            refresh(slot.host);
+        }
+    }
+
+    /**
+     * Moves one VM off each over-utilized host, most utilized first: the smallest VM that
+     * brings the host under the upper threshold, or its largest VM if none does.
+     */
+    private int relieveOverloaded(final Integer[] regionOrder, final int budget) {
+        int started = 0;
+        for (Slot source : front(overloaded.descendingSet(), budget)) {
+            if (started >= budget) {
+                break;
+            }
+
+            final double excessMips = source.cpuMips() - upperThreshold * source.host.getTotalMipsCapacity();
+            Vm selected = null;
+            for (Vm vm : source.host.getVmList()) {
+                if (!vm.isInMigration() && (selected == null || isBetterToShed(
+                        vm.getTotalCpuMipsUtilization(),
+                        selected.getTotalCpuMipsUtilization(),
+                        excessMips))) {
+                    selected = vm;
+                }
+            }
+            if (selected == null) {
+                continue;
+            }
+
+            final Slot target = findReceiver(selected, null, regionOrder, List.of());
+            if (target != null) {
+                migrate(selected, source, target);
+                started++;
+            }
+        }
+        return started;
+    }
+
+    /**
+     * Copy of the first {@code limit} slots of a candidate set, which migrations may change while it is walked.
+     */
+    private static List<Slot> front(final Set<Slot> candidates, final int limit) {
+        final List<Slot> front = new ArrayList<>(Math.min(limit, candidates.size()));
+        for (Slot slot : candidates) {
+            if (front.size() >= limit) {
+                break;
+            }
+            front.add(slot);
+        }
+        return front;
+    }
+
+    /**
+     * Whether a VM using {@code mips} is a better one to move off an over-utilized host than
+     * one using {@code currentMips}: the smallest VM that removes the excess, else the largest.
+     */
+    private static boolean isBetterToShed(final double mips, final double currentMips, final double excessMips) {
+        final boolean enough = mips >= excessMips;
+        final boolean currentEnough = currentMips >= excessMips;
+        if (enough != currentEnough) {
+            return enough;
+        }
+        return enough ? mips < currentMips : mips > currentMips;
+    }
+
+    /**
+     * Drains under-utilized hosts, least utilized first, while the round's budget allows
+     * moving all VMs of the next host.
+     */
+    private void drainUnderloaded(final Integer[] regionOrder, final int budget) {
+        int remaining = budget;
+        for (Slot source : front(underloaded, budget * DRAIN_ATTEMPTS_PER_MIGRATION)) {
+            if (remaining <= 0) {
+                break;
+            }
+            if (!underloaded.contains(source)) {
+                continue;
+            }
+
+            final List<Vm> vms = source.host.getVmList();
+            if (vms.size() > remaining) {
+                continue;
+            }
+
+            final Map<Vm, Slot> moves = new IdentityHashMap<>();
+            for (Vm vm : vms) {
+                final Slot target = findReceiver(vm, source, regionOrder, moves.values());
+                if (target == null) {
+                    moves.clear();
+                    break;
+                }
+                moves.put(vm, target);
+            }
+            if (moves.isEmpty()) {
+                continue;
+            }
+
+            source.draining = true;
+            for (Map.Entry<Vm, Slot> move : moves.entrySet()) {
+                migrate(move.getKey(), source, move.getValue());
+            }
+            remaining -= moves.size();
+        }
+    }
+
+    /**
+     * Fullest receiver that stays under the upper threshold with the VM, searching regions in
+     * the given order. When draining {@code source}, only hosts fuller than it are considered.
+     *
+     * <p>A receiver takes one incoming VM at a time: once a migration to a host has started,
+     * CloudSim Plus no longer reports its free MIPS correctly and drops further migrations
+     * to it, so hosts already receiving a VM, or planned as a target, are skipped.</p>
+     */
+    private Slot findReceiver(
+            final Vm vm,
+            final Slot source,
+            final Integer[] regionOrder,
+            final Collection<Slot> planned) {
+        final double vmMips = vm.getTotalCpuMipsUtilization();
+        for (int region : regionOrder) {
+            int probes = 0;
+            for (Slot slot : receiversByRegion.get(region).descendingSet()) {
+                if (source != null && SLOT_ORDER.compare(slot, source) <= 0) {
+                    break;
+                }
+                if (probes++ >= PROBES_PER_REGION) {
+                    break;
+                }
+                if (slot.host == vm.getHost()
+                        || slot.draining
+                        || !slot.host.getVmsMigratingIn().isEmpty()
+                        || planned.contains(slot)) {
+                    continue;
+                }
+                if (slot.cpuMips() + vmMips <= upperThreshold * slot.host.getTotalMipsCapacity()
+                        && slot.host.isSuitableForVm(vm)) {
+                    return slot;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void migrate(final Vm vm, final Slot source, final Slot target) {
+        final double vmMips = vm.getTotalCpuMipsUtilization();
+        inFlight.put(vm, new Migration(source, target, vmMips));
+        target.incomingMips += vmMips;
+        datacenter.requestVmMigration(vm, target.host);
+        if (datacenter.getVmAllocationPolicy() instanceof BatchVmAllocationPolicy) {
+            ((BatchVmAllocationPolicy) datacenter.getVmAllocationPolicy()).migrationStarted(target.host);
+        }
+        migrations++;
+        refresh(source.host);
+        refresh(target.host);
+    }
+
+    private void finishMigration(final Vm vm) {
+        final Migration migration = inFlight.remove(vm);
+        if (migration == null) {
+            return;
+        }
+
+        migration.target.incomingMips -= migration.mips;
+        refresh(migration.source.host);
+        refresh(migration.target.host);
+    }
+
+    /**
+     * Re-reads a host's state and moves it between the candidate sets if it changed.
+     */
+    private void refresh(final Host host) {
+        final int position = positions.of(host);
+        if (position < 0) {
+            return;
+        }
+
+        final Slot slot = slots[position];
+
+        final boolean active = host.isActive();
+        final int vmCount = host.getVmList().size();
+        final boolean migrating = hasMigrations(host);
+        if (!migrating) {
+            slot.draining = false;
+            slot.incomingMips = 0.0;
+        }
+        final double utilization = host.getTotalMipsCapacity() > 0
+                ? (host.getCpuMipsUtilization() + slot.incomingMips) / host.getTotalMipsCapacity()
+                : 0.0;
+        if (utilization == slot.utilization
+                && active == slot.active
+                && vmCount == slot.vmCount
+                && migrating == slot.migrating) {
+            return;
+        }
+
+        underloaded.remove(slot);
+        overloaded.remove(slot);
+        receiversByRegion.get(slot.region).remove(slot);
+        idle.remove(slot);
+
+        slot.utilization = utilization;
+        slot.active = active;
+        slot.vmCount = vmCount;
+        slot.migrating = migrating;
+        if (!active) {
+            return;
+        }
+
+        if (vmCount == 0 && !migrating) {
+            idle.add(slot);
+            return;
+        }
+        if (utilization > upperThreshold) {
+            if (!migrating) {
+                overloaded.add(slot);
+            }
+            return;
+        }
+        if (vmCount > 0) {
+            receiversByRegion.get(slot.region).add(slot);
+        }
+        if (!migrating && vmCount > 0 && utilization < lowerThreshold) {
+            underloaded.add(slot);
+        }
+    }
+
+    /**
+     * Whether a VM is migrating to or from the host. {@link Host#hasMigratingVms()} is not used
+     * because CloudSim Plus keeps a VM in the source host's outgoing set after it has left.
+     */
+    private static boolean hasMigrations(final Host host) {
+        if (!host.getVmsMigratingIn().isEmpty()) {
+            return true;
+        }
+        for (Vm vm : host.getVmList()) {
+            if (vm.isInMigration()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Slot {
+        private final Host host;
+        private final int position;
+        private final int region;
+        private double utilization = Double.NaN;
+        private double incomingMips;
+        private int vmCount = -1;
+        private boolean active;
+        private boolean migrating;
+        private boolean draining;
+
+        private Slot(final Host host, final int position, final int region) {
+            this.host = host;
+            this.position = position;
+            this.region = region;
+        }
+
+        /**
+         * CPU in use, counting VMs the engine is migrating in.
+         */
+        private double cpuMips() {
+            return utilization * host.getTotalMipsCapacity();
+        }
+    }
+
+    private static final class Migration {
+        private final Slot source;
+        private final Slot target;
+        private final double mips;
+
+        private Migration(final Slot source, final Slot target, final double mips) {
+            this.source = source;
+            this.target = target;
+            this.mips = mips;
+        }
+    }
+}
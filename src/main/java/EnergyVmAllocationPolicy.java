@@ -1,29 +1,48 @@
-import org.cloudsimplus.allocationpolicies.VmAllocationPolicySimple;
 import org.cloudsimplus.hosts.Host;
-import org.cloudsimplus.vms.Vm;
 
-import java.util.Comparator;
-import java.util.Optional;
+public class EnergyVmAllocationPolicy extends ScoredVmAllocationPolicy {
 
-public class EnergyVmAllocationPolicy extends VmAllocationPolicySimple {
+    /**
+     * Watts alone: {@code 0 * u + 1 * (watts / 1) + 0 * (0 / 1)} is exactly {@code watts}.
+     */
+    private static final LinearScore WATTS = new LinearScore(0.0, 1.0, 1.0, 0.0, 1.0);
 
-    @Override
-    protected Optional<Host> defaultFindHostForVm(final Vm vm) {
+    private final HostMetadata hostMetadata;
+
+    public EnergyVmAllocationPolicy() {
+        this(true);
+    }
+
+    /**
+     * @param indexedPlacement if true, the least-utilized suitable host is found through a
+     *                         {@link HostPlacementIndex} instead of evaluating the power
+     *                         model for every host.
+     */
+    public EnergyVmAllocationPolicy(final boolean indexedPlacement) {
+        this(indexedPlacement, null);
+    }
 
-        return getHostList().stream()
-                .filter(host -> host.isSuitableForVm(vm))
-                .min(Comparator.comparingDouble(host -> power(host)));
+    /**
+     * @param hostMetadata per-host power curves; hosts without one, or all hosts if null,
+     *                     use {@link PowerCurve#DEFAULT}
+     */
+    public EnergyVmAllocationPolicy(final boolean indexedPlacement, final HostMetadata hostMetadata) {
+        super(indexedPlacement);
+        this.hostMetadata = hostMetadata;
     }
 
-    private double power(final Host host) {
+    @Override
+    protected double score(final double utilization, final double regionValue, final PowerCurve powerCurve) {
+        return powerCurve.watts(utilization);
+    }
 
-        // Safe CPU utilization calculation (works for all versions)
-        double utilization = 0.0;
-        if (host.getTotalMipsCapacity() > 0) {
-            utilization = host.getCpuMipsUtilization() / host.getTotalMipsCapacity();
-        }
+    @Override
+    protected LinearScore linearScore() {
+        return WATTS;
+    }
 
-        // Linear power model
-        return 175 + (250 - 175) * utilization;
+    @Override
+    protected PowerCurve powerCurveOf(final Host host) {
+        return hostMetadata == null ? PowerCurve.DEFAULT : hostMetadata.powerCurve(host, PowerCurve.DEFAULT);
     }
 }
@@ -1,4 +1,2 @@
-import org.cloudsimplus.allocationpolicies.VmAllocationPolicySimple;
-
-public class FirstFitVmAllocationPolicy extends VmAllocationPolicySimple {
+public class FirstFitVmAllocationPolicy extends BatchVmAllocationPolicy {
 }
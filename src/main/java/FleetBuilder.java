@@ -0,0 +1,141 @@
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Builds the hosts of a fleet from {@link HostClass} templates.
+ *
+ * <p>Capacity, PE layout and {@link PowerCurve} are read from the host's class, which all
+ * hosts of the class share; only the state CloudSim Plus changes during a run (PEs and their
+ * provisioners, the RAM and bandwidth provisioners, the VM scheduler) is created per host,
+ * for every host when the fleet is built: {@code HostSimple} creates it in its constructor,
+ * so it cannot be deferred to the host's first VM. Host ids are list positions, so {@link HostPositions} finds every host through a plain
+ * array. Placement state is not created here: {@link ScoredVmAllocationPolicy} only watches
+ * a host once it takes a VM.</p>
+ *
+ * <p>{@link #measureFootprint} measures the retained heap of this fleet's hosts, and of the
+ * VMs and cloudlets of a run, on a sample, so a campaign can be sized before it builds a
+ * million hosts.</p>
+ */
+public final class FleetBuilder {
+
+    private final List<HostClass> classes;
+
+    public FleetBuilder(final List<HostClass> classes) {
+        this.classes = classes;
+    }
+
+    /**
+     * Fleet of {@code hostCount} hosts of a {@link HostClass#fleet(String, int)} definition.
+     */
+    public static FleetBuilder of(final String definition, final int hostCount) {
+        return new FleetBuilder(HostClass.fleet(definition, hostCount));
+    }
+
+    /**
+     * Class of each host, in host list order.
+     */
+    public List<HostClass> classes() {
+        return classes;
+    }
+
+    /**
+     * New hosts, one per class entry, with their list positions as ids.
+     */
+    public List<Host> build() {
+        return build(classes.size());
+    }
+
+    private List<Host> build(final int count) {
+        final List<Host> hosts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hosts.add(classes.get(i).createHost(i));
+        }
+        return hosts;
+    }
+
+    /**
+     * Retained heap per host of this fleet and per VM and cloudlet of the given factories:
+     * builds up to {@code sampleSize} of each and compares the used heap after garbage
+     * collection. Classes are interleaved, so the first hosts of the fleet are a fair sample.
+     * Collects garbage several times; call it before a campaign starts, not while it runs.
+     */
+    public Footprint measureFootprint(
+            final int sampleSize,
+            final IntFunction<List<Vm>> vmFactory,
+            final IntFunction<List<Cloudlet>> cloudletFactory) {
+        final int hostSample = Math.min(sampleSize, classes.size());
+        // One of each first, so class initialization is not counted against the sample.
+        Reference.reachabilityFence(build(1));
+        Reference.reachabilityFence(vmFactory.apply(1));
+        Reference.reachabilityFence(cloudletFactory.apply(1));
+        final long start = usedHeapAfterGc();
+        final List<Host> hosts = build(hostSample);
+        final long afterHosts = usedHeapAfterGc();
+        final List<Vm> vms = vmFactory.apply(sampleSize);
+        final long afterVms = usedHeapAfterGc();
+        final List<Cloudlet> cloudlets = cloudletFactory.apply(sampleSize);
+        final long afterCloudlets = usedHeapAfterGc();
+        Reference.reachabilityFence(hosts);
+        Reference.reachabilityFence(vms);
+        Reference.reachabilityFence(cloudlets);
+
+        return new Footprint(
+                perObject(afterHosts - start, hostSample),
+                perObject(afterVms - afterHosts, vms.size()),
+                perObject(afterCloudlets - afterVms, cloudlets.size())
+        );
+    }
+
+    private static double perObject(final long bytes, final int count) {
+        return count == 0 ? 0.0 : Math.max(0L, bytes) / (double) count;
+    }
+
+    private static long usedHeapAfterGc() {
+        // The second collection frees what reference processing released in the first.
+        System.gc();
+        System.gc();
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Retained heap bytes per simulation object, as measured by {@link #measureFootprint}.
+     */
+    public static final class Footprint {
+
+        private final double bytesPerHost;
+        private final double bytesPerVm;
+        private final double bytesPerCloudlet;
+
+        public Footprint(final double bytesPerHost, final double bytesPerVm, final double bytesPerCloudlet) {
+            this.bytesPerHost = bytesPerHost;
+            this.bytesPerVm = bytesPerVm;
+            this.bytesPerCloudlet = bytesPerCloudlet;
+        }
+
+        public double bytesPerHost() {
+            return bytesPerHost;
+        }
+
+        public double bytesPerVm() {
+            return bytesPerVm;
+        }
+
+        public double bytesPerCloudlet() {
+            return bytesPerCloudlet;
+        }
+
+        /**
+         * Retained heap of the given numbers of hosts, VMs and cloudlets as built.
+         */
+        public long bytesFor(final long hosts, final long vms, final long cloudlets) {
+            return Math.round(hosts * bytesPerHost + vms * bytesPerVm + cloudlets * bytesPerCloudlet);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.hosts.HostSimple;
+import org.cloudsimplus.provisioners.PeProvisionerSimple;
+import org.cloudsimplus.provisioners.ResourceProvisionerSimple;
+import org.cloudsimplus.resources.Pe;
+import org.cloudsimplus.resources.PeSimple;
+import org.cloudsimplus.schedulers.vm.VmSchedulerTimeShared;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A kind of physical host: its capacity and its {@link PowerCurve}.
+ *
+ * <p>{@link #fleet(String, int)} turns a fleet definition such as
+ * {@code STANDARD:2,IBM_X3550_M3:1} into one class per host. The numbers are relative
+ * weights; classes are interleaved in proportion (smooth weighted round-robin), so every
+ * zone assigned round-robin over the host list gets a similar mix.</p>
+ */
+public final class HostClass {
+
+    /**
+     * The 4 x 1000 MIPS, 16 GB host with the default linear power model.
+     */
+    public static final HostClass STANDARD = new HostClass(
+            "STANDARD", 4, 1000, 16000, 10000, 1000000, PowerCurve.DEFAULT);
+
+    /**
+     * HP ProLiant ML110 G5 (Xeon 3075): small, low-power host, SPECpower results as
+     * published with CloudSim's power models.
+     */
+    public static final HostClass HP_PROLIANT_ML110_G5 = new HostClass(
+            "HP_PROLIANT_ML110_G5", 2, 2660, 4096, 10000, 1000000,
+            PowerCurve.specPower(93.7, 97, 101, 105, 110, 116, 121, 125, 129, 133, 135));
+
+    /**
+     * IBM System x3550 M3 (Xeon X5675): dense host with a low idle draw relative to its peak.
+     */
+    public static final HostClass IBM_X3550_M3 = new HostClass(
+            "IBM_X3550_M3", 12, 3067, 16384, 10000, 1000000,
+            PowerCurve.specPower(58.4, 98, 109, 118, 128, 140, 153, 170, 189, 205, 222));
+
+    private static final Map<String, HostClass> BUILT_IN = Map.of(
+            STANDARD.name, STANDARD,
+            HP_PROLIANT_ML110_G5.name, HP_PROLIANT_ML110_G5,
+            IBM_X3550_M3.name, IBM_X3550_M3
+    );
+
+    private final String name;
+    private final int pes;
+    private final double mipsPerPe;
+    private final long ramMb;
+    private final long bandwidth;
+    private final long storageMb;
+    private final PowerCurve powerCurve;
+
+    public HostClass(
+            final String name,
+            final int pes,
+            final double mipsPerPe,
+            final long ramMb,
+            final long bandwidth,
+            final long storageMb,
+            final PowerCurve powerCurve) {
+        if (pes <= 0 || mipsPerPe <= 0.0) {
+            throw new IllegalArgumentException("A host class needs at least one PE with positive MIPS.");
+        }
+        this.name = name;
+        this.pes = pes;
+        this.mipsPerPe = mipsPerPe;
+        this.ramMb = ramMb;
+        this.bandwidth = bandwidth;
+        this.storageMb = storageMb;
+        this.powerCurve = powerCurve;
+    }
+
+    /**
+     * Built-in class with the given name, case-insensitive.
+     */
+    public static HostClass named(final String name) {
+        final HostClass hostClass = BUILT_IN.get(name.trim().toUpperCase(Locale.ROOT));
+        if (hostClass == null) {
+            throw new IllegalArgumentException("Unknown host class: " + name + ", expected one of " + BUILT_IN.keySet());
+        }
+        return hostClass;
+    }
+
+    /**
+     * Class of each of {@code hostCount} hosts for a fleet definition of comma-separated
+     * {@code NAME[:weight]} entries. A null or blank definition is an all-{@link #STANDARD} fleet.
+     */
+    public static List<HostClass> fleet(final String definition, final int hostCount) {
+        final Map<HostClass, Integer> weights = new LinkedHashMap<>();
+        if (definition == null || definition.isBlank()) {
+            weights.put(STANDARD, 1);
+        } else {
+            for (String entry : definition.split(",")) {
+                if (entry.isBlank()) {
+                    continue;
+                }
+                final String[] parts = entry.split(":", 2);
+                final int weight = parts.length == 1 ? 1 : Integer.parseInt(parts[1].trim());
+                if (weight <= 0) {
+                    throw new IllegalArgumentException("Host class weight must be positive: " + entry);
+                }
+                weights.merge(named(parts[0]), weight, Integer::sum);
+            }
+        }
+
+        final List<HostClass> classes = new ArrayList<>(weights.keySet());
+        final int[] weight = new int[classes.size()];
+        int totalWeight = 0;
+        for (int i = 0; i < weight.length; i++) {
+            weight[i] = weights.get(classes.get(i));
+            totalWeight += weight[i];
+        }
+
+        final List<HostClass> fleet = new ArrayList<>(hostCount);
+        final int[] current = new int[classes.size()];
+        for (int host = 0; host < hostCount; host++) {
+            int chosen = 0;
+            for (int i = 0; i < current.length; i++) {
+                current[i] += weight[i];
+                if (current[i] > current[chosen]) {
+                    chosen = i;
+                }
+            }
+            current[chosen] -= totalWeight;
+            fleet.add(classes.get(chosen));
+        }
+        return fleet;
+    }
+
+    /**
+     * A new host of this class with the given id.
+     */
+    public Host createHost(final long id) {
+        final List<Pe> peList = new ArrayList<>(pes);
+        for (int i = 0; i < pes; i++) {
+            peList.add(new PeSimple(mipsPerPe, new PeProvisionerSimple()));
+        }
+
+        final HostSimple host = new HostSimple(ramMb, bandwidth, storageMb, peList);
+        host.setRamProvisioner(new ResourceProvisionerSimple());
+        host.setBwProvisioner(new ResourceProvisionerSimple());
+        host.setVmScheduler(new VmSchedulerTimeShared());
+        host.setId(id);
+        return host;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int pes() {
+        return pes;
+    }
+
+    public PowerCurve powerCurve() {
+        return powerCurve;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,353 @@
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.core.CloudSimTag;
+import org.cloudsimplus.core.Simulation;
+import org.cloudsimplus.core.events.SimEvent;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.listeners.EventListener;
+import org.cloudsimplus.listeners.HostEventInfo;
+import org.cloudsimplus.listeners.HostUpdatesVmsProcessingEventInfo;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Energy, carbon and CPU time of every host, integrated over simulation time as the hosts change.
+ *
+ * <p>A host draws power while it is active and holds a VM or receives one by migration:
+ * an empty host counts as powered down, as does one {@link ConsolidationEngine} has shut
+ * down, so hosts that never take a VM draw nothing. Between two samples a host draws the
+ * power of its curve at the CPU utilization its VMs request at the first one. Hosts are
+ * sampled on their processing updates, once they have taken a submitted cloudlet, and
+ * whenever the allocation policy places a VM on them or removes one, so the CPU time and
+ * idle time of a host are charged to that host while they happen, whichever host the VM
+ * ends on.</p>
+ *
+ * <p>While a VM migrates, its source and its target each spend the VM scheduler's
+ * migration CPU overhead of the VM's MIPS on top of their own load, and the target draws
+ * power from the start of the migration.</p>
+ *
+ * <p>Each interval is priced at its region's mean intensity over the interval, read from
+ * an {@link IntensityProfile}. The run is metered up to the finish time of its last
+ * cloudlet, the makespan: hosts keep changing after it while VMs are destroyed and
+ * consolidation rounds drain, so each host keeps its totals as of the latest finish time
+ * separately from the running ones.</p>
+ *
+ * <p>Attach the meter to the allocation policies with
+ * {@link BatchVmAllocationPolicy#setEnergyMeter} before the simulation starts and call
+ * {@link #finish(double, List)} once it has ended.</p>
+ *
+ * <p>A meter built without a simulation does not meter at all: it settles each host's
+ * books once the run has ended, from the CPU time of the cloudlets that finished on it,
+ * at the power of its curve at the host's mean utilization over the makespan, priced at
+ * the intensity at time 0. That is how runs were accounted before metering, and it is
+ * still exact for runs in which VMs never move and intensities never change.</p>
+ */
+public final class HostEnergyMeter {
+
+    private final List<Host> hosts;
+    private final HostMetadata hostMetadata;
+    private final IntensityProfile intensityProfile;
+    private final boolean metering;
+    private final EventListener<HostUpdatesVmsProcessingEventInfo> processingListener =
+            info -> sample(info.getHost(), info.getTime());
+    private final EventListener<HostEventInfo> shutdownListener = info -> sample(info.getHost(), info.getTime());
+
+    private final boolean[] watched;
+    private final double[] since;
+    private final double[] watts;
+    private final double[] busyPes;
+    private final double[] cpuSeconds;
+    private final double[] energyKwh;
+    private final double[] carbonKg;
+    private final double[] settledAt;
+    private final double[] settledCpuSeconds;
+    private final double[] settledEnergyKwh;
+    private final double[] settledCarbonKg;
+    private final boolean[] submitted;
+    private final List<Integer> submittedTo = new ArrayList<>();
+    private double submittedAt;
+    private double horizon;
+
+    /**
+     * Registers with the simulation to learn cloudlet finish times; create it before the simulation starts.
+     */
+    public HostEnergyMeter(
+            final Simulation simulation,
+            final List<Host> hosts,
+            final HostMetadata hostMetadata,
+            final IntensityProfile intensityProfile) {
+        this(hosts, hostMetadata, intensityProfile, true);
+        simulation.addOnEventProcessingListener(this::onEvent);
+    }
+
+    /**
+     * A meter that settles the books after the run instead of metering it.
+     */
+    public HostEnergyMeter(
+            final List<Host> hosts,
+            final HostMetadata hostMetadata,
+            final IntensityProfile intensityProfile) {
+        this(hosts, hostMetadata, intensityProfile, false);
+    }
+
+    private HostEnergyMeter(
+            final List<Host> hosts,
+            final HostMetadata hostMetadata,
+            final IntensityProfile intensityProfile,
+            final boolean metering) {
+        this.hosts = hosts;
+        this.hostMetadata = hostMetadata;
+        this.intensityProfile = intensityProfile;
+        this.metering = metering;
+        this.watched = new boolean[hosts.size()];
+        this.since = new double[hosts.size()];
+        this.watts = new double[hosts.size()];
+        this.busyPes = new double[hosts.size()];
+        this.cpuSeconds = new double[hosts.size()];
+        this.energyKwh = new double[hosts.size()];
+        this.carbonKg = new double[hosts.size()];
+        this.settledAt = new double[hosts.size()];
+        this.settledCpuSeconds = new double[hosts.size()];
+        this.settledEnergyKwh = new double[hosts.size()];
+        this.settledCarbonKg = new double[hosts.size()];
+        this.submitted = new boolean[hosts.size()];
+        Arrays.fill(settledAt, Double.NaN);
+    }
+
+    /**
+     * Charges the host up to the current simulation time and re-reads its power draw. The
+     * first call for a host starts metering it.
+     */
+    public void sample(final Host host) {
+        if (metering) {
+            sample(host, host.getSimulation().clock());
+        }
+    }
+
+    /**
+     * Charges every metered host up to {@code endTime}, the time the simulation ended, or
+     * settles the books of a meter that does not meter from the run's {@code cloudlets}.
+     */
+    public void finish(final double endTime, final List<Cloudlet> cloudlets) {
+        if (!metering) {
+            settleAfterRun(cloudlets);
+            return;
+        }
+        sampleSubmitted();
+        for (int position = 0; position < hosts.size(); position++) {
+            if (watched[position]) {
+                advance(position, Math.max(endTime, horizon));
+            }
+        }
+    }
+
+    public List<Host> hosts() {
+        return hosts;
+    }
+
+    public HostMetadata hostMetadata() {
+        return hostMetadata;
+    }
+
+    public IntensityProfile intensityProfile() {
+        return intensityProfile;
+    }
+
+    /**
+     * Whether the run is metered as it goes rather than settled after it.
+     */
+    public boolean isMetering() {
+        return metering;
+    }
+
+    /**
+     * CPU time the host spent up to the makespan, in PE-seconds.
+     */
+    public double cpuSeconds(final int position) {
+        return settled(position) ? settledCpuSeconds[position] : cpuSeconds[position];
+    }
+
+    public double energyKwh(final int position) {
+        return settled(position) ? settledEnergyKwh[position] : energyKwh[position];
+    }
+
+    public double carbonKg(final int position) {
+        return settled(position) ? settledCarbonKg[position] : carbonKg[position];
+    }
+
+    /**
+     * Whether the host has drawn power at any point of the run so far.
+     */
+    public boolean metered(final int position) {
+        return watched[position];
+    }
+
+    /**
+     * A submitted cloudlet starts loading its host before the host's next processing update,
+     * and a returned one may have moved the horizon.
+     *
+     * <p>Listeners hear of an event before its entity processes it, so the host of a
+     * submitted cloudlet is only sampled once an event of a later time shows the datacenter
+     * has run: it is charged up to the submit time at its old draw and then re-read.</p>
+     */
+    private void onEvent(final SimEvent event) {
+        if (!submittedTo.isEmpty() && event.getTime() > submittedAt) {
+            sampleSubmitted();
+        }
+        if (!(event.getData() instanceof Cloudlet)) {
+            return;
+        }
+
+        final Cloudlet cloudlet = (Cloudlet) event.getData();
+        if (event.getTag() == CloudSimTag.CLOUDLET_SUBMIT && cloudlet.getVm().getHost() != Host.NULL) {
+            final int position = hostMetadata.position(cloudlet.getVm().getHost());
+            if (position >= 0 && position < hosts.size() && !submitted[position]) {
+                submitted[position] = true;
+                submittedTo.add(position);
+            }
+            submittedAt = event.getTime();
+        } else if (event.getTag() == CloudSimTag.CLOUDLET_RETURN && cloudlet.isFinished()) {
+            horizon = Math.max(horizon, cloudlet.getFinishTime());
+        }
+    }
+
+    private void settleAfterRun(final List<Cloudlet> cloudlets) {
+        double makespan = Double.NEGATIVE_INFINITY;
+        final int[] hostOfCloudlet = new int[cloudlets.size()];
+        final int[] offsets = new int[hosts.size() + 1];
+        for (int c = 0; c < cloudlets.size(); c++) {
+            final Cloudlet cloudlet = cloudlets.get(c);
+            hostOfCloudlet[c] = -1;
+            if (!cloudlet.isFinished()) {
+                continue;
+            }
+            makespan = Math.max(makespan, cloudlet.getFinishTime());
+            if (cloudlet.getVm() == Vm.NULL) {
+                continue;
+            }
+            final Host host = cloudlet.getVm().getHost();
+            final int position = hostMetadata.position(host);
+            if (position >= 0 && position < hosts.size() && hosts.get(position) == host) {
+                hostOfCloudlet[c] = position;
+                offsets[position + 1]++;
+            }
+        }
+        if (hosts.isEmpty() || !(makespan > 0.0)) {
+            return;
+        }
+
+        // Grouped by host in cloudlet order and summed as a DoubleStream, as before metering.
+        for (int h = 0; h < hosts.size(); h++) {
+            offsets[h + 1] += offsets[h];
+        }
+        final double[] cpuTimes = new double[offsets[hosts.size()]];
+        final int[] next = Arrays.copyOf(offsets, hosts.size());
+        for (int c = 0; c < cloudlets.size(); c++) {
+            if (hostOfCloudlet[c] >= 0) {
+                cpuTimes[next[hostOfCloudlet[c]]++] = cloudlets.get(c).getActualCpuTime();
+            }
+        }
+
+        final double[] intensityByRegion = hostMetadata.intensitiesAt(intensityProfile.carbonIntensityProvider(), 0.0);
+        for (int position = 0; position < hosts.size(); position++) {
+            final double hostCpuTime = Arrays.stream(cpuTimes, offsets[position], offsets[position + 1]).sum();
+            if (hostCpuTime <= 0.0) {
+                continue;
+            }
+            final Host host = hosts.get(position);
+            final int hostPes = Math.max(1, host.getWorkingPesNumber());
+            final double utilization = Math.min(1.0, hostCpuTime / (makespan * hostPes));
+            final double avgPowerWatts = hostMetadata.powerCurve(host, PowerCurve.DEFAULT).watts(utilization);
+            watched[position] = true;
+            cpuSeconds[position] = hostCpuTime;
+            energyKwh[position] = (avgPowerWatts * makespan) / 3_600_000.0;
+            carbonKg[position] = (energyKwh[position] * intensityByRegion[hostMetadata.regionIdAt(position)]) / 1000.0;
+        }
+    }
+
+    private void sampleSubmitted() {
+        for (int i = 0; i < submittedTo.size(); i++) {
+            final int position = submittedTo.get(i);
+            submitted[position] = false;
+            sample(hosts.get(position), submittedAt);
+        }
+        submittedTo.clear();
+    }
+
+    private void sample(final Host host, final double time) {
+        final int position = hostMetadata.position(host);
+        if (position < 0 || position >= hosts.size() || hosts.get(position) != host) {
+            return;
+        }
+
+        if (watched[position]) {
+            advance(position, time);
+        } else {
+            watched[position] = true;
+            since[position] = time;
+            host.addOnUpdateProcessingListener(processingListener);
+            host.addOnShutdownListener(shutdownListener);
+        }
+
+        if (!host.isActive() || (host.getVmList().isEmpty() && host.getVmsMigratingIn().isEmpty())) {
+            watts[position] = 0.0;
+            busyPes[position] = 0.0;
+            return;
+        }
+
+        final double capacity = host.getTotalMipsCapacity();
+        final double overhead = host.getVmScheduler().getVmMigrationCpuOverhead();
+        double mips = 0.0;
+        for (Vm vm : host.getVmList()) {
+            // Requested rather than allocated: the allocation only catches up with newly
+            // submitted cloudlets on the host's next processing update.
+            mips += Math.min(1.0, vm.getCpuPercentRequested(time)) * vm.getTotalMipsCapacity();
+            if (vm.isInMigration()) {
+                mips += overhead * vm.getTotalMipsCapacity();
+            }
+        }
+        for (Vm vm : host.getVmsMigratingIn()) {
+            mips += overhead * vm.getTotalMipsCapacity();
+        }
+        final double utilization = capacity <= 0.0 ? 0.0 : Math.min(1.0, mips / capacity);
+        watts[position] = hostMetadata.powerCurve(host, PowerCurve.DEFAULT).watts(utilization);
+        busyPes[position] = utilization * host.getWorkingPesNumber();
+    }
+
+    /**
+     * Whether the host's totals as of the current horizon are held apart from its running ones.
+     */
+    private boolean settled(final int position) {
+        return settledAt[position] == horizon;
+    }
+
+    private void advance(final int position, final double time) {
+        final double start = since[position];
+        if (time <= start) {
+            return;
+        }
+
+        since[position] = time;
+        if (start <= horizon && horizon < time && !settled(position)) {
+            charge(position, start, horizon);
+            settledAt[position] = horizon;
+            settledCpuSeconds[position] = cpuSeconds[position];
+            settledEnergyKwh[position] = energyKwh[position];
+            settledCarbonKg[position] = carbonKg[position];
+            charge(position, horizon, time);
+        } else {
+            charge(position, start, time);
+        }
+    }
+
+    private void charge(final int position, final double start, final double end) {
+        cpuSeconds[position] += busyPes[position] * (end - start);
+        if (watts[position] > 0.0 && end > start) {
+            final double kwh = watts[position] * (end - start) / 3_600_000.0;
+            energyKwh[position] += kwh;
+            carbonKg[position] += intensityProfile.carbonKg(hostMetadata.regionIdAt(position), kwh, start, end);
+        }
+    }
+}
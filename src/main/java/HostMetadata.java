@@ -0,0 +1,148 @@
+import org.cloudsimplus.hosts.Host;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact per-host table shared by the placement policies and {@link ResultsLogger}.
+ *
+ * <p>Regions are interned to int ids once; each host's position is found through
+ * {@link HostPositions} and its region id held in a primitive array by position, and
+ * region intensities in a {@code double[]} indexed by region id, so scoring does no
+ * string hashing or boxing. Hosts not in the table belong to the default region.</p>
+ *
+ * <p>The table may also hold each host's {@link PowerCurve}; callers pass the curve
+ * to use for hosts that have none, so one table serves placement and accounting.</p>
+ */
+public final class HostMetadata {
+
+    private final List<Host> hosts;
+    private final String[] regionNames;
+    private final int[] regionByPosition;
+    private final HostPositions positions;
+    private final int defaultRegionId;
+    private final double[] intensityByRegion;
+    private final PowerCurve[] powerCurveByPosition;
+    private double intensityTime = Double.NaN;
+    private CarbonIntensityProvider intensitySource;
+
+    private HostMetadata(
+            final List<Host> hosts,
+            final List<String> regions,
+            final String defaultRegion,
+            final List<PowerCurve> powerCurves) {
+        final Map<String, Integer> regionIds = new LinkedHashMap<>();
+        regionIds.put(defaultRegion, 0);
+        this.hosts = hosts;
+        this.regionByPosition = new int[hosts.size()];
+        for (int i = 0; i < hosts.size(); i++) {
+            final String region = regions.get(i) == null ? defaultRegion : regions.get(i);
+            regionByPosition[i] = regionIds.computeIfAbsent(region, key -> regionIds.size());
+        }
+        this.regionNames = regionIds.keySet().toArray(new String[0]);
+        this.defaultRegionId = 0;
+        this.intensityByRegion = new double[regionNames.length];
+        this.powerCurveByPosition = new PowerCurve[hosts.size()];
+        if (powerCurves != null) {
+            for (int i = 0; i < hosts.size(); i++) {
+                powerCurveByPosition[i] = powerCurves.get(i);
+            }
+        }
+        this.positions = new HostPositions(hosts);
+    }
+
+    /**
+     * Assigns zones to hosts round-robin, in host list order.
+     */
+    public static HostMetadata roundRobin(final List<Host> hosts, final List<String> zones, final String defaultRegion) {
+        return roundRobin(hosts, zones, defaultRegion, null);
+    }
+
+    /**
+     * Assigns zones round-robin and gives each host the power curve at its list position.
+     *
+     * @param powerCurves one curve (or null) per host, in host list order; null for none at all
+     */
+    public static HostMetadata roundRobin(
+            final List<Host> hosts,
+            final List<String> zones,
+            final String defaultRegion,
+            final List<PowerCurve> powerCurves) {
+        final List<String> regions = new ArrayList<>(hosts.size());
+        for (int i = 0; i < hosts.size(); i++) {
+            regions.add(zones.get(i % zones.size()));
+        }
+        return new HostMetadata(hosts, regions, defaultRegion, powerCurves);
+    }
+
+    public static HostMetadata fromRegionMap(final Map<Host, String> hostRegionMap, final String defaultRegion) {
+        final List<Host> hosts = new ArrayList<>(hostRegionMap.keySet());
+        final List<String> regions = new ArrayList<>(hosts.size());
+        for (Host host : hosts) {
+            regions.add(hostRegionMap.get(host));
+        }
+        return new HostMetadata(hosts, regions, defaultRegion, null);
+    }
+
+    /**
+     * Position of the host in the table, or -1 if it is not part of it.
+     */
+    public int position(final Host host) {
+        return positions.of(host);
+    }
+
+    public int hostCount() {
+        return hosts.size();
+    }
+
+    public int regionId(final Host host) {
+        final int position = position(host);
+        return position < 0 ? defaultRegionId : regionByPosition[position];
+    }
+
+    public int regionIdAt(final int position) {
+        return regionByPosition[position];
+    }
+
+    /**
+     * Power curve of the host, or {@code fallback} if it has none or is not in the table.
+     */
+    public PowerCurve powerCurve(final Host host, final PowerCurve fallback) {
+        final int position = position(host);
+        final PowerCurve curve = position < 0 ? null : powerCurveByPosition[position];
+        return curve == null ? fallback : curve;
+    }
+
+    public int regionCount() {
+        return regionNames.length;
+    }
+
+    public String regionName(final int regionId) {
+        return regionNames[regionId];
+    }
+
+    /**
+     * Whether {@link #intensitiesAt} would answer for this provider and time without querying it.
+     */
+    public boolean hasIntensitiesAt(final CarbonIntensityProvider provider, final double simulationTimeSeconds) {
+        return provider == intensitySource && Double.compare(simulationTimeSeconds, intensityTime) == 0;
+    }
+
+    /**
+     * Intensity of every region at the given simulation time, indexed by region id.
+     * The provider is queried once per region and the result reused while the time
+     * and provider stay the same. The returned array is owned by this table.
+     */
+    public double[] intensitiesAt(final CarbonIntensityProvider provider, final double simulationTimeSeconds) {
+        if (!hasIntensitiesAt(provider, simulationTimeSeconds)) {
+            for (int region = 0; region < regionNames.length; region++) {
+                intensityByRegion[region] = provider.getIntensityGco2PerKwh(regionNames[region], simulationTimeSeconds);
+            }
+            intensitySource = provider;
+            intensityTime = simulationTimeSeconds;
+        }
+        return intensityByRegion;
+    }
+}
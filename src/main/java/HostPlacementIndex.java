@@ -0,0 +1,261 @@
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Score-ordered view of a datacenter host list, used by the placement policies
+ * instead of scanning every host for every VM.
+ *
+ * <p>Hosts are grouped by region and power curve and, inside a group, bucketed by free
+ * capacity: first by exact free MIPS, then by working PE count and power-of-two tiers of
+ * free RAM and bandwidth. A query only walks buckets that can hold the VM. Each
+ * bucket keeps its hosts ordered by (utilization, position in the host list).
+ * The scorer must be non-decreasing in utilization for a fixed region value and power
+ * curve, so the first suitable host of a bucket is its best candidate; equal scores are
+ * resolved by host list position, exactly like {@code Stream.min} over the list.</p>
+ *
+ * <p>Utilization is snapshotted when a host is refreshed. The owning policy
+ * refreshes a host after each allocation and deallocation and on host processing
+ * updates, which is when VM utilization changes.</p>
+ */
+final class HostPlacementIndex {
+
+    private static final Comparator<Entry> ENTRY_ORDER = Comparator
+            .comparingDouble((Entry entry) -> entry.utilization)
+            .thenComparingInt(entry -> entry.position);
+
+    private final List<Region> regions = new ArrayList<>();
+    private final HostPositions positions;
+    private final Entry[] entries;
+    private int lastExamined;
+
+    HostPlacementIndex(
+            final List<Host> hosts,
+            final ToIntFunction<Host> regionResolver,
+            final Function<Host, PowerCurve> powerCurveResolver) {
+        this.positions = new HostPositions(hosts);
+        this.entries = new Entry[hosts.size()];
+        final Map<Long, Region> groups = new HashMap<>();
+        final Map<PowerCurve, Integer> curveIds = new IdentityHashMap<>();
+        for (int i = 0; i < hosts.size(); i++) {
+            final Host host = hosts.get(i);
+            final int regionId = regionResolver.applyAsInt(host);
+            final PowerCurve curve = powerCurveResolver.apply(host);
+            final int curveId = curveIds.computeIfAbsent(curve, key -> curveIds.size());
+            final long groupKey = ((long) regionId << 32) | curveId;
+            Region region = groups.get(groupKey);
+            if (region == null) {
+                region = new Region(regionId, curve);
+                groups.put(groupKey, region);
+                regions.add(region);
+            }
+            final Entry entry = new Entry(host, i, region);
+            entry.utilization = utilization(host);
+            entry.freeMips = freeMips(host);
+            entry.capacityKey = capacityKey(host);
+            region.add(entry);
+            entries[i] = entry;
+        }
+    }
+
+    /**
+     * Number of hosts the index was built from, so callers can detect a changed host list.
+     */
+    int hostCount() {
+        return entries.length;
+    }
+
+    /**
+     * Hosts scored by the last {@link #findBest} call.
+     */
+    int lastExamined() {
+        return lastExamined;
+    }
+
+    /**
+     * Returns the host with the lowest score that is suitable for the VM, or empty if none fits.
+     *
+     * @param regionValue per-region input to the scorer (e.g. carbon intensity) by region id,
+     *                    queried once per group of hosts sharing a region and power curve
+     */
+    Optional<Host> findBest(
+            final Vm vm,
+            final IntToDoubleFunction regionValue,
+            final Scorer scorer) {
+        final double requestedMips = vm.getCurrentRequestedMips().totalMips();
+        final long requestedPes = vm.getPesNumber();
+        final long requestedRam = vm.getRam().getCapacity();
+        final long requestedBw = vm.getBw().getCapacity();
+
+        Entry best = null;
+        double bestScore = 0.0;
+        int examined = 0;
+        for (Region region : regions) {
+            final double value = regionValue.applyAsDouble(region.id);
+            for (Map<Long, NavigableSet<Entry>> mipsBucket : region.buckets.tailMap(requestedMips, true).values()) {
+                for (Map.Entry<Long, NavigableSet<Entry>> bucket : mipsBucket.entrySet()) {
+                    if (!fits(bucket.getKey(), requestedPes, requestedRam, requestedBw)) {
+                        continue;
+                    }
+
+                    // Walk in (utilization, position) order: only the first suitable host of a
+                    // bucket can be its best, and nothing after a higher score can beat the best so far.
+                    for (Entry entry : bucket.getValue()) {
+                        examined++;
+                        final double score = scorer.score(entry.utilization, value, region.curve);
+                        if (best != null && score > bestScore) {
+                            break;
+                        }
+                        if (!entry.host.isSuitableForVm(vm)) {
+                            continue;
+                        }
+                        if (best == null || score < bestScore
+                                || (score == bestScore && entry.position < best.position)) {
+                            best = entry;
+                            bestScore = score;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        lastExamined = examined;
+        return best == null ? Optional.empty() : Optional.of(best.host);
+    }
+
+    /**
+     * Re-reads a host's utilization and free capacity and moves it to its new slot if any changed.
+     */
+    void refresh(final Host host) {
+        final int position = positions.of(host);
+        if (position < 0) {
+            return;
+        }
+
+        final Entry entry = entries[position];
+        final double utilization = utilization(host);
+        final double freeMips = freeMips(host);
+        final long capacityKey = capacityKey(host);
+        if (utilization == entry.utilization
+                && freeMips == entry.freeMips
+                && capacityKey == entry.capacityKey) {
+            return;
+        }
+
+        entry.region.remove(entry);
+        entry.utilization = utilization;
+        entry.freeMips = freeMips;
+        entry.capacityKey = capacityKey;
+        entry.region.add(entry);
+    }
+
+    static double utilization(final Host host) {
+        // CPU utilization (safe for all versions)
+        if (host.getTotalMipsCapacity() > 0) {
+            return host.getCpuMipsUtilization() / host.getTotalMipsCapacity();
+        }
+        return 0.0;
+    }
+
+    private static double freeMips(final Host host) {
+        return host.getVmScheduler().getTotalAvailableMips();
+    }
+
+    /**
+     * Packs working PEs and the RAM and bandwidth tiers of a host into one bucket key.
+     */
+    private static long capacityKey(final Host host) {
+        return ((long) host.getWorkingPesNumber() << 16)
+                | ((long) tier(host.getRamProvisioner().getAvailableResource()) << 8)
+                | tier(host.getBwProvisioner().getAvailableResource());
+    }
+
+    /**
+     * Whether hosts in a bucket may hold the requested resources. Only rules out buckets
+     * that certainly cannot; the final decision is always {@link Host#isSuitableForVm(Vm)}.
+     */
+    private static boolean fits(
+            final long capacityKey,
+            final long requestedPes,
+            final long requestedRam,
+            final long requestedBw) {
+        return (capacityKey >>> 16) >= requestedPes
+                && tierMax((int) (capacityKey >>> 8) & 0xFF) >= requestedRam
+                && tierMax((int) capacityKey & 0xFF) >= requestedBw;
+    }
+
+    /**
+     * Bit length of the amount: tier t holds amounts in [2^(t-1), 2^t - 1].
+     */
+    private static int tier(final long amount) {
+        return amount <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(amount);
+    }
+
+    private static long tierMax(final int tier) {
+        return tier >= 63 ? Long.MAX_VALUE : (1L << tier) - 1;
+    }
+
+    @FunctionalInterface
+    interface Scorer {
+        double score(double utilization, double regionValue, PowerCurve powerCurve);
+    }
+
+    private static final class Region {
+        private final int id;
+        private final PowerCurve curve;
+        private final NavigableMap<Double, Map<Long, NavigableSet<Entry>>> buckets = new TreeMap<>();
+
+        private Region(final int id, final PowerCurve curve) {
+            this.id = id;
+            this.curve = curve;
+        }
+
+        private void add(final Entry entry) {
+            buckets.computeIfAbsent(entry.freeMips, key -> new HashMap<>())
+                    .computeIfAbsent(entry.capacityKey, key -> new TreeSet<>(ENTRY_ORDER))
+                    .add(entry);
+        }
+
+        private void remove(final Entry entry) {
+            final Map<Long, NavigableSet<Entry>> mipsBucket = buckets.get(entry.freeMips);
+            final NavigableSet<Entry> bucket = mipsBucket.get(entry.capacityKey);
+            bucket.remove(entry);
+            if (bucket.isEmpty()) {
+                mipsBucket.remove(entry.capacityKey);
+                if (mipsBucket.isEmpty()) {
+                    buckets.remove(entry.freeMips);
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Host host;
+        private final int position;
+        private final Region region;
+        private double utilization;
+        private double freeMips;
+        private long capacityKey;
+
+        private Entry(final Host host, final int position, final Region region) {
+            this.host = host;
+            this.position = position;
+            this.region = region;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+import org.cloudsimplus.hosts.Host;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Position of each host in a host list, looked up through {@link Host#getId()}.
+ *
+ * <p>Positions are held in an {@code int[]} indexed by id minus the smallest id, four
+ * bytes per id in the range instead of a boxed map entry per host. A lookup is only
+ * trusted if the list holds that very host at the position. Hosts without an id of their
+ * own, or sharing one with an earlier host, are found through an identity map.</p>
+ */
+final class HostPositions {
+
+    private final List<Host> hosts;
+    private final long minId;
+    private final int[] positionById;
+    private final Map<Host, Integer> positionWithoutId = new IdentityHashMap<>();
+
+    HostPositions(final List<Host> hosts) {
+        this.hosts = hosts;
+        long min = Long.MAX_VALUE;
+        long max = -1;
+        for (Host host : hosts) {
+            if (host.getId() >= 0) {
+                min = Math.min(min, host.getId());
+                max = Math.max(max, host.getId());
+            }
+        }
+        this.minId = max < 0 ? 0 : min;
+        this.positionById = new int[(int) Math.min(max < 0 ? 0 : max - min + 1, Integer.MAX_VALUE - 8)];
+        Arrays.fill(positionById, -1);
+        for (int i = 0; i < hosts.size(); i++) {
+            final long slot = hosts.get(i).getId() - minId;
+            if (hosts.get(i).getId() >= 0 && slot < positionById.length && positionById[(int) slot] < 0) {
+                positionById[(int) slot] = i;
+            } else {
+                positionWithoutId.put(hosts.get(i), i);
+            }
+        }
+    }
+
+    /**
+     * Position of the host in the list, or -1 if it is not part of it.
+     */
+    int of(final Host host) {
+        final long slot = host.getId() - minId;
+        if (host.getId() >= 0 && slot >= 0 && slot < positionById.length) {
+            final int position = positionById[(int) slot];
+            if (position >= 0 && hosts.get(position) == host) {
+                return position;
+            }
+        }
+        if (positionWithoutId.isEmpty()) {
+            return -1;
+        }
+        final Integer position = positionWithoutId.get(host);
+        return position == null ? -1 : position;
+    }
+
+    int size() {
+        return hosts.size();
+    }
+}
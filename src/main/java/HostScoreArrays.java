@@ -0,0 +1,258 @@
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Struct-of-arrays mirror of the placement state of a host list, so a policy with a
+ * {@link ScoredVmAllocationPolicy.LinearScore} can score the whole fleet in one pass over
+ * primitive columns instead of visiting every {@link Host} object.
+ *
+ * <p>Column {@code i} of each array belongs to host {@code i} of the list: utilization, watts
+ * at that utilization, the value of the host's region, and free MIPS, working PEs, free RAM
+ * and free bandwidth. Power curves are table lookups with a per-host segment, so watts are
+ * evaluated once per host when the host is refreshed rather than inside the kernel. A host is
+ * refreshed when the owning policy allocates or deallocates a VM on it and on every processing
+ * update the policy forwards, like {@link HostPlacementIndex}; region values are polled once
+ * per search.</p>
+ *
+ * <p>The kernel computes every score with the capacity test as a mask, unsuitable hosts
+ * scoring +infinity, and returns the minimum. The first host with that score is then checked
+ * with {@link Host#isSuitableForVm(Vm)}: the mask only rules out hosts that certainly cannot
+ * take the VM, so a rejected candidate is masked out and the next minimum taken. The result
+ * is the host a full scan selects, lowest score first and list position on ties.</p>
+ *
+ * <p>{@link VectorScoreKernel} runs the pass with the JDK Vector API. It needs the
+ * {@code jdk.incubator.vector} module, which the JVM only resolves when started with
+ * {@code --add-modules jdk.incubator.vector}; without it the same pass runs as a plain loop.</p>
+ */
+final class HostScoreArrays {
+
+    /**
+     * Whether the Vector API can be used in this JVM.
+     */
+    static final boolean VECTOR_API_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private final List<Host> hosts;
+    private final HostPositions positions;
+    private final PowerCurve[] curves;
+    private final int[] regionIds;
+    private final int[][] positionsByRegion;
+    private final double[] lastRegionValues;
+    private final ScoredVmAllocationPolicy.LinearScore linearScore;
+    private final Kernel kernel;
+
+    final double[] utilization;
+    final double[] watts;
+    final double[] regionValue;
+    final double[] freeMips;
+    final double[] workingPes;
+    final double[] freeRam;
+    final double[] freeBw;
+    final double[] scores;
+
+    /**
+     * @param vector use {@link VectorScoreKernel} if the Vector API is available; otherwise,
+     *               or if false, the scalar loop
+     */
+    HostScoreArrays(
+            final List<Host> hosts,
+            final ToIntFunction<Host> regionResolver,
+            final Function<Host, PowerCurve> powerCurveResolver,
+            final ScoredVmAllocationPolicy.LinearScore linearScore,
+            final boolean vector) {
+        final int count = hosts.size();
+        this.hosts = hosts;
+        this.linearScore = linearScore;
+        this.kernel = kernel(vector);
+        this.positions = new HostPositions(hosts);
+        this.curves = new PowerCurve[count];
+        this.utilization = new double[count];
+        this.watts = new double[count];
+        this.regionValue = new double[count];
+        this.freeMips = new double[count];
+        this.workingPes = new double[count];
+        this.freeRam = new double[count];
+        this.freeBw = new double[count];
+        this.scores = new double[count];
+
+        final Map<Integer, List<Integer>> members = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            final Host host = hosts.get(i);
+            members.computeIfAbsent(regionResolver.applyAsInt(host), key -> new ArrayList<>()).add(i);
+            curves[i] = powerCurveResolver.apply(host);
+            refresh(i);
+        }
+
+        this.regionIds = new int[members.size()];
+        this.positionsByRegion = new int[members.size()][];
+        this.lastRegionValues = new double[members.size()];
+        int region = 0;
+        for (Map.Entry<Integer, List<Integer>> entry : members.entrySet()) {
+            regionIds[region] = entry.getKey();
+            positionsByRegion[region] = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+            lastRegionValues[region] = Double.NaN;
+            region++;
+        }
+    }
+
+    /**
+     * Number of hosts the arrays were built from, so callers can detect a changed host list.
+     */
+    int hostCount() {
+        return hosts.size();
+    }
+
+    /**
+     * The Vector API kernel if requested and available, else the scalar loop.
+     */
+    static Kernel kernel(final boolean vector) {
+        return vector && VECTOR_API_AVAILABLE ? new VectorScoreKernel() : new ScalarKernel();
+    }
+
+    /**
+     * Copies the current value of every region into the columns of its hosts, skipping
+     * regions whose value has not changed.
+     */
+    void updateRegionValues(final IntToDoubleFunction regionValues) {
+        for (int region = 0; region < regionIds.length; region++) {
+            final double value = regionValues.applyAsDouble(regionIds[region]);
+            if (Double.compare(value, lastRegionValues[region]) == 0) {
+                continue;
+            }
+            lastRegionValues[region] = value;
+            for (int position : positionsByRegion[region]) {
+                regionValue[position] = value;
+            }
+        }
+    }
+
+    /**
+     * Position of the lowest-scoring host suitable for the VM, or -1 if none is.
+     * Region values must be current, see {@link #updateRegionValues}.
+     */
+    int findBest(final Vm vm) {
+        final int count = hosts.size();
+        double best = kernel.scoreAll(
+                this,
+                linearScore,
+                vm.getCurrentRequestedMips().totalMips(),
+                vm.getPesNumber(),
+                vm.getRam().getCapacity(),
+                vm.getBw().getCapacity()
+        );
+        while (best != Double.POSITIVE_INFINITY) {
+            final int position = kernel.firstIndexOf(scores, count, best);
+            if (hosts.get(position).isSuitableForVm(vm)) {
+                return position;
+            }
+            scores[position] = Double.POSITIVE_INFINITY;
+            best = kernel.min(scores, count);
+        }
+        return -1;
+    }
+
+    /**
+     * Re-reads a host's utilization and free capacity.
+     */
+    void refresh(final Host host) {
+        final int position = positions.of(host);
+        if (position >= 0) {
+            refresh(position);
+        }
+    }
+
+    private void refresh(final int position) {
+        final Host host = hosts.get(position);
+        final double hostUtilization = HostPlacementIndex.utilization(host);
+        utilization[position] = hostUtilization;
+        watts[position] = curves[position].watts(hostUtilization);
+        freeMips[position] = host.getVmScheduler().getTotalAvailableMips();
+        workingPes[position] = host.getWorkingPesNumber();
+        freeRam[position] = host.getRamProvisioner().getAvailableResource();
+        freeBw[position] = host.getBwProvisioner().getAvailableResource();
+    }
+
+    /**
+     * One pass over the columns. {@link #scoreAll} writes every score, +infinity for hosts
+     * failing the capacity mask, to {@link #scores} and returns the smallest.
+     */
+    interface Kernel {
+
+        String name();
+
+        double scoreAll(
+                HostScoreArrays arrays,
+                ScoredVmAllocationPolicy.LinearScore linearScore,
+                double requestedMips,
+                double requestedPes,
+                double requestedRam,
+                double requestedBw);
+
+        /**
+         * First index below {@code length} holding exactly {@code value}; the value must be present.
+         */
+        int firstIndexOf(double[] values, int length, double value);
+
+        double min(double[] values, int length);
+    }
+
+    /**
+     * The kernel as a plain loop, for JVMs without the Vector API.
+     */
+    static final class ScalarKernel implements Kernel {
+
+        @Override
+        public String name() {
+            return "scalar";
+        }
+
+        @Override
+        public double scoreAll(
+                final HostScoreArrays arrays,
+                final ScoredVmAllocationPolicy.LinearScore linearScore,
+                final double requestedMips,
+                final double requestedPes,
+                final double requestedRam,
+                final double requestedBw) {
+            double min = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < arrays.scores.length; i++) {
+                final boolean fits = arrays.freeMips[i] >= requestedMips
+                        && arrays.workingPes[i] >= requestedPes
+                        && arrays.freeRam[i] >= requestedRam
+                        && arrays.freeBw[i] >= requestedBw;
+                final double score = fits
+                        ? linearScore.score(arrays.utilization[i], arrays.watts[i], arrays.regionValue[i])
+                        : Double.POSITIVE_INFINITY;
+                arrays.scores[i] = score;
+                min = Math.min(min, score);
+            }
+            return min;
+        }
+
+        @Override
+        public int firstIndexOf(final double[] values, final int length, final double value) {
+            for (int i = 0; i < length; i++) {
+                if (values[i] == value) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Value " + value + " not found.");
+        }
+
+        @Override
+        public double min(final double[] values, final int length) {
+            double min = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < length; i++) {
+                min = Math.min(min, values[i]);
+            }
+            return min;
+        }
+    }
+}
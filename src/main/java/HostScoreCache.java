@@ -0,0 +1,173 @@
+import org.cloudsimplus.hosts.Host;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Last computed score of every host of a policy, so a full scan only rescores the hosts
+ * whose inputs changed since the previous placement.
+ *
+ * <p>A score depends on host utilization, the host's region value and its power curve.
+ * Curves never change. A host's entry is dropped when the owning policy allocates a VM to
+ * it or deallocates one from it, and when a processing update the policy forwards leaves
+ * the host at a different utilization. {@link #updateRegionValues} is called once per search with the
+ * current region values; a region whose value moved starts a new epoch, and an entry computed
+ * in an earlier epoch of its region is found stale when the host is next looked up, so a
+ * search only pays for the hosts it reads. Every other lookup is answered from the cache.</p>
+ *
+ * <p>Lookups, recomputations and invalidations are counted into the owner's
+ * {@link PlacementStats}, when it has one; a host invalidation is only counted when it drops
+ * a valid entry, and one made stale by its region is counted when it is looked up.</p>
+ */
+final class HostScoreCache {
+
+    private final List<Host> hosts;
+    private final HostPositions positions;
+    private final PowerCurve[] curves;
+    private final int[] regionIndexByPosition;
+    private final int[] regionIds;
+    private final double[] regionValues;
+    private final int[] regionEpochs;
+    private final double[] utilizations;
+    private final double[] scores;
+    private final int[] scoreEpochs;
+    private final HostPlacementIndex.Scorer scorer;
+    private final Supplier<PlacementStats> stats;
+
+    HostScoreCache(
+            final List<Host> hosts,
+            final ToIntFunction<Host> regionResolver,
+            final Function<Host, PowerCurve> powerCurveResolver,
+            final HostPlacementIndex.Scorer scorer,
+            final Supplier<PlacementStats> stats) {
+        this.hosts = hosts;
+        this.scorer = scorer;
+        this.stats = stats;
+        this.positions = new HostPositions(hosts);
+        this.curves = new PowerCurve[hosts.size()];
+        this.regionIndexByPosition = new int[hosts.size()];
+        this.utilizations = new double[hosts.size()];
+        this.scores = new double[hosts.size()];
+        this.scoreEpochs = new int[hosts.size()];
+
+        final Map<Integer, Integer> regionIndexById = new LinkedHashMap<>();
+        for (int i = 0; i < hosts.size(); i++) {
+            final Host host = hosts.get(i);
+            final int regionId = regionResolver.applyAsInt(host);
+            regionIndexByPosition[i] = regionIndexById.computeIfAbsent(regionId, key -> regionIndexById.size());
+            curves[i] = powerCurveResolver.apply(host);
+            utilizations[i] = HostPlacementIndex.utilization(host);
+            scores[i] = Double.NaN;
+        }
+
+        this.regionIds = regionIndexById.keySet().stream().mapToInt(Integer::intValue).toArray();
+        this.regionValues = new double[regionIds.length];
+        this.regionEpochs = new int[regionIds.length];
+        Arrays.fill(regionValues, Double.NaN);
+    }
+
+    /**
+     * Number of hosts the cache was built from, so callers can detect a changed host list.
+     */
+    int hostCount() {
+        return hosts.size();
+    }
+
+    /**
+     * Reads the current value of every region once and starts a new epoch for each region
+     * whose value is not the one its scores were computed with. Costs one lookup per region,
+     * however many hosts it has.
+     */
+    void updateRegionValues(final IntToDoubleFunction regionValue) {
+        for (int region = 0; region < regionIds.length; region++) {
+            final double value = regionValue.applyAsDouble(regionIds[region]);
+            if (Double.compare(value, regionValues[region]) == 0) {
+                continue;
+            }
+            regionValues[region] = value;
+            regionEpochs[region]++;
+            final PlacementStats placementStats = stats.get();
+            if (placementStats != null) {
+                placementStats.recordRegionInvalidation();
+            }
+        }
+    }
+
+    /**
+     * Score of the host at the given position of the host list, recomputed only if its entry
+     * was dropped or its region has moved on since. Region values must be current, see
+     * {@link #updateRegionValues}.
+     */
+    double scoreAt(final int position) {
+        final int region = regionIndexByPosition[position];
+        if (!Double.isNaN(scores[position]) && scoreEpochs[position] != regionEpochs[region]) {
+            scores[position] = Double.NaN;
+            countHostInvalidation();
+        }
+        double score = scores[position];
+        final boolean recompute = Double.isNaN(score);
+        if (recompute) {
+            final double utilization = HostPlacementIndex.utilization(hosts.get(position));
+            utilizations[position] = utilization;
+            score = scorer.score(utilization, regionValues[region], curves[position]);
+            scores[position] = score;
+            scoreEpochs[position] = regionEpochs[region];
+        }
+        final PlacementStats placementStats = stats.get();
+        if (placementStats != null) {
+            placementStats.recordScoreLookup(recompute);
+        }
+        return score;
+    }
+
+    /**
+     * Position of the host in the host list, or -1 if the cache does not cover it.
+     */
+    int position(final Host host) {
+        return positions.of(host);
+    }
+
+    /**
+     * Drops a host's entry, e.g. after a VM was allocated to or deallocated from it.
+     */
+    void invalidate(final Host host) {
+        final int position = position(host);
+        if (position >= 0) {
+            drop(position);
+        }
+    }
+
+    /**
+     * Drops a host's entry if a processing update left it at a different utilization.
+     */
+    void processingUpdated(final Host host) {
+        final int position = position(host);
+        if (position >= 0 && HostPlacementIndex.utilization(host) != utilizations[position]) {
+            drop(position);
+        }
+    }
+
+    private void drop(final int position) {
+        if (Double.isNaN(scores[position])) {
+            return;
+        }
+        final boolean valid = scoreEpochs[position] == regionEpochs[regionIndexByPosition[position]];
+        scores[position] = Double.NaN;
+        if (valid) {
+            countHostInvalidation();
+        }
+    }
+
+    private void countHostInvalidation() {
+        final PlacementStats placementStats = stats.get();
+        if (placementStats != null) {
+            placementStats.recordHostInvalidation();
+        }
+    }
+}
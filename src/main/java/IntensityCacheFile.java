@@ -0,0 +1,272 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Carbon intensities fetched by any process, kept in a small memory-mapped file so later
+ * runs can start without touching the network.
+ *
+ * <p>The file is a header (magic, version, slot count) followed by a fixed number of
+ * 64-byte slots, each holding one zone's latest intensity and the time it was fetched:
+ * {@code zone length (short), zone (UTF-8, up to 38 bytes), fetched-at millis (long),
+ * intensity (double), CRC32C of the preceding 56 bytes (int)}. A slot whose checksum does not
+ * match, e.g. after a crash mid-write, reads as empty. The slot count bounds the file; when
+ * every slot is taken, the entry fetched longest ago is evicted, which is always an expired
+ * one before a live one.</p>
+ *
+ * <p>Processes sharing the file take a shared file lock to read and an exclusive one to write.
+ * File locks are held per JVM, so {@link #open(Path, int)} returns one instance per file and
+ * its methods are synchronized.</p>
+ */
+public final class IntensityCacheFile {
+
+    private static final int MAGIC = 0x43494346; // "CICF"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int SLOT_BYTES = 64;
+    private static final int MAX_ZONE_BYTES = 38;
+    private static final int FETCHED_AT_OFFSET = 40;
+    private static final int INTENSITY_OFFSET = 48;
+    private static final int CRC_OFFSET = 56;
+
+    private static final Map<Path, IntensityCacheFile> OPEN = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer slots;
+    private final int slotCount;
+    private final CRC32C crc = new CRC32C();
+    private long evictions;
+
+    private IntensityCacheFile(final Path file, final FileChannel channel, final MappedByteBuffer slots, final int slotCount) {
+        this.file = file;
+        this.channel = channel;
+        this.slots = slots;
+        this.slotCount = slotCount;
+    }
+
+    /**
+     * Opens the cache file, creating it with {@code slotCount} slots if it does not exist or is not
+     * a valid cache. An existing cache keeps the slot count it was created with.
+     */
+    public static IntensityCacheFile open(final Path file, final int slotCount) {
+        if (slotCount <= 0) {
+            throw new IllegalArgumentException("slotCount must be positive: " + slotCount);
+        }
+        return OPEN.computeIfAbsent(file.toAbsolutePath().normalize(), path -> create(path, slotCount));
+    }
+
+    /**
+     * Latest entry for the zone, or null if the file has none; expiry is up to the caller.
+     */
+    public synchronized Entry get(final String zone) {
+        final byte[] name = zone.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_ZONE_BYTES) {
+            return null;
+        }
+        try {
+            final FileLock lock = channel.lock(0L, Long.MAX_VALUE, true);
+            try {
+                final int slot = find(name);
+                return slot < 0
+                        ? null
+                        : new Entry(
+                                slots.getDouble(slot * SLOT_BYTES + INTENSITY_OFFSET),
+                                slots.getLong(slot * SLOT_BYTES + FETCHED_AT_OFFSET)
+                        );
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read carbon intensity cache " + file + ".", e);
+        }
+    }
+
+    /**
+     * Stores an intensity fetched at the given time, unless the file already holds a newer one
+     * for the zone. Zones longer than 38 UTF-8 bytes are not cached.
+     */
+    public synchronized void put(final String zone, final double intensity, final long fetchedAtMillis) {
+        final byte[] name = zone.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_ZONE_BYTES) {
+            return;
+        }
+        try {
+            final FileLock lock = channel.lock();
+            try {
+                int slot = find(name);
+                if (slot >= 0) {
+                    if (slots.getLong(slot * SLOT_BYTES + FETCHED_AT_OFFSET) > fetchedAtMillis) {
+                        return;
+                    }
+                } else {
+                    slot = victim();
+                }
+                write(slot, name, intensity, fetchedAtMillis);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write carbon intensity cache " + file + ".", e);
+        }
+    }
+
+    /**
+     * Entries this process evicted to make room for another zone.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    private int find(final byte[] name) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            final int base = slot * SLOT_BYTES;
+            if (slots.getShort(base) == name.length && valid(base) && nameEquals(base, name)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * An empty or corrupt slot if there is one, else the slot fetched longest ago.
+     */
+    private int victim() {
+        int oldest = 0;
+        long oldestFetchedAt = Long.MAX_VALUE;
+        for (int slot = 0; slot < slotCount; slot++) {
+            final int base = slot * SLOT_BYTES;
+            if (slots.getShort(base) == 0 || !valid(base)) {
+                return slot;
+            }
+            final long fetchedAt = slots.getLong(base + FETCHED_AT_OFFSET);
+            if (fetchedAt < oldestFetchedAt) {
+                oldest = slot;
+                oldestFetchedAt = fetchedAt;
+            }
+        }
+        evictions++;
+        return oldest;
+    }
+
+    private void write(final int slot, final byte[] name, final double intensity, final long fetchedAtMillis) {
+        final int base = slot * SLOT_BYTES;
+        final byte[] bytes = new byte[SLOT_BYTES];
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.putShort((short) name.length).put(name);
+        buffer.putLong(FETCHED_AT_OFFSET, fetchedAtMillis).putDouble(INTENSITY_OFFSET, intensity);
+        crc.reset();
+        crc.update(bytes, 0, CRC_OFFSET);
+        buffer.putInt(CRC_OFFSET, (int) crc.getValue());
+        final ByteBuffer slotView = slots.duplicate();
+        slotView.position(base);
+        slotView.put(bytes);
+    }
+
+    private boolean valid(final int base) {
+        final ByteBuffer content = slots.duplicate();
+        content.position(base).limit(base + CRC_OFFSET);
+        crc.reset();
+        crc.update(content);
+        return (int) crc.getValue() == slots.getInt(base + CRC_OFFSET);
+    }
+
+    private boolean nameEquals(final int base, final byte[] name) {
+        for (int i = 0; i < name.length; i++) {
+            if (slots.get(base + Short.BYTES + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static IntensityCacheFile create(final Path file, final int requestedSlots) {
+        try {
+            Files.createDirectories(file.getParent());
+            final FileChannel channel = FileChannel.open(
+                    file,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE
+            );
+            final int slotCount;
+            final FileLock lock = channel.lock();
+            try {
+                slotCount = initialize(channel, requestedSlots);
+            } finally {
+                lock.release();
+            }
+            final MappedByteBuffer slots = channel.map(
+                    FileChannel.MapMode.READ_WRITE,
+                    HEADER_BYTES,
+                    (long) slotCount * SLOT_BYTES
+            );
+            return new IntensityCacheFile(file, channel, slots, slotCount);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open carbon intensity cache " + file + ".", e);
+        }
+    }
+
+    /**
+     * Slot count of a valid existing cache; otherwise writes an empty one and returns its slot count.
+     */
+    private static int initialize(final FileChannel channel, final int requestedSlots) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0L);
+        header.flip();
+        if (header.remaining() == HEADER_BYTES && header.getInt() == MAGIC && header.getInt() == VERSION) {
+            final int existingSlots = header.getInt();
+            if (existingSlots > 0 && channel.size() == HEADER_BYTES + (long) existingSlots * SLOT_BYTES) {
+                return existingSlots;
+            }
+        }
+
+        channel.truncate(0L);
+        final ByteBuffer empty = ByteBuffer.allocate(HEADER_BYTES + requestedSlots * SLOT_BYTES);
+        empty.putInt(MAGIC).putInt(VERSION).putInt(requestedSlots);
+        empty.position(0);
+        while (empty.hasRemaining()) {
+            channel.write(empty, empty.position());
+        }
+        channel.force(true);
+        return requestedSlots;
+    }
+
+    /**
+     * One zone's cached intensity and when it was fetched.
+     */
+    public static final class Entry {
+        private final double intensity;
+        private final long fetchedAtMillis;
+
+        private Entry(final double intensity, final long fetchedAtMillis) {
+            this.intensity = intensity;
+            this.fetchedAtMillis = fetchedAtMillis;
+        }
+
+        public double intensity() {
+            return intensity;
+        }
+
+        public long fetchedAtMillis() {
+            return fetchedAtMillis;
+        }
+    }
+}
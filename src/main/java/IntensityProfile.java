@@ -0,0 +1,98 @@
+import java.util.Arrays;
+
+/**
+ * Carbon intensity of each region integrated over simulation time, for pricing energy drawn
+ * over an interval rather than at one instant.
+ *
+ * <p>Time is divided into steps of {@code stepSeconds}; a region's intensity is read from the
+ * provider once per step, at the start of the step, and held for the whole step. The running
+ * integral of every region is kept in a {@code double[]} by step, so the mean intensity over
+ * any interval is two lookups. The profile is extended on demand, doubling its length, and a
+ * provider without history yields a constant profile.</p>
+ *
+ * <p>Not thread-safe; each run prices with its own profile.</p>
+ */
+public final class IntensityProfile {
+
+    private final HostMetadata hostMetadata;
+    private final CarbonIntensityProvider carbonIntensityProvider;
+    private final double stepSeconds;
+    private final double[][] integralByRegion;
+    private int steps;
+
+    public IntensityProfile(
+            final HostMetadata hostMetadata,
+            final CarbonIntensityProvider carbonIntensityProvider,
+            final double stepSeconds) {
+        if (stepSeconds <= 0.0) {
+            throw new IllegalArgumentException("stepSeconds must be positive: " + stepSeconds);
+        }
+        this.hostMetadata = hostMetadata;
+        this.carbonIntensityProvider = carbonIntensityProvider;
+        this.stepSeconds = stepSeconds;
+        this.integralByRegion = new double[hostMetadata.regionCount()][1];
+    }
+
+    public CarbonIntensityProvider carbonIntensityProvider() {
+        return carbonIntensityProvider;
+    }
+
+    /**
+     * Mean intensity of the region over {@code [start, end]}, in gCO2/kWh; the intensity at
+     * {@code start} for an empty interval.
+     */
+    public double meanIntensity(final int regionId, final double start, final double end) {
+        if (end <= start) {
+            return intensityAt(regionId, start);
+        }
+        return (integral(regionId, end) - integral(regionId, start)) / (end - start);
+    }
+
+    /**
+     * Carbon of {@code kwh} drawn evenly over {@code [start, end]} in the region, in kg CO2.
+     */
+    public double carbonKg(final int regionId, final double kwh, final double start, final double end) {
+        return kwh * meanIntensity(regionId, start, end) / 1000.0;
+    }
+
+    private double intensityAt(final int regionId, final double time) {
+        final int step = step(time);
+        ensureSteps(step + 1);
+        final double[] integral = integralByRegion[regionId];
+        return (integral[step + 1] - integral[step]) / stepSeconds;
+    }
+
+    /**
+     * Integral of the region's intensity from time 0 to {@code time}, in gCO2/kWh times seconds.
+     */
+    private double integral(final int regionId, final double time) {
+        final int step = step(time);
+        ensureSteps(step + 1);
+        final double[] integral = integralByRegion[regionId];
+        final double into = Math.max(0.0, time - step * stepSeconds);
+        return integral[step] + (integral[step + 1] - integral[step]) * into / stepSeconds;
+    }
+
+    private void ensureSteps(final int required) {
+        if (required <= steps) {
+            return;
+        }
+
+        final int extended = Math.max(required, Math.max(16, steps * 2));
+        for (int region = 0; region < integralByRegion.length; region++) {
+            final double[] integral = Arrays.copyOf(integralByRegion[region], extended + 1);
+            for (int step = steps; step < extended; step++) {
+                integral[step + 1] = integral[step] + stepSeconds * carbonIntensityProvider.getIntensityGco2PerKwh(
+                        hostMetadata.regionName(region),
+                        step * stepSeconds
+                );
+            }
+            integralByRegion[region] = integral;
+        }
+        steps = extended;
+    }
+
+    private int step(final double time) {
+        return (int) Math.max(0.0, Math.min(Integer.MAX_VALUE - 2, Math.floor(time / stepSeconds)));
+    }
+}
@@ -0,0 +1,151 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Fixed-memory histogram of non-negative nanosecond latencies.
+ *
+ * <p>Values are bucketed log-linearly: each power of two is split into
+ * {@code 2^SUB_BUCKET_BITS} equal sub-buckets, so a recorded value is off by at most
+ * one sub-bucket width (about 6%) whatever its magnitude. Values under
+ * {@code 2^SUB_BUCKET_BITS} ns are exact. Recording is a bit scan and an array
+ * increment; the count array never grows.</p>
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAGNITUDES = 64 - SUB_BUCKET_BITS + 1;
+
+    private final long[] counts = new long[MAGNITUDES * SUB_BUCKETS];
+    private long totalCount;
+    private long totalNanos;
+    private long maxNanos;
+
+    void record(final long nanos) {
+        final long value = Math.max(0L, nanos);
+        counts[bucketOf(value)]++;
+        totalCount++;
+        totalNanos += value;
+        maxNanos = Math.max(maxNanos, value);
+    }
+
+    /**
+     * Adds every value recorded in {@code other}.
+     */
+    void addAll(final LatencyHistogram other) {
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            counts[bucket] += other.counts[bucket];
+        }
+        totalCount += other.totalCount;
+        totalNanos += other.totalNanos;
+        maxNanos = Math.max(maxNanos, other.maxNanos);
+    }
+
+    void clear() {
+        Arrays.fill(counts, 0L);
+        totalCount = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    /**
+     * Binary form used by {@link RunLog}: the totals, then only the non-empty buckets.
+     */
+    void writeTo(final DataOutput out) throws IOException {
+        out.writeLong(totalCount);
+        out.writeLong(totalNanos);
+        out.writeLong(maxNanos);
+        int used = 0;
+        for (long count : counts) {
+            if (count != 0L) {
+                used++;
+            }
+        }
+        out.writeShort(used);
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            if (counts[bucket] != 0L) {
+                out.writeShort(bucket);
+                out.writeLong(counts[bucket]);
+            }
+        }
+    }
+
+    /**
+     * Replaces this histogram's values with ones written by {@link #writeTo(DataOutput)}.
+     */
+    void readFrom(final DataInput in) throws IOException {
+        clear();
+        totalCount = in.readLong();
+        totalNanos = in.readLong();
+        maxNanos = in.readLong();
+        final int used = in.readUnsignedShort();
+        for (int i = 0; i < used; i++) {
+            final int bucket = in.readUnsignedShort();
+            if (bucket >= counts.length) {
+                throw new IOException("Latency bucket out of range: " + bucket + ".");
+            }
+            counts[bucket] = in.readLong();
+        }
+    }
+
+    long count() {
+        return totalCount;
+    }
+
+    long maxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * Exact mean of the recorded values; 0 if nothing was recorded.
+     */
+    double meanNanos() {
+        return totalCount == 0 ? 0.0 : (double) totalNanos / totalCount;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile (0..100), capped at the
+     * largest recorded value; 0 if nothing was recorded.
+     */
+    long percentileNanos(final double percentile) {
+        if (totalCount == 0) {
+            return 0L;
+        }
+
+        final long rank = Math.max(1L, (long) Math.ceil(totalCount * Math.min(100.0, percentile) / 100.0));
+        long seen = 0L;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(maxNanos, upperBound(bucket));
+            }
+        }
+        return maxNanos;
+    }
+
+    /**
+     * Magnitude m >= 1 holds [2^(m+SUB_BUCKET_BITS-1), 2^(m+SUB_BUCKET_BITS)); magnitude 0 holds [0, SUB_BUCKETS).
+     */
+    private static int bucketOf(final long value) {
+        final int bits = 64 - Long.numberOfLeadingZeros(value);
+        if (bits <= SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+        final int magnitude = bits - SUB_BUCKET_BITS;
+        final int shift = magnitude - 1;
+        return magnitude * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long upperBound(final int bucket) {
+        final int magnitude = bucket / SUB_BUCKETS;
+        final long subBucket = bucket % SUB_BUCKETS;
+        if (magnitude == 0) {
+            return subBucket;
+        }
+        final int shift = magnitude - 1;
+        final long lower = (1L << (SUB_BUCKET_BITS + shift)) + (subBucket << shift);
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,478 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+
+/**
+ * Sweeps the CIAVMP score weights (and fleet sizes) instead of the fixed 0.4/0.3/0.3.
+ *
+ * <p>Weight points lie on the simplex {@code alpha + beta + gamma = 1}. They come from a
+ * regular grid ({@code SWEEP_MODE=grid}, {@code SWEEP_STEPS} intervals per weight), or
+ * from {@code SWEEP_SAMPLES} uniform random or Latin-hypercube points ({@code random},
+ * {@code lhs}) seeded by {@code SWEEP_SEED} and normalized onto the simplex. Every point
+ * is crossed with {@code SWEEP_HOST_COUNTS} (default HOST_COUNT) and run
+ * {@code SWEEP_RUNS} times on a fork-join pool of EVAL_WORKERS threads.</p>
+ *
+ * <p>Results are appended to {@code results/sweep/sweep_results.csv}, one row per
+ * configuration keyed by a hash of everything that determines its outcome. Rows already
+ * in the file are reused, so an interrupted or repeated sweep only runs the missing
+ * points. The key also covers the campaign settings a resumed campaign checks (carbon
+ * trace, workload trace, host classes, consolidation, shifting, placement paths...), so
+ * changing one of them runs the points again. The Pareto front of mean energy, carbon
+ * and makespan over all rows is written to {@code results/sweep/sweep_pareto.csv}.</p>
+ *
+ * <p>Run with {@code java -jar vm-placement-1.0.jar sweep}.</p>
+ */
+public final class ParameterSweep {
+
+    private static final Path SWEEP_DIR = Path.of("results", "sweep");
+    private static final String HEADER = "config_hash,alpha,beta,gamma,idle_power_w,max_power_w,hosts,vms,cloudlets,"
+            + "runs,zones,completion_mean_pct,makespan_mean_s,energy_mean_kwh,carbon_mean_kg";
+
+    private ParameterSweep() {
+    }
+
+    public static void main(final String[] args) {
+        final List<String> zones = CarbonSimulation.resolveZones();
+        final CarbonIntensityProvider carbonIntensityProvider = CarbonSimulation.createCarbonIntensityProvider(zones);
+        final int vmCount = CarbonSimulation.getIntEnv("VM_COUNT", 100);
+        final int cloudletCount = CarbonSimulation.getIntEnv("CLOUDLET_COUNT", 100);
+        final int runs = CarbonSimulation.getIntEnv("SWEEP_RUNS", 1);
+        final int workers = CarbonSimulation.getIntEnv("EVAL_WORKERS", Runtime.getRuntime().availableProcessors());
+
+        final List<double[]> weightPoints = weightPoints(
+                System.getenv().getOrDefault("SWEEP_MODE", "grid").trim().toLowerCase(Locale.ROOT),
+                CarbonSimulation.getIntEnv("SWEEP_STEPS", 10),
+                CarbonSimulation.getIntEnv("SWEEP_SAMPLES", 64),
+                CarbonSimulation.getIntEnv("SWEEP_SEED", 42)
+        );
+        final List<Config> configs = new ArrayList<>();
+        for (int hostCount : hostCounts()) {
+            for (double[] point : weightPoints) {
+                configs.add(new Config(
+                        new CarbonVmAllocationPolicy.Weights(
+                                point[0],
+                                point[1],
+                                point[2],
+                                CarbonSimulation.getDoubleEnv("IDLE_POWER_WATTS", 175.0),
+                                CarbonSimulation.getDoubleEnv("MAX_POWER_WATTS", 250.0)
+                        ),
+                        hostCount,
+                        vmCount,
+                        cloudletCount,
+                        runs,
+                        zones
+                ));
+            }
+        }
+
+        final Path resultsCsv = SWEEP_DIR.resolve("sweep_results.csv");
+        final Map<String, Row> rows = readRows(resultsCsv);
+        final List<Config> pending = configs.stream()
+                .filter(config -> !rows.containsKey(config.hash()))
+                .collect(Collectors.toList());
+        System.out.printf(
+                "Sweep | %d configurations, %d already in %s, %d to run on %d workers%n",
+                configs.size(),
+                configs.size() - pending.size(),
+                resultsCsv,
+                pending.size(),
+                workers
+        );
+
+        run(pending, workers, carbonIntensityProvider, resultsCsv, rows);
+
+        final List<Row> front = paretoFront(new ArrayList<>(rows.values()));
+        writePareto(SWEEP_DIR.resolve("sweep_pareto.csv"), front);
+        System.out.println("Sweep results written to: " + resultsCsv.toAbsolutePath());
+        System.out.println("Pareto front (" + front.size() + " of " + rows.size() + " configurations) written to: "
+                + SWEEP_DIR.resolve("sweep_pareto.csv").toAbsolutePath());
+    }
+
+    /**
+     * Runs the configurations on a fork-join pool and appends each row, in configuration
+     * order, as soon as it and all earlier ones are done.
+     */
+    private static void run(
+            final List<Config> pending,
+            final int workers,
+            final CarbonIntensityProvider carbonIntensityProvider,
+            final Path resultsCsv,
+            final Map<String, Row> rows) {
+        final ForkJoinPool pool = new ForkJoinPool(workers);
+        try (BufferedWriter writer = openResults(resultsCsv)) {
+            final Deque<ForkJoinTask<Row>> tasks = new ArrayDeque<>();
+            for (Config config : pending) {
+                tasks.add(pool.submit(() -> config.run(carbonIntensityProvider)));
+            }
+
+            int done = 0;
+            while (!tasks.isEmpty()) {
+                final Row row = tasks.poll().join();
+                writer.write(row.toCsvLine());
+                writer.newLine();
+                writer.flush();
+                rows.put(row.hash, row);
+                System.out.printf(
+                        Locale.US,
+                        "Sweep %d/%d | %s | energy: %.4f kWh | carbon: %.4f kg CO2 | makespan: %.2f s%n",
+                        ++done,
+                        pending.size(),
+                        row.describe(),
+                        row.energyKwh,
+                        row.carbonKg,
+                        row.makespan
+                );
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write " + resultsCsv + ".", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Weight points on the simplex, as {@code [alpha, beta, gamma]}, without duplicates.
+     */
+    private static List<double[]> weightPoints(final String mode, final int steps, final int samples, final long seed) {
+        final Set<List<Double>> points = new LinkedHashSet<>();
+        switch (mode) {
+            case "grid":
+                for (int a = 0; a <= steps; a++) {
+                    for (int b = 0; a + b <= steps; b++) {
+                        points.add(List.of(
+                                round((double) a / steps),
+                                round((double) b / steps),
+                                round((double) (steps - a - b) / steps)
+                        ));
+                    }
+                }
+                break;
+            case "random":
+                final Random random = new Random(seed);
+                for (int i = 0; i < samples; i++) {
+                    points.add(normalize(random.nextDouble(), random.nextDouble(), random.nextDouble()));
+                }
+                break;
+            case "lhs":
+                final double[][] strata = latinHypercube(samples, 3, new Random(seed));
+                for (int i = 0; i < samples; i++) {
+                    points.add(normalize(strata[0][i], strata[1][i], strata[2][i]));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported SWEEP_MODE: " + mode);
+        }
+
+        final List<double[]> weights = new ArrayList<>(points.size());
+        for (List<Double> point : points) {
+            weights.add(new double[] {point.get(0), point.get(1), point.get(2)});
+        }
+        return weights;
+    }
+
+    /**
+     * {@code samples} points in the unit cube, one per row of each dimension's {@code samples} strata,
+     * as {@code [dimension][sample]}.
+     */
+    private static double[][] latinHypercube(final int samples, final int dimensions, final Random random) {
+        final double[][] values = new double[dimensions][samples];
+        for (int d = 0; d < dimensions; d++) {
+            final int[] strata = new int[samples];
+            for (int i = 0; i < samples; i++) {
+                strata[i] = i;
+            }
+            for (int i = samples - 1; i > 0; i--) {
+                final int j = random.nextInt(i + 1);
+                final int swap = strata[i];
+                strata[i] = strata[j];
+                strata[j] = swap;
+            }
+            for (int i = 0; i < samples; i++) {
+                values[d][i] = (strata[i] + random.nextDouble()) / samples;
+            }
+        }
+        return values;
+    }
+
+    private static List<Double> normalize(final double alpha, final double beta, final double gamma) {
+        final double sum = alpha + beta + gamma;
+        if (sum <= 0.0) {
+            return List.of(round(1.0 / 3), round(1.0 / 3), round(1.0 / 3));
+        }
+        return List.of(round(alpha / sum), round(beta / sum), round(gamma / sum));
+    }
+
+    /**
+     * Weights are kept to six decimals so that the same point always hashes the same.
+     */
+    private static double round(final double value) {
+        return Math.round(value * 1_000_000.0) / 1_000_000.0;
+    }
+
+    private static List<Integer> hostCounts() {
+        final String configured = System.getenv("SWEEP_HOST_COUNTS");
+        if (configured == null || configured.isBlank()) {
+            return List.of(CarbonSimulation.getIntEnv("HOST_COUNT", 50));
+        }
+        return Arrays.stream(configured.split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .map(Integer::parseInt)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Configurations that no other row beats or equals on all of mean energy, carbon and
+     * makespan while beating it on one. Rows are taken in increasing energy, so a row can
+     * only be dominated by rows already on the front.
+     */
+    private static List<Row> paretoFront(final List<Row> rows) {
+        rows.sort(Comparator
+                .comparingDouble((Row row) -> row.energyKwh)
+                .thenComparingDouble(row -> row.carbonKg)
+                .thenComparingDouble(row -> row.makespan));
+        final List<Row> front = new ArrayList<>();
+        for (Row candidate : rows) {
+            boolean dominated = false;
+            for (Row member : front) {
+                if (member.dominates(candidate)) {
+                    dominated = true;
+                    break;
+                }
+            }
+            if (!dominated) {
+                front.add(candidate);
+            }
+        }
+        return front;
+    }
+
+    private static Map<String, Row> readRows(final Path resultsCsv) {
+        final Map<String, Row> rows = new HashMap<>();
+        if (!Files.exists(resultsCsv)) {
+            return rows;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(resultsCsv, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final Row row = Row.parse(line);
+                if (row != null) {
+                    rows.put(row.hash, row);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read " + resultsCsv + ".", e);
+        }
+        return rows;
+    }
+
+    private static BufferedWriter openResults(final Path resultsCsv) throws IOException {
+        Files.createDirectories(resultsCsv.getParent());
+        final boolean exists = Files.exists(resultsCsv) && Files.size(resultsCsv) > 0;
+        final BufferedWriter writer = Files.newBufferedWriter(
+                resultsCsv,
+                StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND
+        );
+        if (!exists) {
+            writer.write(HEADER);
+            writer.newLine();
+        }
+        return writer;
+    }
+
+    private static void writePareto(final Path paretoCsv, final List<Row> front) {
+        final List<String> lines = new ArrayList<>();
+        lines.add(HEADER);
+        for (Row row : front) {
+            lines.add(row.toCsvLine());
+        }
+        try {
+            Files.write(paretoCsv, lines, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write " + paretoCsv + ".", e);
+        }
+    }
+
+    private static final class Config {
+        private final CarbonVmAllocationPolicy.Weights weights;
+        private final int hostCount;
+        private final int vmCount;
+        private final int cloudletCount;
+        private final int runs;
+        private final List<String> zones;
+
+        private Config(
+                final CarbonVmAllocationPolicy.Weights weights,
+                final int hostCount,
+                final int vmCount,
+                final int cloudletCount,
+                final int runs,
+                final List<String> zones) {
+            this.weights = weights;
+            this.hostCount = hostCount;
+            this.vmCount = vmCount;
+            this.cloudletCount = cloudletCount;
+            this.runs = runs;
+            this.zones = zones;
+        }
+
+        /**
+         * Canonical form of the swept configuration, as written in the results row.
+         */
+        private String key() {
+            return String.format(
+                    Locale.US,
+                    "%.6f,%.6f,%.6f,%.3f,%.3f,%d,%d,%d,%d,%s",
+                    weights.alpha(),
+                    weights.beta(),
+                    weights.gamma(),
+                    weights.idlePowerWatts(),
+                    weights.maxPowerWatts(),
+                    hostCount,
+                    vmCount,
+                    cloudletCount,
+                    runs,
+                    String.join(";", zones)
+            );
+        }
+
+        /**
+         * Hash of the key and of the campaign settings read from the environment (fleet
+         * classes, carbon and workload traces, consolidation, shifting, placement paths...),
+         * so that changing any of them no longer reuses rows run without it.
+         */
+        private String hash() {
+            return Row.hash(key() + "|" + CarbonSimulation.campaignConfiguration(hostCount, vmCount, cloudletCount, zones));
+        }
+
+        private Row run(final CarbonIntensityProvider carbonIntensityProvider) {
+            double completion = 0.0;
+            double makespan = 0.0;
+            double energy = 0.0;
+            double carbon = 0.0;
+            for (int run = 1; run <= runs; run++) {
+                final ResultsLogger.EvaluationMetrics metrics = CarbonSimulation.runWeightedExperiment(
+                        run,
+                        hostCount,
+                        vmCount,
+                        cloudletCount,
+                        zones,
+                        carbonIntensityProvider,
+                        weights
+                );
+                completion += metrics.completionRate();
+                makespan += metrics.makespan();
+                energy += metrics.energyKwh();
+                carbon += metrics.carbonKg();
+            }
+            return new Row(hash(), key(), completion / runs, makespan / runs, energy / runs, carbon / runs);
+        }
+    }
+
+    private static final class Row {
+        private final String hash;
+        private final String key;
+        private final double completion;
+        private final double makespan;
+        private final double energyKwh;
+        private final double carbonKg;
+
+        private Row(
+                final String hash,
+                final String key,
+                final double completion,
+                final double makespan,
+                final double energyKwh,
+                final double carbonKg) {
+            this.hash = hash;
+            this.key = key;
+            this.completion = completion;
+            this.makespan = makespan;
+            this.energyKwh = energyKwh;
+            this.carbonKg = carbonKg;
+        }
+
+        /**
+         * Parses a results row; null for the header and malformed lines.
+         */
+        private static Row parse(final String line) {
+            final String[] fields = line.split(",");
+            if (fields.length != 15 || fields[0].equals("config_hash")) {
+                return null;
+            }
+            try {
+                return new Row(
+                        fields[0],
+                        String.join(",", Arrays.copyOfRange(fields, 1, 11)),
+                        Double.parseDouble(fields[11]),
+                        Double.parseDouble(fields[12]),
+                        Double.parseDouble(fields[13]),
+                        Double.parseDouble(fields[14])
+                );
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private static String hash(final String key) {
+            try {
+                final byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+                final StringBuilder hex = new StringBuilder();
+                for (int i = 0; i < 8; i++) {
+                    hex.append(String.format("%02x", digest[i]));
+                }
+                return hex.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available.", e);
+            }
+        }
+
+        private boolean dominates(final Row other) {
+            return energyKwh <= other.energyKwh
+                    && carbonKg <= other.carbonKg
+                    && makespan <= other.makespan
+                    && (energyKwh < other.energyKwh || carbonKg < other.carbonKg || makespan < other.makespan);
+        }
+
+        private String describe() {
+            final String[] fields = key.split(",");
+            return "alpha=" + fields[0] + " beta=" + fields[1] + " gamma=" + fields[2] + " hosts=" + fields[5];
+        }
+
+        private String toCsvLine() {
+            return String.format(
+                    Locale.US,
+                    "%s,%s,%.4f,%.4f,%.6f,%.6f",
+                    hash,
+                    key,
+                    completion,
+                    makespan,
+                    energyKwh,
+                    carbonKg
+            );
+        }
+    }
+}
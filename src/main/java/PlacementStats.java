@@ -0,0 +1,217 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Per-policy placement instrumentation: latency of each host decision, hosts examined
+ * to reach it, how region values were obtained while scoring, how often cached host
+ * scores were reused or recomputed, and how sampled decisions went.
+ *
+ * <p>A policy only records into an instance attached with
+ * {@link BatchVmAllocationPolicy#setPlacementStats(PlacementStats)}; without one the
+ * placement path does a single null check per decision. An instance belongs to one
+ * policy and is not thread-safe.</p>
+ */
+public final class PlacementStats {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private long hostsExamined;
+    private long providerCalls;
+    private long cacheHits;
+    private long scoreLookups;
+    private long scoreRecomputes;
+    private long hostInvalidations;
+    private long regionInvalidations;
+    private long sampledDecisions;
+    private long sampleFallbacks;
+
+    void recordDecision(final long nanos) {
+        latency.record(nanos);
+    }
+
+    void addHostsExamined(final long hosts) {
+        hostsExamined += hosts;
+    }
+
+    /**
+     * A region value lookup that had to query the carbon provider {@code calls} times.
+     */
+    void recordProviderCalls(final int calls) {
+        providerCalls += calls;
+    }
+
+    /**
+     * A region value lookup answered from intensities already fetched for the current time.
+     */
+    void recordCacheHit() {
+        cacheHits++;
+    }
+
+    /**
+     * A host score read from the {@link HostScoreCache}; {@code recomputed} if it was stale.
+     */
+    void recordScoreLookup(final boolean recomputed) {
+        scoreLookups++;
+        if (recomputed) {
+            scoreRecomputes++;
+        }
+    }
+
+    /**
+     * A cached host score dropped because the host's utilization changed, or found stale on
+     * lookup because its region's value changed.
+     */
+    void recordHostInvalidation() {
+        hostInvalidations++;
+    }
+
+    /**
+     * A region value change that made the cached scores of the region's hosts stale.
+     */
+    void recordRegionInvalidation() {
+        regionInvalidations++;
+    }
+
+    /**
+     * A decision made from a sample of hosts; {@code fellBack} if no sampled host fit and the
+     * full search was run instead.
+     */
+    void recordSampledDecision(final boolean fellBack) {
+        sampledDecisions++;
+        if (fellBack) {
+            sampleFallbacks++;
+        }
+    }
+
+    /**
+     * Adds everything recorded in {@code other}, e.g. to report the policies of several
+     * datacenters as one.
+     */
+    public void addAll(final PlacementStats other) {
+        latency.addAll(other.latency);
+        hostsExamined += other.hostsExamined;
+        providerCalls += other.providerCalls;
+        cacheHits += other.cacheHits;
+        scoreLookups += other.scoreLookups;
+        scoreRecomputes += other.scoreRecomputes;
+        hostInvalidations += other.hostInvalidations;
+        regionInvalidations += other.regionInvalidations;
+        sampledDecisions += other.sampledDecisions;
+        sampleFallbacks += other.sampleFallbacks;
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    void clear() {
+        latency.clear();
+        hostsExamined = 0;
+        providerCalls = 0;
+        cacheHits = 0;
+        scoreLookups = 0;
+        scoreRecomputes = 0;
+        hostInvalidations = 0;
+        regionInvalidations = 0;
+        sampledDecisions = 0;
+        sampleFallbacks = 0;
+    }
+
+    /**
+     * Binary form used by {@link RunLog}; {@link #readFrom(DataInput)} reads it back.
+     */
+    void writeTo(final DataOutput out) throws IOException {
+        latency.writeTo(out);
+        out.writeLong(hostsExamined);
+        out.writeLong(providerCalls);
+        out.writeLong(cacheHits);
+        out.writeLong(scoreLookups);
+        out.writeLong(scoreRecomputes);
+        out.writeLong(hostInvalidations);
+        out.writeLong(regionInvalidations);
+        out.writeLong(sampledDecisions);
+        out.writeLong(sampleFallbacks);
+    }
+
+    static PlacementStats readFrom(final DataInput in) throws IOException {
+        final PlacementStats stats = new PlacementStats();
+        stats.latency.readFrom(in);
+        stats.hostsExamined = in.readLong();
+        stats.providerCalls = in.readLong();
+        stats.cacheHits = in.readLong();
+        stats.scoreLookups = in.readLong();
+        stats.scoreRecomputes = in.readLong();
+        stats.hostInvalidations = in.readLong();
+        stats.regionInvalidations = in.readLong();
+        stats.sampledDecisions = in.readLong();
+        stats.sampleFallbacks = in.readLong();
+        return stats;
+    }
+
+    public long getDecisions() {
+        return latency.count();
+    }
+
+    public long getHostsExamined() {
+        return hostsExamined;
+    }
+
+    public double getMeanHostsExamined() {
+        return latency.count() == 0 ? 0.0 : (double) hostsExamined / latency.count();
+    }
+
+    public long getProviderCalls() {
+        return providerCalls;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getScoreLookups() {
+        return scoreLookups;
+    }
+
+    /**
+     * Score lookups that had to recompute the score; the rest were served from the cache.
+     */
+    public long getScoreRecomputes() {
+        return scoreRecomputes;
+    }
+
+    /**
+     * Cached host scores dropped, by host updates and region value changes together.
+     */
+    public long getHostInvalidations() {
+        return hostInvalidations;
+    }
+
+    /**
+     * Region value changes that made cached scores stale.
+     */
+    public long getRegionInvalidations() {
+        return regionInvalidations;
+    }
+
+    public long getSampledDecisions() {
+        return sampledDecisions;
+    }
+
+    /**
+     * Sampled decisions that found no suitable host in the sample and searched every host.
+     */
+    public long getSampleFallbacks() {
+        return sampleFallbacks;
+    }
+
+    public double getMeanMicros() {
+        return latency.meanNanos() / 1_000.0;
+    }
+
+    public double getPercentileMicros(final double percentile) {
+        return latency.percentileNanos(percentile) / 1_000.0;
+    }
+
+    public double getMaxMicros() {
+        return latency.maxNanos() / 1_000.0;
+    }
+}
@@ -0,0 +1,103 @@
+import java.util.Arrays;
+
+/**
+ * Host power draw as a function of CPU utilization, in the SPECpower style: measured
+ * watts at 0%, 10%, ..., 100% load with linear interpolation in between.
+ *
+ * <p>The curve is turned into one interleaved table of per-segment intercepts and slopes
+ * when it is built, so {@link #watts(double)} is an integer clamp of the segment index, two
+ * adjacent loads and one multiply-add, with no allocation and no data-dependent branch.
+ * Utilizations outside 0..1 extend the first or last segment. The linear model is the same
+ * table with ten identical segments and evaluates to exactly {@code idle + (max - idle) * u}.</p>
+ */
+public final class PowerCurve {
+
+    /**
+     * Load levels of a SPECpower curve: 0% to 100% in steps of 10%.
+     */
+    public static final int LOAD_LEVELS = 11;
+
+    private static final int SEGMENTS = LOAD_LEVELS - 1;
+
+    /**
+     * The 175 W idle to 250 W peak linear model the simulator has always used.
+     */
+    public static final PowerCurve DEFAULT = linear(175.0, 250.0);
+
+    /**
+     * Intercept of segment i at {@code 2 * i}, its slope at {@code 2 * i + 1}.
+     */
+    private final double[] segments = new double[2 * SEGMENTS];
+    private final double idleWatts;
+    private final double maxWatts;
+
+    private PowerCurve(final double[] wattsByLoadLevel, final boolean linear) {
+        this.idleWatts = wattsByLoadLevel[0];
+        this.maxWatts = wattsByLoadLevel[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            if (linear) {
+                segments[2 * i] = idleWatts;
+                segments[2 * i + 1] = maxWatts - idleWatts;
+            } else {
+                // watts(u) = w[i] + (w[i+1] - w[i]) * (10u - i) on segment i
+                final double slope = (wattsByLoadLevel[i + 1] - wattsByLoadLevel[i]) * SEGMENTS;
+                segments[2 * i] = wattsByLoadLevel[i] - slope * i / SEGMENTS;
+                segments[2 * i + 1] = slope;
+            }
+        }
+    }
+
+    /**
+     * Linear curve from {@code idleWatts} at 0% to {@code maxWatts} at 100% utilization.
+     */
+    public static PowerCurve linear(final double idleWatts, final double maxWatts) {
+        final double[] watts = new double[LOAD_LEVELS];
+        for (int i = 0; i < LOAD_LEVELS; i++) {
+            watts[i] = idleWatts + (maxWatts - idleWatts) * i / SEGMENTS;
+        }
+        validate(watts);
+        return new PowerCurve(watts, true);
+    }
+
+    /**
+     * Curve through the watts measured at each of the {@link #LOAD_LEVELS} load levels.
+     * The values must be non-negative and non-decreasing, so the score of a host never
+     * drops as it fills up.
+     */
+    public static PowerCurve specPower(final double... wattsByLoadLevel) {
+        if (wattsByLoadLevel.length != LOAD_LEVELS) {
+            throw new IllegalArgumentException("A SPECpower curve needs " + LOAD_LEVELS
+                    + " load levels, got " + wattsByLoadLevel.length + ".");
+        }
+        final double[] watts = Arrays.copyOf(wattsByLoadLevel, LOAD_LEVELS);
+        validate(watts);
+        return new PowerCurve(watts, false);
+    }
+
+    /**
+     * Power draw in watts at the given CPU utilization (0..1).
+     */
+    public double watts(final double utilization) {
+        final int segment = Math.max(0, Math.min(SEGMENTS - 1, (int) (utilization * SEGMENTS)));
+        return segments[2 * segment] + segments[2 * segment + 1] * utilization;
+    }
+
+    public double idleWatts() {
+        return idleWatts;
+    }
+
+    public double maxWatts() {
+        return maxWatts;
+    }
+
+    private static void validate(final double[] watts) {
+        if (watts[0] < 0.0) {
+            throw new IllegalArgumentException("Idle power must not be negative.");
+        }
+        for (int i = 1; i < watts.length; i++) {
+            if (!(watts[i] >= watts[i - 1])) {
+                throw new IllegalArgumentException("Power must not decrease with load: " + Arrays.toString(watts));
+            }
+        }
+    }
+}
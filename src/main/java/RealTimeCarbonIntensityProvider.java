@@ -1,37 +1,111 @@
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Live carbon intensities per zone from an Electricity Maps style API.
+ *
+ * <p>Lookups are answered from an in-memory cache. Misses and refreshes first consult an
+ * optional {@link IntensityCacheFile} shared by every process on the machine and go to the
+ * network only when the file has nothing fresh for the zone, so a repeated campaign within
+ * the TTL starts without any HTTP request. Only intensities actually fetched are written to
+ * the file, never fallback values.</p>
+ *
+ * <p>Fetches are asynchronous over one shared HTTP/2-preferring client, so all zones due for
+ * a refresh, e.g. at {@link #prewarm(Collection)}, are in flight together instead of each
+ * holding a thread for its round trip. Requests pass a {@link TokenBucket}, which delays them
+ * rather than dropping them, except refresh-ahead of an entry that is still valid: that one
+ * is skipped when no token is free and tried again on a later read. Requests also pass a
+ * {@link CircuitBreaker}: after repeated failures the
+ * per-region fallback is used at once until a trial request succeeds. The response body is
+ * scanned as a byte stream and reading stops at the {@code carbonIntensity} value.</p>
+ *
+ * <p>Cache file lookups, request dispatch and response parsing run on a fixed pool with one
+ * thread per token of the rate limiter's burst, the most requests it lets start at once, up
+ * to {@value #MAX_REFRESH_THREADS}, so a burst of refreshes cannot grow the thread count. The HTTP client keeps its own executor:
+ * parsing blocks a pool thread on the response stream, which the client fills.</p>
+ */
 public class RealTimeCarbonIntensityProvider implements CarbonIntensityProvider {
 
-    private static final Pattern CARBON_INTENSITY_PATTERN =
-            Pattern.compile("\"carbonIntensity\"\\s*:\\s*(-?\\d+(?:\\.\\d+)?)");
+    private static final byte[] CARBON_INTENSITY_FIELD = "carbonIntensity".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Fraction of the TTL after which a read triggers a background refresh of the entry.
+     */
+    private static final double REFRESH_AHEAD_FRACTION = 0.8;
+
+    /**
+     * Most refresh threads, whatever the rate limiter's burst.
+     */
+    private static final int MAX_REFRESH_THREADS = 16;
 
     private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final TokenBucket rateLimiter;
+    private final CircuitBreaker circuitBreaker;
     private final String apiKey;
     private final String endpointTemplate;
     private final long cacheTtlMillis;
     private final double fallbackIntensity;
     private final Map<String, Double> fallbackByRegion;
+    private final IntensityCacheFile persistentCache;
     private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Double>> refreshes = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutor;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
+    private final LongAdder persistentHits = new LongAdder();
+    private final LongAdder networkRequests = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder skippedRefreshes = new LongAdder();
+    private final LatencyHistogram fetchLatency = new LatencyHistogram();
 
+    /**
+     * Configured from CARBON_API_KEY, CARBON_API_URL_TEMPLATE, CARBON_CACHE_TTL_SECONDS
+     * (default 60) and the persistent cache file CARBON_CACHE_FILE (default
+     * results/carbon_intensity_cache.bin, blank to disable) of CARBON_CACHE_SLOTS slots (default 256).
+     * Requests time out after CARBON_API_TIMEOUT_MS (default 10000) and are limited to
+     * CARBON_API_RATE_PER_SECOND (default 10) with bursts of CARBON_API_BURST (default 10); the
+     * breaker opens for CARBON_API_BREAKER_OPEN_SECONDS (default 30) after
+     * CARBON_API_BREAKER_FAILURES (default 3) consecutive failures.
+     */
     public RealTimeCarbonIntensityProvider() {
         this(
                 System.getenv("CARBON_API_KEY"),
                 System.getenv().getOrDefault(
                         "CARBON_API_URL_TEMPLATE",
                         "https://api.electricitymap.org/v3/carbon-intensity/latest?zone=%s"),
-                60_000L,
-                500.0
+                Long.parseLong(env("CARBON_CACHE_TTL_SECONDS", "60")) * 1000L,
+                500.0,
+                openPersistentCache(),
+                new TokenBucket(
+                        Double.parseDouble(env("CARBON_API_RATE_PER_SECOND", "10")),
+                        Integer.parseInt(env("CARBON_API_BURST", "10"))
+                ),
+                new CircuitBreaker(
+                        Integer.parseInt(env("CARBON_API_BREAKER_FAILURES", "3")),
+                        Long.parseLong(env("CARBON_API_BREAKER_OPEN_SECONDS", "30")) * 1000L
+                ),
+                Duration.ofMillis(Long.parseLong(env("CARBON_API_TIMEOUT_MS", "10000")))
         );
     }
 
@@ -40,13 +114,49 @@ public class RealTimeCarbonIntensityProvider implements CarbonIntensityProvider
             final String endpointTemplate,
             final long cacheTtlMillis,
             final double fallbackIntensity) {
+        this(
+                apiKey,
+                endpointTemplate,
+                cacheTtlMillis,
+                fallbackIntensity,
+                null,
+                new TokenBucket(10.0, 10),
+                new CircuitBreaker(3, 30_000L),
+                Duration.ofSeconds(10)
+        );
+    }
+
+    /**
+     * @param persistentCache cache file shared across runs, or null to keep intensities in memory only
+     * @param rateLimiter     paces requests to the API; its burst sizes the refresh pool
+     * @param circuitBreaker  skips the API while it keeps failing
+     * @param requestTimeout  connect and response timeout of one request
+     */
+    public RealTimeCarbonIntensityProvider(
+            final String apiKey,
+            final String endpointTemplate,
+            final long cacheTtlMillis,
+            final double fallbackIntensity,
+            final IntensityCacheFile persistentCache,
+            final TokenBucket rateLimiter,
+            final CircuitBreaker circuitBreaker,
+            final Duration requestTimeout) {
+        this.refreshExecutor = Executors.newFixedThreadPool(
+                Math.min(rateLimiter.getBurst(), MAX_REFRESH_THREADS),
+                RealTimeCarbonIntensityProvider::newRefreshThread
+        );
         this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(requestTimeout)
                 .build();
+        this.requestTimeout = requestTimeout;
+        this.rateLimiter = rateLimiter;
+        this.circuitBreaker = circuitBreaker;
         this.apiKey = apiKey;
         this.endpointTemplate = endpointTemplate;
         this.cacheTtlMillis = cacheTtlMillis;
         this.fallbackIntensity = fallbackIntensity;
+        this.persistentCache = persistentCache;
         this.fallbackByRegion = Map.of(
                 "US-CAL-CISO", 340.0,
                 "US-MIDA-PJM", 430.0,
@@ -55,54 +165,310 @@ public class RealTimeCarbonIntensityProvider implements CarbonIntensityProvider
         );
     }
 
+    /**
+     * Returns the cached intensity for a region. Only a region that was never fetched blocks,
+     * and concurrent callers for it share one fetch. Once an entry is past
+     * {@link #REFRESH_AHEAD_FRACTION} of its TTL a background refresh is started, and an
+     * expired entry keeps being served until that refresh lands. A first fetch that fails
+     * outright returns the region's fallback intensity instead of throwing.
+     */
     @Override
     public double getIntensityGco2PerKwh(final String region) {
         final String normalizedRegion = normalizeRegion(region);
         final long now = System.currentTimeMillis();
         final CacheEntry cached = cache.get(normalizedRegion);
-        if (cached != null && cached.expiresAtMillis > now) {
-            return cached.intensity;
+        if (cached == null) {
+            misses.increment();
+            try {
+                return refresh(normalizedRegion, false).join();
+            } catch (CompletionException e) {
+                // A failed fetch already falls back; this is the cache file or the pool failing.
+                return fallbackByRegion.getOrDefault(normalizedRegion, fallbackIntensity);
+            }
+        }
+
+        if (cached.expiresAtMillis <= now) {
+            staleServed.increment();
+            refresh(normalizedRegion, false);
+        } else {
+            hits.increment();
+            if (cached.refreshAtMillis <= now && !refreshes.containsKey(normalizedRegion)) {
+                // The entry is still valid, so refreshing it early is not worth waiting for a token.
+                if (rateLimiter.tryAcquire()) {
+                    refresh(normalizedRegion, true);
+                } else {
+                    skippedRefreshes.increment();
+                }
+            }
+        }
+        return cached.intensity;
+    }
+
+    /**
+     * Fetches all given regions in parallel and waits until every one is cached.
+     */
+    public void prewarm(final Collection<String> regions) {
+        final CompletableFuture<?>[] fetches = regions.stream()
+                .map(this::normalizeRegion)
+                .distinct()
+                .map(region -> refresh(region, false))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(fetches).join();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getStaleServedCount() {
+        return staleServed.sum();
+    }
+
+    /**
+     * Misses and refreshes answered from the persistent cache file instead of the network.
+     */
+    public long getPersistentHitCount() {
+        return persistentHits.sum();
+    }
+
+    public long getNetworkRequestCount() {
+        return networkRequests.sum();
+    }
+
+    /**
+     * Requests that failed, timed out, were refused by the server or had no intensity in the body.
+     */
+    public long getFailedRequestCount() {
+        return failedRequests.sum();
+    }
+
+    /**
+     * Fetches answered with the fallback at once because the circuit breaker was open.
+     */
+    public long getShortCircuitedCount() {
+        return circuitBreaker.getRejectedCount();
+    }
+
+    public long getCircuitBreakerTripCount() {
+        return circuitBreaker.getTripCount();
+    }
+
+    /**
+     * Requests the rate limiter held back: delayed ones, and refresh-aheads skipped for lack of a token.
+     */
+    public long getRateLimitedCount() {
+        return rateLimiter.getDelayedCount() + skippedRefreshes.sum();
+    }
+
+    /**
+     * Given percentile (0..100) of request latency in milliseconds, from send to parsed intensity.
+     */
+    public double getFetchLatencyPercentileMillis(final double percentile) {
+        synchronized (fetchLatency) {
+            return fetchLatency.percentileNanos(percentile) / 1_000_000.0;
         }
+    }
 
-        final double fetched = fetchIntensity(normalizedRegion);
-        cache.put(normalizedRegion, new CacheEntry(fetched, now + cacheTtlMillis));
-        return fetched;
+    /**
+     * The persistent cache file, or null if there is none.
+     */
+    public IntensityCacheFile getPersistentCache() {
+        return persistentCache;
     }
 
-    private double fetchIntensity(final String region) {
-        if (apiKey == null || apiKey.isBlank()) {
-            return fallbackByRegion.getOrDefault(region, fallbackIntensity);
+    /**
+     * Starts a background fetch for a region unless one is already in flight, in which case
+     * that fetch is returned. The cache is updated before the returned future completes.
+     *
+     * @param tokenHeld whether the caller already took the rate limiter token for the request
+     */
+    private CompletableFuture<Double> refresh(final String region, final boolean tokenHeld) {
+        final CompletableFuture<Double> inFlight = refreshes.get(region);
+        if (inFlight != null) {
+            return inFlight;
         }
 
-        final String encodedRegion = URLEncoder.encode(region, StandardCharsets.UTF_8);
-        final String endpoint = String.format(endpointTemplate, encodedRegion);
+        final CompletableFuture<Double> started = new CompletableFuture<>();
+        final CompletableFuture<Double> raced = refreshes.putIfAbsent(region, started);
+        if (raced != null) {
+            return raced;
+        }
+
+        CompletableFuture.supplyAsync(() -> persistentCache == null ? null : persistentCache.get(region), refreshExecutor)
+                .thenCompose(stored -> {
+                    if (stored != null
+                            && stored.fetchedAtMillis() + (long) (cacheTtlMillis * REFRESH_AHEAD_FRACTION)
+                            > System.currentTimeMillis()) {
+                        persistentHits.increment();
+                        cache.put(region, new CacheEntry(stored.intensity(), stored.fetchedAtMillis(), cacheTtlMillis));
+                        return CompletableFuture.completedFuture(stored.intensity());
+                    }
+
+                    final long fetchedAt = System.currentTimeMillis();
+                    return fetchIntensity(region, tokenHeld).thenApply(fetched -> {
+                        final double intensity;
+                        if (fetched == null) {
+                            intensity = fallbackByRegion.getOrDefault(region, fallbackIntensity);
+                        } else {
+                            intensity = fetched;
+                            if (persistentCache != null) {
+                                persistentCache.put(region, intensity, fetchedAt);
+                            }
+                        }
+                        cache.put(region, new CacheEntry(intensity, fetchedAt, cacheTtlMillis));
+                        return intensity;
+                    });
+                })
+                .whenComplete((intensity, error) -> {
+                    if (error == null) {
+                        started.complete(intensity);
+                    } else {
+                        started.completeExceptionally(error);
+                    }
+                    refreshes.remove(region, started);
+                });
+        return started;
+    }
+
+    /**
+     * Live intensity for the region, or null without an API key, while the circuit breaker is
+     * open, or when the request fails. Never completes exceptionally.
+     */
+    private CompletableFuture<Double> fetchIntensity(final String region, final boolean tokenHeld) {
+        if (apiKey == null || apiKey.isBlank() || !circuitBreaker.allowRequest()) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-        final HttpRequest request = HttpRequest.newBuilder(URI.create(endpoint))
-                .timeout(Duration.ofSeconds(10))
+        final String encodedRegion = URLEncoder.encode(region, StandardCharsets.UTF_8);
+        final HttpRequest request = HttpRequest.newBuilder(URI.create(String.format(endpointTemplate, encodedRegion)))
+                .timeout(requestTimeout)
                 .header("auth-token", apiKey)
                 .header("Accept", "application/json")
                 .GET()
                 .build();
 
-        try {
-            final HttpResponse<String> response = httpClient.send(
-                    request,
-                    HttpResponse.BodyHandlers.ofString()
-            );
-
-            if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                final Matcher matcher = CARBON_INTENSITY_PATTERN.matcher(response.body());
-                if (matcher.find()) {
-                    return Double.parseDouble(matcher.group(1));
+        final long waitNanos = tokenHeld ? 0L : rateLimiter.reserve();
+        final Executor sender = waitNanos == 0L
+                ? refreshExecutor
+                : CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS, refreshExecutor);
+        return CompletableFuture.supplyAsync(() -> request, sender)
+                .thenCompose(this::send)
+                .handle((intensity, error) -> {
+                    if (error != null || intensity == null) {
+                        failedRequests.increment();
+                        circuitBreaker.recordFailure();
+                        return null;
+                    }
+                    circuitBreaker.recordSuccess();
+                    return intensity;
+                });
+    }
+
+    /**
+     * Sends the request and parses the body; null for a non-2xx status or a body without an intensity.
+     */
+    private CompletableFuture<Double> send(final HttpRequest request) {
+        networkRequests.increment();
+        final long sentAt = System.nanoTime();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                .thenApplyAsync(response -> {
+                    try (InputStream body = response.body()) {
+                        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+                            return null;
+                        }
+                        final Double intensity = parseCarbonIntensity(body);
+                        synchronized (fetchLatency) {
+                            fetchLatency.record(System.nanoTime() - sentAt);
+                        }
+                        return intensity;
+                    } catch (IOException e) {
+                        return null;
+                    }
+                }, refreshExecutor);
+    }
+
+    /**
+     * Value of the first {@code "carbonIntensity"} member of a JSON document, read until that
+     * value and no further; null if there is none or it is not a number. Keys are matched byte
+     * by byte without building strings, and string values are skipped, escapes included.
+     */
+    static Double parseCarbonIntensity(final InputStream body) throws IOException {
+        final InputStream in = body instanceof BufferedInputStream ? body : new BufferedInputStream(body, 512);
+        boolean afterKey = false;
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '"') {
+                afterKey = readStringMatching(in, CARBON_INTENSITY_FIELD);
+            } else if (c == ':' && afterKey) {
+                final Double value = readNumber(in);
+                if (value != null) {
+                    return value;
                 }
+                afterKey = false;
+            } else if (!Character.isWhitespace(c)) {
+                afterKey = false;
             }
-        } catch (IOException | InterruptedException | RuntimeException e) {
-            if (e instanceof InterruptedException) {
-                Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * Consumes a string whose opening quote has been read; true if it equals {@code expected}.
+     */
+    private static boolean readStringMatching(final InputStream in, final byte[] expected) throws IOException {
+        int index = 0;
+        boolean matches = true;
+        int c;
+        while ((c = in.read()) != -1 && c != '"') {
+            if (c == '\\') {
+                in.read();
+                matches = false;
+            } else if (matches && index < expected.length && c == expected[index]) {
+                index++;
+            } else {
+                matches = false;
             }
         }
+        return matches && index == expected.length;
+    }
 
-        return fallbackByRegion.getOrDefault(region, fallbackIntensity);
+    private static Double readNumber(final InputStream in) throws IOException {
+        final StringBuilder number = new StringBuilder(16);
+        int c = in.read();
+        while (c != -1 && Character.isWhitespace(c)) {
+            c = in.read();
+        }
+        while (c != -1 && (c >= '0' && c <= '9' || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E')) {
+            number.append((char) c);
+            c = in.read();
+        }
+        try {
+            return number.length() == 0 ? null : Double.valueOf(number.toString());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String env(final String name, final String defaultValue) {
+        return System.getenv().getOrDefault(name, defaultValue).trim();
+    }
+
+    private static IntensityCacheFile openPersistentCache() {
+        final String file = System.getenv().getOrDefault(
+                "CARBON_CACHE_FILE",
+                Path.of("results", "carbon_intensity_cache.bin").toString()
+        );
+        if (file.isBlank()) {
+            return null;
+        }
+        return IntensityCacheFile.open(
+                Path.of(file.trim()),
+                Integer.parseInt(System.getenv().getOrDefault("CARBON_CACHE_SLOTS", "256").trim())
+        );
     }
 
     private String normalizeRegion(final String region) {
@@ -115,11 +481,19 @@ public class RealTimeCarbonIntensityProvider implements CarbonIntensityProvider
 
     private static final class CacheEntry {
         private final double intensity;
+        private final long refreshAtMillis;
         private final long expiresAtMillis;
 
-        private CacheEntry(final double intensity, final long expiresAtMillis) {
+        private CacheEntry(final double intensity, final long fetchedAtMillis, final long ttlMillis) {
             this.intensity = intensity;
-            this.expiresAtMillis = expiresAtMillis;
+            this.refreshAtMillis = fetchedAtMillis + (long) (ttlMillis * REFRESH_AHEAD_FRACTION);
+            this.expiresAtMillis = fetchedAtMillis + ttlMillis;
         }
     }
+
+    private static Thread newRefreshThread(final Runnable task) {
+        final Thread thread = new Thread(task, "carbon-intensity-refresh");
+        thread.setDaemon(true);
+        return thread;
+    }
 }
@@ -0,0 +1,339 @@
+import org.cloudsimplus.core.CloudSimPlus;
+import org.cloudsimplus.datacenters.Datacenter;
+import org.cloudsimplus.datacenters.DatacenterSimple;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * One datacenter per carbon region, with VMs routed to a region before any host is searched.
+ *
+ * <p>The hosts of each region of a {@link HostMetadata} table get their own datacenter and
+ * policy instance, so a host search only covers one region's pool. Used as the broker's
+ * datacenter mapper, the topology ranks regions for every VM: carbon-aware policies by
+ * current intensity, then free capacity; others by free capacity alone. Regions whose key
+ * is within the tie tolerance of the best one are searched together, in parallel when there
+ * are several, and the VM goes to the region whose best host scores lowest. If none of them
+ * has a host the next group is tried. The host found is handed to the region's policy, so
+ * the datacenter does not search again, and only that search is recorded in the policy's
+ * {@link PlacementStats}.</p>
+ *
+ * <p>Parallel searches run on one pool of daemon threads, one per processor, shared by all
+ * topologies, so concurrent experiments do not multiply search threads or compete with
+ * other users of the common fork-join pool.</p>
+ *
+ * <p>Free capacity is total MIPS minus the MIPS of VMs routed to the region and not yet
+ * destroyed, so VMs routed in one broker pass spread out before any of them is created.</p>
+ */
+public final class RegionTopology implements BiFunction<Datacenter, Vm, Datacenter> {
+
+    private static final ExecutorService SEARCH_POOL = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            RegionTopology::newSearchThread
+    );
+
+    private final List<Region> regions = new ArrayList<>();
+    private final Region[] ranked;
+    private final HostMetadata hostMetadata;
+    private final CarbonIntensityProvider carbonIntensityProvider;
+    private final boolean carbonAware;
+    private final double tieTolerance;
+    private final Map<Vm, Region> routed = new IdentityHashMap<>();
+    private final Map<Vm, Boolean> tracked = new IdentityHashMap<>();
+    private long decisions;
+    private long tiedDecisions;
+    private long regionSearches;
+    private long unplaceable;
+
+    /**
+     * @param policyFactory creates the policy of one region from that region's host table
+     * @param carbonAware   rank regions by carbon intensity before free capacity
+     * @param tieTolerance  relative difference (e.g. 0.01 for 1%) within which regions rank equal
+     */
+    public RegionTopology(
+            final CloudSimPlus simulation,
+            final List<Host> hosts,
+            final HostMetadata hostMetadata,
+            final Function<HostMetadata, BatchVmAllocationPolicy> policyFactory,
+            final CarbonIntensityProvider carbonIntensityProvider,
+            final boolean carbonAware,
+            final double tieTolerance) {
+        this.hostMetadata = hostMetadata;
+        this.carbonIntensityProvider = carbonIntensityProvider;
+        this.carbonAware = carbonAware;
+        this.tieTolerance = Math.max(0.0, tieTolerance);
+
+        final Map<Integer, List<Host>> hostsByRegion = new LinkedHashMap<>();
+        for (Host host : hosts) {
+            hostsByRegion.computeIfAbsent(hostMetadata.regionId(host), key -> new ArrayList<>()).add(host);
+        }
+        for (Map.Entry<Integer, List<Host>> entry : hostsByRegion.entrySet()) {
+            final String name = hostMetadata.regionName(entry.getKey());
+            final List<Host> regionHosts = entry.getValue();
+            final List<PowerCurve> powerCurves = regionHosts.stream()
+                    .map(host -> hostMetadata.powerCurve(host, null))
+                    .collect(Collectors.toList());
+            final HostMetadata regionMetadata = HostMetadata.roundRobin(regionHosts, List.of(name), name, powerCurves);
+            final BatchVmAllocationPolicy policy = policyFactory.apply(regionMetadata);
+            regions.add(new Region(
+                    entry.getKey(),
+                    name,
+                    regionHosts,
+                    policy,
+                    new DatacenterSimple(simulation, regionHosts, policy)
+            ));
+        }
+        this.ranked = regions.toArray(new Region[0]);
+    }
+
+    /**
+     * Chooses the datacenter of the region the VM is routed to. When no region has a host for it,
+     * returns the one with the most free capacity, where its creation fails and is reported.
+     */
+    @Override
+    public Datacenter apply(final Datacenter lastDatacenter, final Vm vm) {
+        release(vm);
+        decisions++;
+        final double demand = vm.getMips() * vm.getPesNumber();
+        rank();
+
+        for (int first = 0; first < ranked.length; ) {
+            int end = first + 1;
+            while (end < ranked.length && tied(ranked[first], ranked[end])) {
+                end++;
+            }
+
+            final List<Region> group = new ArrayList<>(end - first);
+            for (int i = first; i < end; i++) {
+                if (ranked[i].freeMips() >= demand) {
+                    group.add(ranked[i]);
+                }
+            }
+            if (group.size() > 1) {
+                tiedDecisions++;
+            }
+
+            final Region chosen = search(group, vm);
+            if (chosen != null) {
+                commit(chosen, vm, demand);
+                return chosen.datacenter;
+            }
+            first = end;
+        }
+
+        unplaceable++;
+        final Region fallback = Arrays.stream(ranked).max(Comparator.comparingDouble(Region::freeMips)).orElseThrow();
+        commit(fallback, vm, demand);
+        return fallback.datacenter;
+    }
+
+    public List<Datacenter> getDatacenters() {
+        return regions.stream().map(region -> region.datacenter).collect(Collectors.toList());
+    }
+
+    public long getDecisions() {
+        return decisions;
+    }
+
+    /**
+     * Decisions where more than one region ranked first and was searched.
+     */
+    public long getTiedDecisions() {
+        return tiedDecisions;
+    }
+
+    public double getMeanRegionsSearched() {
+        return decisions == 0 ? 0.0 : (double) regionSearches / decisions;
+    }
+
+    /**
+     * VMs no region had a host for.
+     */
+    public long getUnplaceable() {
+        return unplaceable;
+    }
+
+    /**
+     * Placement stats of all region policies combined, or null if they record none.
+     */
+    public PlacementStats getPlacementStats() {
+        PlacementStats combined = null;
+        for (Region region : regions) {
+            final PlacementStats stats = region.policy.getPlacementStats();
+            if (stats != null) {
+                if (combined == null) {
+                    combined = new PlacementStats();
+                }
+                combined.addAll(stats);
+            }
+        }
+        return combined;
+    }
+
+    /**
+     * VMs routed to each region over the run, by region name.
+     */
+    public Map<String, Long> getRoutedVms() {
+        final Map<String, Long> routedVms = new LinkedHashMap<>();
+        for (Region region : regions) {
+            routedVms.put(region.name, region.routedVms);
+        }
+        return routedVms;
+    }
+
+    /**
+     * Searches the regions of one rank, concurrently if there are several, and returns the one
+     * with the lowest-scoring host, preferring rank order on equal scores; null if none has a host.
+     * The first region is searched on the calling thread while the pool searches the others.
+     */
+    private Region search(final List<Region> group, final Vm vm) {
+        regionSearches += group.size();
+        if (group.size() == 1) {
+            final Region region = group.get(0);
+            final Optional<Host> host = region.policy.searchHost(vm);
+            host.ifPresent(found -> region.policy.routeTo(vm, found));
+            return host.isPresent() ? region : null;
+        }
+
+        final List<Future<Optional<Host>>> searches = new ArrayList<>(group.size() - 1);
+        for (int i = 1; i < group.size(); i++) {
+            final Region region = group.get(i);
+            searches.add(SEARCH_POOL.submit(() -> region.policy.searchHost(vm)));
+        }
+        final List<Optional<Host>> found = new ArrayList<>(group.size());
+        found.add(group.get(0).policy.searchHost(vm));
+        for (Future<Optional<Host>> search : searches) {
+            found.add(awaitSearch(search));
+        }
+        Region best = null;
+        Host bestHost = null;
+        double bestScore = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < group.size(); i++) {
+            if (found.get(i).isEmpty()) {
+                continue;
+            }
+            final Region region = group.get(i);
+            final Host host = found.get(i).get();
+            final double score = region.policy instanceof ScoredVmAllocationPolicy
+                    ? ((ScoredVmAllocationPolicy) region.policy).score(host)
+                    : 0.0;
+            if (best == null || score < bestScore) {
+                best = region;
+                bestHost = host;
+                bestScore = score;
+            }
+        }
+        if (best != null) {
+            best.policy.routeTo(vm, bestHost);
+        }
+        return best;
+    }
+
+    private static Optional<Host> awaitSearch(final Future<Optional<Host>> search) {
+        try {
+            return search.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while searching a region for a host.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to search a region for a host.", e.getCause());
+        }
+    }
+
+    private void rank() {
+        if (carbonAware) {
+            final double[] intensities = hostMetadata.intensitiesAt(
+                    carbonIntensityProvider,
+                    regions.get(0).datacenter.getSimulation().clock()
+            );
+            for (Region region : ranked) {
+                region.intensity = intensities[region.id];
+            }
+            Arrays.sort(ranked, Comparator.comparingDouble((Region region) -> region.intensity)
+                    .thenComparing(Comparator.comparingDouble(Region::freeFraction).reversed())
+                    .thenComparingInt(region -> region.id));
+        } else {
+            Arrays.sort(ranked, Comparator.comparingDouble(Region::freeFraction).reversed()
+                    .thenComparingInt(region -> region.id));
+        }
+    }
+
+    private boolean tied(final Region leader, final Region other) {
+        final double a = carbonAware ? leader.intensity : leader.freeFraction();
+        final double b = carbonAware ? other.intensity : other.freeFraction();
+        return Math.abs(a - b) <= Math.abs(a) * tieTolerance;
+    }
+
+    private void commit(final Region region, final Vm vm, final double demand) {
+        routed.put(vm, region);
+        region.committedMips += demand;
+        region.routedVms++;
+        if (tracked.put(vm, Boolean.TRUE) == null) {
+            vm.addOnCreationFailureListener(info -> release(info.getVm()));
+            vm.addOnHostDeallocationListener(info -> {
+                release(info.getVm());
+                tracked.remove(info.getVm());
+            });
+        }
+    }
+
+    private void release(final Vm vm) {
+        final Region region = routed.remove(vm);
+        if (region != null) {
+            region.committedMips -= vm.getMips() * vm.getPesNumber();
+        }
+    }
+
+    private static Thread newSearchThread(final Runnable task) {
+        final Thread thread = new Thread(task, "region-search");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static final class Region {
+        private final int id;
+        private final String name;
+        private final BatchVmAllocationPolicy policy;
+        private final Datacenter datacenter;
+        private final double capacityMips;
+        private double committedMips;
+        private double intensity;
+        private long routedVms;
+
+        private Region(
+                final int id,
+                final String name,
+                final List<Host> hosts,
+                final BatchVmAllocationPolicy policy,
+                final Datacenter datacenter) {
+            this.id = id;
+            this.name = name;
+            this.policy = policy;
+            this.datacenter = datacenter;
+            this.capacityMips = hosts.stream().mapToDouble(Host::getTotalMipsCapacity).sum();
+        }
+
+        private double freeMips() {
+            return capacityMips - committedMips;
+        }
+
+        private double freeFraction() {
+            return capacityMips <= 0.0 ? 0.0 : freeMips() / capacityMips;
+        }
+    }
+}
@@ -2,24 +2,24 @@ import org.cloudsimplus.cloudlets.Cloudlet;
 import org.cloudsimplus.hosts.Host;
 import org.cloudsimplus.vms.Vm;
 
+import java.io.BufferedWriter;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.DoubleSummaryStatistics;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public final class ResultsLogger {
 
-    private static final double IDLE_POWER_WATTS = 175.0;
-    private static final double MAX_POWER_WATTS = 250.0;
-    private static final String DEFAULT_REGION = "US-CAL-CISO";
-
     private ResultsLogger() {
     }
 
@@ -27,37 +27,63 @@ public final class ResultsLogger {
             final int runId,
             final String policyName,
             final List<Cloudlet> cloudlets,
-            final List<Host> hosts,
-            final Map<Host, String> hostRegionMap,
-            final CarbonIntensityProvider carbonIntensityProvider) {
+            final HostEnergyMeter energyMeter) {
+        return buildMetrics(
+                runId,
+                policyName,
+                cloudlets,
+                energyMeter,
+                0L,
+                0.0,
+                0L,
+                0.0,
+                0.0
+        );
+    }
+
+    /**
+     * @param energyMeter       the run's host energy, finished at the end of the run
+     * @param migrations        VM migrations started by consolidation during the run
+     * @param planningMillis    wall-clock time consolidation spent planning them
+     * @param deferredCloudlets cloudlets held back by temporal shifting
+     * @param carbonSavedKg     carbon temporal shifting estimates it avoided
+     * @param slackUsedPct      delay of deferred cloudlets as a percentage of their deadline slack
+     */
+    public static EvaluationMetrics buildMetrics(
+            final int runId,
+            final String policyName,
+            final List<Cloudlet> cloudlets,
+            final HostEnergyMeter energyMeter,
+            final long migrations,
+            final double planningMillis,
+            final long deferredCloudlets,
+            final double carbonSavedKg,
+            final double slackUsedPct) {
         final int totalCloudlets = cloudlets.size();
-        final long finishedCloudlets = cloudlets.stream()
-                .filter(Cloudlet::isFinished)
-                .count();
 
+        // One traversal for finished count, average CPU time and makespan.
+        final DoubleSummaryStatistics cpuTimeStats = new DoubleSummaryStatistics();
+        double maxFinishTime = Double.NEGATIVE_INFINITY;
+        for (Cloudlet cloudlet : cloudlets) {
+            if (cloudlet.isFinished()) {
+                cpuTimeStats.accept(cloudlet.getActualCpuTime());
+                maxFinishTime = Math.max(maxFinishTime, cloudlet.getFinishTime());
+            }
+        }
+
+        final long finishedCloudlets = cpuTimeStats.getCount();
         final double completionRate = totalCloudlets == 0
                 ? 0.0
                 : (finishedCloudlets * 100.0) / totalCloudlets;
+        final double avgCpuTime = finishedCloudlets == 0 ? 0.0 : cpuTimeStats.getAverage();
+        final double makespan = finishedCloudlets == 0 ? 0.0 : maxFinishTime;
 
-        final double avgCpuTime = cloudlets.stream()
-                .filter(Cloudlet::isFinished)
-                .mapToDouble(Cloudlet::getActualCpuTime)
-                .average()
-                .orElse(0.0);
-
-        final double makespan = cloudlets.stream()
-                .filter(Cloudlet::isFinished)
-                .mapToDouble(Cloudlet::getFinishTime)
-                .max()
-                .orElse(0.0);
-
-        final HostEnergyAndCarbon totals = estimateEnergyAndCarbon(
-                cloudlets,
-                hosts,
-                makespan,
-                hostRegionMap,
-                carbonIntensityProvider
-        );
+        double energyKwh = 0.0;
+        double carbonKg = 0.0;
+        for (int position = 0; position < energyMeter.hosts().size(); position++) {
+            energyKwh += energyMeter.energyKwh(position);
+            carbonKg += energyMeter.carbonKg(position);
+        }
 
         return new EvaluationMetrics(
                 Instant.now().toString(),
@@ -68,68 +94,65 @@ public final class ResultsLogger {
                 completionRate,
                 avgCpuTime,
                 makespan,
-                totals.energyKwh,
-                totals.carbonKg
+                energyKwh,
+                carbonKg,
+                migrations,
+                planningMillis,
+                deferredCloudlets,
+                carbonSavedKg,
+                slackUsedPct
         );
     }
 
+    /**
+     * Energy above idle of running {@code cpuSeconds} on a host with {@code hostPes} PEs and the
+     * given power curve, at the curve's average idle-to-peak slope.
+     */
+    static double dynamicEnergyKwh(final double cpuSeconds, final int hostPes, final PowerCurve powerCurve) {
+        return (powerCurve.maxWatts() - powerCurve.idleWatts()) * cpuSeconds / Math.max(1, hostPes) / 3_600_000.0;
+    }
+
     public static void writeResearchOutputs(
             final List<EvaluationMetrics> metrics,
             final int runs,
             final int hostCount,
             final int vmCount,
             final int cloudletCount) {
-        final Path resultsDir = Path.of("results");
-        final Path rawCsvPath = resultsDir.resolve("evaluation_raw_metrics.csv");
-        final Path summaryCsvPath = resultsDir.resolve("evaluation_policy_summary.csv");
-        final Path researchSummaryPath = resultsDir.resolve("evaluation_research_summary.txt");
-
-        final Map<String, List<EvaluationMetrics>> byPolicy = metrics.stream()
-                .collect(Collectors.groupingBy(
-                        EvaluationMetrics::policyName,
-                        LinkedHashMap::new,
-                        Collectors.toList()
-                ));
-
-        final Map<String, PolicyStats> policyStats = new LinkedHashMap<>();
-        for (Map.Entry<String, List<EvaluationMetrics>> entry : byPolicy.entrySet()) {
-            policyStats.put(entry.getKey(), PolicyStats.from(entry.getValue()));
-        }
-
-        final List<String> rawCsvLines = new ArrayList<>();
-        rawCsvLines.add("timestamp,run_id,policy,total_cloudlets,finished_cloudlets,completion_rate_pct,"
-                + "avg_cpu_time_s,makespan_s,energy_kwh,carbon_kg_co2");
-        for (EvaluationMetrics metric : metrics) {
-            rawCsvLines.add(metric.toCsvLine());
-        }
-
-        final List<String> summaryCsvLines = new ArrayList<>();
-        summaryCsvLines.add("policy,runs,completion_mean_pct,completion_std_pct,makespan_mean_s,makespan_std_s,"
-                + "energy_mean_kwh,energy_std_kwh,carbon_mean_kg,carbon_std_kg");
-        for (Map.Entry<String, PolicyStats> entry : policyStats.entrySet()) {
-            summaryCsvLines.add(entry.getValue().toCsvLine(entry.getKey()));
+        try (ResearchOutputWriter writer = openResearchOutputs(runs, hostCount, vmCount, cloudletCount, false, false)) {
+            for (EvaluationMetrics metric : metrics) {
+                writer.append(metric);
+            }
+            writer.finish();
         }
+    }
 
-        final String report = buildResearchReport(
-                policyStats,
+    /**
+     * Opens the raw metrics CSV under {@code results} for a campaign whose rows are appended as runs finish.
+     *
+     * @param consolidationColumns whether rows carry the consolidation columns
+     * @param shiftColumns         whether rows carry the temporal shifting columns
+     */
+    public static ResearchOutputWriter openResearchOutputs(
+            final int runs,
+            final int hostCount,
+            final int vmCount,
+            final int cloudletCount,
+            final boolean consolidationColumns,
+            final boolean shiftColumns) {
+        return new ResearchOutputWriter(
+                Path.of("results"),
                 runs,
                 hostCount,
                 vmCount,
-                cloudletCount
+                cloudletCount,
+                consolidationColumns,
+                shiftColumns
         );
-
-        try {
-            Files.createDirectories(resultsDir);
-            Files.write(rawCsvPath, rawCsvLines, StandardCharsets.UTF_8);
-            Files.write(summaryCsvPath, summaryCsvLines, StandardCharsets.UTF_8);
-            Files.writeString(researchSummaryPath, report, StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to write evaluation files under results.", e);
-        }
     }
 
     private static String buildResearchReport(
             final Map<String, PolicyStats> statsByPolicy,
+            final String stoppingRule,
             final int runs,
             final int hostCount,
             final int vmCount,
@@ -146,6 +169,10 @@ public final class ResultsLogger {
                 vmCount,
                 cloudletCount
         ));
+        if (stoppingRule != null) {
+            sb.append("Stopping Rule: ").append(stoppingRule).append(System.lineSeparator());
+            sb.append(System.lineSeparator());
+        }
 
         sb.append("Policy Statistics (mean +- std)").append(System.lineSeparator());
         sb.append("--------------------------------").append(System.lineSeparator());
@@ -155,14 +182,33 @@ public final class ResultsLogger {
                     Locale.US,
                     "%s | completion: %.2f +- %.2f %% | makespan: %.2f +- %.2f s | energy: %.4f +- %.4f kWh | carbon: %.4f +- %.4f kg CO2%n",
                     entry.getKey(),
-                    s.completionMean,
-                    s.completionStd,
-                    s.makespanMean,
-                    s.makespanStd,
-                    s.energyMean,
-                    s.energyStd,
-                    s.carbonMean,
-                    s.carbonStd
+                    s.completion.mean(),
+                    s.completion.stddev(),
+                    s.makespan.mean(),
+                    s.makespan.stddev(),
+                    s.energy.mean(),
+                    s.energy.stddev(),
+                    s.carbon.mean(),
+                    s.carbon.stddev()
+            ));
+        }
+
+        sb.append(System.lineSeparator());
+        sb.append("Confidence Intervals (95%, Student t)").append(System.lineSeparator());
+        sb.append("-------------------------------------").append(System.lineSeparator());
+        for (Map.Entry<String, PolicyStats> entry : statsByPolicy.entrySet()) {
+            final PolicyStats s = entry.getValue();
+            sb.append(String.format(
+                    Locale.US,
+                    "%s | runs: %d | energy: %.4f +- %.4f kWh (%.2f%%) | carbon: %.4f +- %.4f kg CO2 (%.2f%%)%n",
+                    entry.getKey(),
+                    s.runs,
+                    s.energy.mean(),
+                    finiteOrZero(s.energy.halfWidth95()),
+                    finiteOrZero(s.energy.relativeHalfWidth95()) * 100.0,
+                    s.carbon.mean(),
+                    finiteOrZero(s.carbon.halfWidth95()),
+                    finiteOrZero(s.carbon.relativeHalfWidth95()) * 100.0
             ));
         }
 
@@ -175,6 +221,25 @@ public final class ResultsLogger {
             appendImprovementLine(sb, "ENERGY_AWARE", statsByPolicy.get("ENERGY_AWARE"), ciavmp);
         }
 
+        if (statsByPolicy.values().stream().anyMatch(stats -> stats.deferredCloudlets > 0)) {
+            sb.append(System.lineSeparator());
+            sb.append("Temporal Shifting (mean +- std per run)").append(System.lineSeparator());
+            sb.append("---------------------------------------").append(System.lineSeparator());
+            for (Map.Entry<String, PolicyStats> entry : statsByPolicy.entrySet()) {
+                final PolicyStats s = entry.getValue();
+                sb.append(String.format(
+                        Locale.US,
+                        "%s | deferred cloudlets: %d | carbon saved: %.6f +- %.6f kg CO2 | slack used: %.2f +- %.2f %%%n",
+                        entry.getKey(),
+                        s.deferredCloudlets,
+                        s.carbonSaved.mean(),
+                        s.carbonSaved.stddev(),
+                        s.slackUsed.mean(),
+                        s.slackUsed.stddev()
+                ));
+            }
+        }
+
         return sb.toString();
     }
 
@@ -187,9 +252,12 @@ public final class ResultsLogger {
             return;
         }
 
-        final double energyImprovement = relativeImprovementPercent(baseline.energyMean, ciavmp.energyMean);
-        final double carbonImprovement = relativeImprovementPercent(baseline.carbonMean, ciavmp.carbonMean);
-        final double makespanImprovement = relativeImprovementPercent(baseline.makespanMean, ciavmp.makespanMean);
+        final double energyImprovement = relativeImprovementPercent(baseline.energy.mean(), ciavmp.energy.mean());
+        final double carbonImprovement = relativeImprovementPercent(baseline.carbon.mean(), ciavmp.carbon.mean());
+        final double makespanImprovement = relativeImprovementPercent(
+                baseline.makespan.mean(),
+                ciavmp.makespan.mean()
+        );
 
         sb.append(String.format(
                 Locale.US,
@@ -201,6 +269,13 @@ public final class ResultsLogger {
         ));
     }
 
+    /**
+     * Intervals that are undefined with a single run are reported as 0.
+     */
+    private static double finiteOrZero(final double value) {
+        return Double.isFinite(value) ? value : 0.0;
+    }
+
     private static double relativeImprovementPercent(final double baseline, final double candidate) {
         if (baseline == 0.0) {
             return 0.0;
@@ -208,44 +283,446 @@ public final class ResultsLogger {
         return ((baseline - candidate) / baseline) * 100.0;
     }
 
-    private static HostEnergyAndCarbon estimateEnergyAndCarbon(
+    /**
+     * Number of hosts on which at least one cloudlet finished.
+     */
+    public static int hostsUsed(
             final List<Cloudlet> cloudlets,
             final List<Host> hosts,
-            final double makespanSeconds,
-            final Map<Host, String> hostRegionMap,
-            final CarbonIntensityProvider carbonIntensityProvider) {
-        if (hosts.isEmpty() || makespanSeconds <= 0.0) {
-            return new HostEnergyAndCarbon(0.0, 0.0);
-        }
-
-        double totalEnergyKwh = 0.0;
-        double totalCarbonKg = 0.0;
-        for (Host host : hosts) {
-            final double hostCpuTime = cloudlets.stream()
-                    .filter(Cloudlet::isFinished)
-                    .filter(cloudlet -> cloudlet.getVm() != Vm.NULL)
-                    .filter(cloudlet -> cloudlet.getVm().getHost() == host)
-                    .mapToDouble(Cloudlet::getActualCpuTime)
-                    .sum();
-
-            if (hostCpuTime <= 0.0) {
+            final HostMetadata hostMetadata) {
+        final boolean[] used = new boolean[hosts.size()];
+        int count = 0;
+        for (Cloudlet cloudlet : cloudlets) {
+            final int position = hostPosition(cloudlet, hosts, hostMetadata);
+            if (position >= 0 && !used[position]) {
+                used[position] = true;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Position of the host the cloudlet finished on in {@code hosts}, or -1 if it did not finish on one of them.
+     */
+    private static int hostPosition(
+            final Cloudlet cloudlet,
+            final List<Host> hosts,
+            final HostMetadata hostMetadata) {
+        if (!cloudlet.isFinished() || cloudlet.getVm() == Vm.NULL) {
+            return -1;
+        }
+
+        final Host host = cloudlet.getVm().getHost();
+        final int position = hostMetadata.position(host);
+        return position >= 0 && position < hosts.size() && hosts.get(position) == host ? position : -1;
+    }
+
+    /**
+     * The energy and carbon of {@link #buildMetrics} broken down by region, with each
+     * region's CPU utilization over the makespan across all of its hosts and the mean
+     * intensity its energy was priced at.
+     */
+    public static List<RegionMetrics> buildRegionMetrics(
+            final List<Cloudlet> cloudlets,
+            final HostEnergyMeter energyMeter) {
+        double makespan = 0.0;
+        for (Cloudlet cloudlet : cloudlets) {
+            if (cloudlet.isFinished()) {
+                makespan = Math.max(makespan, cloudlet.getFinishTime());
+            }
+        }
+
+        final List<Host> hosts = energyMeter.hosts();
+        final HostMetadata hostMetadata = energyMeter.hostMetadata();
+        final int regions = hostMetadata.regionCount();
+        final int[] hostsByRegion = new int[regions];
+        final long[] pesByRegion = new long[regions];
+        final double[] cpuSecondsByRegion = new double[regions];
+        final double[] energyByRegion = new double[regions];
+        final double[] carbonByRegion = new double[regions];
+        for (int position = 0; position < hosts.size(); position++) {
+            final int region = hostMetadata.regionIdAt(position);
+            hostsByRegion[region]++;
+            pesByRegion[region] += Math.max(1, hosts.get(position).getWorkingPesNumber());
+            cpuSecondsByRegion[region] += energyMeter.cpuSeconds(position);
+            energyByRegion[region] += energyMeter.energyKwh(position);
+            carbonByRegion[region] += energyMeter.carbonKg(position);
+        }
+
+        // Settled after the run, every region was priced at its intensity at time 0.
+        final double[] startIntensities = energyMeter.isMetering()
+                ? null
+                : hostMetadata.intensitiesAt(energyMeter.intensityProfile().carbonIntensityProvider(), 0.0);
+        final List<RegionMetrics> metrics = new ArrayList<>();
+        for (int region = 0; region < regions; region++) {
+            if (hostsByRegion[region] == 0) {
                 continue;
             }
+            final double capacitySeconds = makespan * pesByRegion[region];
+            metrics.add(new RegionMetrics(
+                    hostMetadata.regionName(region),
+                    hostsByRegion[region],
+                    capacitySeconds <= 0.0 ? 0.0 : Math.min(100.0, cpuSecondsByRegion[region] * 100.0 / capacitySeconds),
+                    energyByRegion[region],
+                    carbonByRegion[region],
+                    !energyMeter.isMetering()
+                            ? startIntensities[region]
+                            : energyByRegion[region] > 0.0
+                            ? carbonByRegion[region] * 1000.0 / energyByRegion[region]
+                            : energyMeter.intensityProfile().meanIntensity(region, 0.0, makespan)
+            ));
+        }
+        return metrics;
+    }
+
+    /**
+     * Streams raw metrics rows to {@code evaluation_raw_metrics.csv} as runs finish, flushing each row,
+     * and keeps only per-policy running statistics for the summary files written by {@link #finish()}.
+     */
+    public static final class ResearchOutputWriter implements AutoCloseable {
+        private final Path resultsDir;
+        private final int runs;
+        private final int hostCount;
+        private final int vmCount;
+        private final int cloudletCount;
+        private final boolean consolidationColumns;
+        private final boolean shiftColumns;
+        private final BufferedWriter rawCsv;
+        private BufferedWriter latencyCsv;
+        private BufferedWriter regionCsv;
+        private String stoppingRule;
+        private int workers = 1;
+        private final Map<String, PolicyStats> policyStats = new LinkedHashMap<>();
+        private final Map<String, PlacementOutcome> placementOutcomes = new HashMap<>();
+        private final List<PlacementOutcome> sampledOutcomes = new ArrayList<>();
+
+        private ResearchOutputWriter(
+                final Path resultsDir,
+                final int runs,
+                final int hostCount,
+                final int vmCount,
+                final int cloudletCount,
+                final boolean consolidationColumns,
+                final boolean shiftColumns) {
+            this.resultsDir = resultsDir;
+            this.runs = runs;
+            this.hostCount = hostCount;
+            this.vmCount = vmCount;
+            this.cloudletCount = cloudletCount;
+            this.consolidationColumns = consolidationColumns;
+            this.shiftColumns = shiftColumns;
+            try {
+                Files.createDirectories(resultsDir);
+                this.rawCsv = Files.newBufferedWriter(
+                        resultsDir.resolve("evaluation_raw_metrics.csv"),
+                        StandardCharsets.UTF_8
+                );
+                writeRawLine("timestamp,run_id,policy,total_cloudlets,finished_cloudlets,completion_rate_pct,"
+                        + "avg_cpu_time_s,makespan_s,energy_kwh,carbon_kg_co2"
+                        + (consolidationColumns ? ",migrations,consolidation_planning_ms" : "")
+                        + (shiftColumns ? ",deferred_cloudlets,shift_carbon_saved_kg,shift_slack_used_pct" : ""));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open evaluation files under results.", e);
+            }
+        }
+
+        public synchronized void append(final EvaluationMetrics metric) {
+            try {
+                writeRawLine(metric.toCsvLine(consolidationColumns, shiftColumns));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to append to evaluation_raw_metrics.csv.", e);
+            }
+            policyStats.computeIfAbsent(metric.policyName(), key -> new PolicyStats()).accept(metric);
+        }
+
+        /**
+         * Describes how the number of runs per policy was chosen, for the research report.
+         */
+        public synchronized void setStoppingRule(final String stoppingRule) {
+            this.stoppingRule = stoppingRule;
+        }
+
+        /**
+         * Number of experiments the campaign runs at once. With more than one, decision times
+         * are measured while other experiments compete for the CPU, so the report says that
+         * the paired timings of {@code evaluation_sampling_gap.csv} are not comparable.
+         */
+        public synchronized void setWorkers(final int workers) {
+            this.workers = workers;
+        }
+
+        /**
+         * Larger of the relative 95% confidence interval half-widths of mean energy and carbon
+         * over the rows appended so far for a policy; infinite until it has two rows.
+         */
+        public synchronized double relativeHalfWidth(final String policyName) {
+            final PolicyStats stats = policyStats.get(policyName);
+            return stats == null ? Double.POSITIVE_INFINITY : stats.relativeHalfWidth95();
+        }
 
-            final int hostPes = Math.max(1, host.getWorkingPesNumber());
-            final double utilization = Math.min(1.0, hostCpuTime / (makespanSeconds * hostPes));
-            final double avgPowerWatts = IDLE_POWER_WATTS
-                    + (MAX_POWER_WATTS - IDLE_POWER_WATTS) * utilization;
-            final double hostEnergyKwh = (avgPowerWatts * makespanSeconds) / 3_600_000.0;
-            final double carbonIntensity = carbonIntensityProvider.getIntensityGco2PerKwh(
-                    hostRegionMap.getOrDefault(host, DEFAULT_REGION)
+        /**
+         * Appends one run's placement latency percentiles to {@code evaluation_placement_latency.csv},
+         * which is created by the first call.
+         */
+        public synchronized void appendPlacementStats(
+                final int runId,
+                final String policyName,
+                final PlacementStats stats) {
+            try {
+                if (latencyCsv == null) {
+                    latencyCsv = Files.newBufferedWriter(
+                            resultsDir.resolve("evaluation_placement_latency.csv"),
+                            StandardCharsets.UTF_8
+                    );
+                    writeLine(latencyCsv, "run_id,policy,decisions,p50_us,p90_us,p99_us,max_us,"
+                            + "mean_hosts_examined,provider_calls,cache_hits,"
+                            + "score_lookups,score_recomputes,host_invalidations,region_invalidations,"
+                            + "sampled_decisions,sample_fallbacks");
+                }
+                writeLine(latencyCsv, String.format(
+                        Locale.US,
+                        "%d,%s,%d,%.3f,%.3f,%.3f,%.3f,%.2f,%d,%d,%d,%d,%d,%d,%d,%d",
+                        runId,
+                        policyName,
+                        stats.getDecisions(),
+                        stats.getPercentileMicros(50.0),
+                        stats.getPercentileMicros(90.0),
+                        stats.getPercentileMicros(99.0),
+                        stats.getMaxMicros(),
+                        stats.getMeanHostsExamined(),
+                        stats.getProviderCalls(),
+                        stats.getCacheHits(),
+                        stats.getScoreLookups(),
+                        stats.getScoreRecomputes(),
+                        stats.getHostInvalidations(),
+                        stats.getRegionInvalidations(),
+                        stats.getSampledDecisions(),
+                        stats.getSampleFallbacks()
+                ));
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to append to evaluation_placement_latency.csv.", e);
+            }
+        }
+
+        /**
+         * Records how one run placed its VMs, for the sampled-placement quality gap written by
+         * {@link #finish()}: a run of a policy with {@code sampleSize} above 0 is compared with
+         * the run of the same id of {@code exactPolicyName}, which is recorded with 0.
+         */
+        public synchronized void recordPlacementOutcome(
+                final EvaluationMetrics metrics,
+                final String exactPolicyName,
+                final int sampleSize,
+                final int hostsUsed,
+                final double meanDecisionMicros) {
+            final PlacementOutcome outcome = new PlacementOutcome(
+                    metrics,
+                    exactPolicyName,
+                    sampleSize,
+                    hostsUsed,
+                    meanDecisionMicros
             );
+            placementOutcomes.put(metrics.runId() + ":" + metrics.policyName(), outcome);
+            if (sampleSize > 0) {
+                sampledOutcomes.add(outcome);
+            }
+        }
+
+        /**
+         * Appends one run's per-region breakdown to {@code evaluation_region_metrics.csv},
+         * which is created by the first call.
+         */
+        public synchronized void appendRegionMetrics(
+                final int runId,
+                final String policyName,
+                final List<RegionMetrics> regions) {
+            try {
+                if (regionCsv == null) {
+                    regionCsv = Files.newBufferedWriter(
+                            resultsDir.resolve("evaluation_region_metrics.csv"),
+                            StandardCharsets.UTF_8
+                    );
+                    writeLine(regionCsv, "run_id,policy,region,hosts,cpu_utilization_pct,energy_kwh,"
+                            + "carbon_kg_co2,intensity_gco2_kwh");
+                }
+                for (RegionMetrics region : regions) {
+                    writeLine(regionCsv, String.format(
+                            Locale.US,
+                            "%d,%s,%s,%d,%.2f,%.6f,%.6f,%.1f",
+                            runId,
+                            policyName,
+                            region.region(),
+                            region.hosts(),
+                            region.cpuUtilizationPct(),
+                            region.energyKwh(),
+                            region.carbonKg(),
+                            region.intensity()
+                    ));
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to append to evaluation_region_metrics.csv.", e);
+            }
+        }
+
+        /**
+         * Writes the policy summary CSV and research report from the rows appended so far.
+         */
+        public synchronized void finish() {
+            final List<String> summaryCsvLines = new ArrayList<>();
+            summaryCsvLines.add("policy,runs,completion_mean_pct,completion_std_pct,makespan_mean_s,makespan_std_s,"
+                    + "energy_mean_kwh,energy_std_kwh,carbon_mean_kg,carbon_std_kg,energy_ci95_kwh,carbon_ci95_kg");
+            for (Map.Entry<String, PolicyStats> entry : policyStats.entrySet()) {
+                summaryCsvLines.add(entry.getValue().toCsvLine(entry.getKey()));
+            }
+
+            final StringBuilder report = new StringBuilder(buildResearchReport(
+                    policyStats,
+                    stoppingRule,
+                    runs,
+                    hostCount,
+                    vmCount,
+                    cloudletCount
+            ));
+            final List<String> gapCsvLines = samplingGap(report);
+
+            try {
+                if (!gapCsvLines.isEmpty()) {
+                    Files.write(resultsDir.resolve("evaluation_sampling_gap.csv"), gapCsvLines, StandardCharsets.UTF_8);
+                }
+                Files.write(resultsDir.resolve("evaluation_policy_summary.csv"), summaryCsvLines, StandardCharsets.UTF_8);
+                Files.writeString(resultsDir.resolve("evaluation_research_summary.txt"), report.toString(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write evaluation files under results.", e);
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            try {
+                rawCsv.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to close evaluation_raw_metrics.csv.", e);
+            }
+            if (latencyCsv != null) {
+                try {
+                    latencyCsv.close();
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to close evaluation_placement_latency.csv.", e);
+                }
+            }
+            if (regionCsv != null) {
+                try {
+                    regionCsv.close();
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to close evaluation_region_metrics.csv.", e);
+                }
+            }
+        }
 
-            totalEnergyKwh += hostEnergyKwh;
-            totalCarbonKg += (hostEnergyKwh * carbonIntensity) / 1000.0;
+        /**
+         * Pairs every sampled run with the exact run of the same id, returns the lines of
+         * {@code evaluation_sampling_gap.csv} (none if nothing could be paired) and appends
+         * the mean gap per sampled policy to the report. Gaps are relative to the exact run;
+         * positive means the sampled run used more energy, emitted more carbon or used more
+         * hosts. Decision times are wall-clock; the two runs of a pair are only timed under the
+         * same load when the campaign runs one experiment at a time.
+         */
+        private List<String> samplingGap(final StringBuilder report) {
+            final List<String> lines = new ArrayList<>();
+            final Map<String, RunningStat[]> gapsByPolicy = new LinkedHashMap<>();
+            final Map<String, Integer> sampleSizes = new HashMap<>();
+            sampledOutcomes.sort((a, b) -> a.metrics.policyName().equals(b.metrics.policyName())
+                    ? Integer.compare(a.metrics.runId(), b.metrics.runId())
+                    : a.metrics.policyName().compareTo(b.metrics.policyName()));
+            for (PlacementOutcome sampled : sampledOutcomes) {
+                final PlacementOutcome exact = placementOutcomes.get(sampled.metrics.runId() + ":" + sampled.exactPolicyName);
+                if (exact == null) {
+                    continue;
+                }
+                if (lines.isEmpty()) {
+                    lines.add("run_id,policy,exact_policy,sample_size,energy_exact_kwh,energy_sampled_kwh,energy_gap_pct,"
+                            + "carbon_exact_kg,carbon_sampled_kg,carbon_gap_pct,hosts_used_exact,hosts_used_sampled,"
+                            + "decision_exact_mean_us,decision_sampled_mean_us,decision_time_saved_pct");
+                }
+                final double energyGap = -relativeImprovementPercent(exact.metrics.energyKwh(), sampled.metrics.energyKwh());
+                final double carbonGap = -relativeImprovementPercent(exact.metrics.carbonKg(), sampled.metrics.carbonKg());
+                final double hostsGap = -relativeImprovementPercent(exact.hostsUsed, sampled.hostsUsed);
+                final double timeSaved = relativeImprovementPercent(exact.meanDecisionMicros, sampled.meanDecisionMicros);
+                lines.add(String.format(
+                        Locale.US,
+                        "%d,%s,%s,%d,%.6f,%.6f,%.3f,%.6f,%.6f,%.3f,%d,%d,%.3f,%.3f,%.2f",
+                        sampled.metrics.runId(),
+                        sampled.metrics.policyName(),
+                        sampled.exactPolicyName,
+                        sampled.sampleSize,
+                        exact.metrics.energyKwh(),
+                        sampled.metrics.energyKwh(),
+                        energyGap,
+                        exact.metrics.carbonKg(),
+                        sampled.metrics.carbonKg(),
+                        carbonGap,
+                        exact.hostsUsed,
+                        sampled.hostsUsed,
+                        exact.meanDecisionMicros,
+                        sampled.meanDecisionMicros,
+                        timeSaved
+                ));
+                final RunningStat[] gaps = gapsByPolicy.computeIfAbsent(
+                        sampled.metrics.policyName(),
+                        key -> new RunningStat[]{new RunningStat(), new RunningStat(), new RunningStat(), new RunningStat()}
+                );
+                gaps[0].accept(energyGap);
+                gaps[1].accept(carbonGap);
+                gaps[2].accept(hostsGap);
+                gaps[3].accept(timeSaved);
+                sampleSizes.put(sampled.metrics.policyName(), sampled.sampleSize);
+            }
+
+            if (!gapsByPolicy.isEmpty()) {
+                report.append(System.lineSeparator());
+                report.append("Sampled Placement Quality Gap (mean +- std over paired runs)").append(System.lineSeparator());
+                report.append("------------------------------------------------------------").append(System.lineSeparator());
+                if (workers > 1) {
+                    report.append(String.format(
+                            Locale.US,
+                            "Decision times were measured with %d experiments running at once and are noisy;"
+                                    + " rerun with EVAL_WORKERS=1 to compare them.%n",
+                            workers
+                    ));
+                }
+                for (Map.Entry<String, RunningStat[]> entry : gapsByPolicy.entrySet()) {
+                    final RunningStat[] gaps = entry.getValue();
+                    report.append(String.format(
+                            Locale.US,
+                            "%s | d=%d | runs: %d | energy: %+.2f +- %.2f %% | carbon: %+.2f +- %.2f %%"
+                                    + " | hosts used: %+.2f +- %.2f %% | decision time saved: %.1f +- %.1f %%%n",
+                            entry.getKey(),
+                            sampleSizes.get(entry.getKey()),
+                            gaps[0].count,
+                            gaps[0].mean(),
+                            gaps[0].stddev(),
+                            gaps[1].mean(),
+                            gaps[1].stddev(),
+                            gaps[2].mean(),
+                            gaps[2].stddev(),
+                            gaps[3].mean(),
+                            gaps[3].stddev()
+                    ));
+                }
+            }
+            return lines;
         }
 
-        return new HostEnergyAndCarbon(totalEnergyKwh, totalCarbonKg);
+        private void writeRawLine(final String line) throws IOException {
+            writeLine(rawCsv, line);
+        }
+
+        private static void writeLine(final BufferedWriter writer, final String line) throws IOException {
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+        }
     }
 
     public static final class EvaluationMetrics {
@@ -259,6 +736,11 @@ public final class ResultsLogger {
         private final double makespan;
         private final double energyKwh;
         private final double carbonKg;
+        private final long migrations;
+        private final double planningMillis;
+        private final long deferredCloudlets;
+        private final double carbonSavedKg;
+        private final double slackUsedPct;
 
         public EvaluationMetrics(
                 final String timestamp,
@@ -270,7 +752,12 @@ public final class ResultsLogger {
                 final double avgCpuTime,
                 final double makespan,
                 final double energyKwh,
-                final double carbonKg) {
+                final double carbonKg,
+                final long migrations,
+                final double planningMillis,
+                final long deferredCloudlets,
+                final double carbonSavedKg,
+                final double slackUsedPct) {
             this.timestamp = timestamp;
             this.runId = runId;
             this.policyName = policyName;
@@ -281,14 +768,84 @@ public final class ResultsLogger {
             this.makespan = makespan;
             this.energyKwh = energyKwh;
             this.carbonKg = carbonKg;
+            this.migrations = migrations;
+            this.planningMillis = planningMillis;
+            this.deferredCloudlets = deferredCloudlets;
+            this.carbonSavedKg = carbonSavedKg;
+            this.slackUsedPct = slackUsedPct;
+        }
+
+        public int runId() {
+            return runId;
         }
 
         public String policyName() {
             return policyName;
         }
 
-        public String toCsvLine() {
-            return String.format(
+        public double completionRate() {
+            return completionRate;
+        }
+
+        public double makespan() {
+            return makespan;
+        }
+
+        public double energyKwh() {
+            return energyKwh;
+        }
+
+        public double carbonKg() {
+            return carbonKg;
+        }
+
+        /**
+         * Binary form used by {@link RunLog}; {@link #readFrom(DataInput)} reads it back.
+         */
+        void writeTo(final DataOutput out) throws IOException {
+            out.writeUTF(timestamp);
+            out.writeInt(runId);
+            out.writeUTF(policyName);
+            out.writeInt(totalCloudlets);
+            out.writeLong(finishedCloudlets);
+            out.writeDouble(completionRate);
+            out.writeDouble(avgCpuTime);
+            out.writeDouble(makespan);
+            out.writeDouble(energyKwh);
+            out.writeDouble(carbonKg);
+            out.writeLong(migrations);
+            out.writeDouble(planningMillis);
+            out.writeLong(deferredCloudlets);
+            out.writeDouble(carbonSavedKg);
+            out.writeDouble(slackUsedPct);
+        }
+
+        static EvaluationMetrics readFrom(final DataInput in) throws IOException {
+            return new EvaluationMetrics(
+                    in.readUTF(),
+                    in.readInt(),
+                    in.readUTF(),
+                    in.readInt(),
+                    in.readLong(),
+                    in.readDouble(),
+                    in.readDouble(),
+                    in.readDouble(),
+                    in.readDouble(),
+                    in.readDouble(),
+                    in.readLong(),
+                    in.readDouble(),
+                    in.readLong(),
+                    in.readDouble(),
+                    in.readDouble()
+            );
+        }
+
+        /**
+         * Raw metrics row; the consolidation and temporal shifting columns only when asked for,
+         * so campaigns without those features keep the original columns.
+         */
+        public String toCsvLine(final boolean consolidationColumns, final boolean shiftColumns) {
+            final StringBuilder line = new StringBuilder(String.format(
                     Locale.US,
                     "%s,%d,%s,%d,%d,%.2f,%.2f,%.2f,%.6f,%.6f",
                     timestamp,
@@ -301,118 +858,215 @@ public final class ResultsLogger {
                     makespan,
                     energyKwh,
                     carbonKg
-            );
+            ));
+            if (consolidationColumns) {
+                line.append(String.format(Locale.US, ",%d,%.3f", migrations, planningMillis));
+            }
+            if (shiftColumns) {
+                line.append(String.format(Locale.US, ",%d,%.6f,%.2f", deferredCloudlets, carbonSavedKg, slackUsedPct));
+            }
+            return line.toString();
+        }
+    }
+
+    /**
+     * What {@link ResearchOutputWriter#recordPlacementOutcome} keeps of one run.
+     */
+    private static final class PlacementOutcome {
+        private final EvaluationMetrics metrics;
+        private final String exactPolicyName;
+        private final int sampleSize;
+        private final int hostsUsed;
+        private final double meanDecisionMicros;
+
+        private PlacementOutcome(
+                final EvaluationMetrics metrics,
+                final String exactPolicyName,
+                final int sampleSize,
+                final int hostsUsed,
+                final double meanDecisionMicros) {
+            this.metrics = metrics;
+            this.exactPolicyName = exactPolicyName;
+            this.sampleSize = sampleSize;
+            this.hostsUsed = hostsUsed;
+            this.meanDecisionMicros = meanDecisionMicros;
         }
     }
 
+    /**
+     * Per-policy statistics accumulated one run at a time.
+     */
     private static final class PolicyStats {
-        private final int runs;
-        private final double completionMean;
-        private final double completionStd;
-        private final double makespanMean;
-        private final double makespanStd;
-        private final double energyMean;
-        private final double energyStd;
-        private final double carbonMean;
-        private final double carbonStd;
-
-        private PolicyStats(
-                final int runs,
-                final double completionMean,
-                final double completionStd,
-                final double makespanMean,
-                final double makespanStd,
-                final double energyMean,
-                final double energyStd,
-                final double carbonMean,
-                final double carbonStd) {
-            this.runs = runs;
-            this.completionMean = completionMean;
-            this.completionStd = completionStd;
-            this.makespanMean = makespanMean;
-            this.makespanStd = makespanStd;
-            this.energyMean = energyMean;
-            this.energyStd = energyStd;
-            this.carbonMean = carbonMean;
-            this.carbonStd = carbonStd;
-        }
-
-        private static PolicyStats from(final List<EvaluationMetrics> metrics) {
-            final double completionMean = mean(metrics.stream().mapToDouble(m -> m.completionRate).toArray());
-            final double makespanMean = mean(metrics.stream().mapToDouble(m -> m.makespan).toArray());
-            final double energyMean = mean(metrics.stream().mapToDouble(m -> m.energyKwh).toArray());
-            final double carbonMean = mean(metrics.stream().mapToDouble(m -> m.carbonKg).toArray());
-
-            final double completionStd = stddev(metrics.stream().mapToDouble(m -> m.completionRate).toArray());
-            final double makespanStd = stddev(metrics.stream().mapToDouble(m -> m.makespan).toArray());
-            final double energyStd = stddev(metrics.stream().mapToDouble(m -> m.energyKwh).toArray());
-            final double carbonStd = stddev(metrics.stream().mapToDouble(m -> m.carbonKg).toArray());
-
-            return new PolicyStats(
-                    metrics.size(),
-                    completionMean,
-                    completionStd,
-                    makespanMean,
-                    makespanStd,
-                    energyMean,
-                    energyStd,
-                    carbonMean,
-                    carbonStd
-            );
+        private int runs;
+        private final RunningStat completion = new RunningStat();
+        private final RunningStat makespan = new RunningStat();
+        private final RunningStat energy = new RunningStat();
+        private final RunningStat carbon = new RunningStat();
+        private final RunningStat carbonSaved = new RunningStat();
+        private final RunningStat slackUsed = new RunningStat();
+        private long deferredCloudlets;
+
+        private void accept(final EvaluationMetrics metric) {
+            runs++;
+            completion.accept(metric.completionRate);
+            makespan.accept(metric.makespan);
+            energy.accept(metric.energyKwh);
+            carbon.accept(metric.carbonKg);
+            carbonSaved.accept(metric.carbonSavedKg);
+            slackUsed.accept(metric.slackUsedPct);
+            deferredCloudlets += metric.deferredCloudlets;
+        }
+
+        /**
+         * Larger of the energy and carbon 95% CI half-widths, relative to their means.
+         */
+        private double relativeHalfWidth95() {
+            return Math.max(energy.relativeHalfWidth95(), carbon.relativeHalfWidth95());
         }
 
         private String toCsvLine(final String policyName) {
             return String.format(
                     Locale.US,
-                    "%s,%d,%.4f,%.4f,%.4f,%.4f,%.6f,%.6f,%.6f,%.6f",
+                    "%s,%d,%.4f,%.4f,%.4f,%.4f,%.6f,%.6f,%.6f,%.6f,%.6f,%.6f",
                     policyName,
                     runs,
-                    completionMean,
-                    completionStd,
-                    makespanMean,
-                    makespanStd,
-                    energyMean,
-                    energyStd,
-                    carbonMean,
-                    carbonStd
+                    completion.mean(),
+                    completion.stddev(),
+                    makespan.mean(),
+                    makespan.stddev(),
+                    energy.mean(),
+                    energy.stddev(),
+                    carbon.mean(),
+                    carbon.stddev(),
+                    finiteOrZero(energy.halfWidth95()),
+                    finiteOrZero(carbon.halfWidth95())
             );
         }
+    }
+
+    /**
+     * Welford running mean and sample standard deviation, with the half-width of the
+     * 95% Student-t confidence interval of the mean.
+     */
+    private static final class RunningStat {
+
+        /**
+         * Two-sided 95% Student-t quantiles for 1 to 30 degrees of freedom.
+         */
+        private static final double[] T_95 = {
+                12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+                2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+                2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+        };
+
+        private long count;
+        private double mean;
+        private double sumSquaredDeltas;
+
+        private void accept(final double value) {
+            count++;
+            final double delta = value - mean;
+            mean += delta / count;
+            sumSquaredDeltas += delta * (value - mean);
+        }
+
+        private double mean() {
+            return mean;
+        }
 
-        private static double mean(final double[] values) {
-            if (values.length == 0) {
+        private double stddev() {
+            if (count <= 1) {
                 return 0.0;
             }
+            return Math.sqrt(sumSquaredDeltas / (count - 1));
+        }
 
-            double sum = 0.0;
-            for (double value : values) {
-                sum += value;
+        /**
+         * Half-width of the 95% confidence interval of the mean; infinite below two samples.
+         */
+        private double halfWidth95() {
+            if (count <= 1) {
+                return Double.POSITIVE_INFINITY;
             }
-            return sum / values.length;
+            return tQuantile95(count - 1) * stddev() / Math.sqrt(count);
         }
 
-        private static double stddev(final double[] values) {
-            if (values.length <= 1) {
+        /**
+         * Half-width relative to the magnitude of the mean; 0 when every sample was 0.
+         */
+        private double relativeHalfWidth95() {
+            final double halfWidth = halfWidth95();
+            if (halfWidth == 0.0) {
                 return 0.0;
             }
+            return mean == 0.0 ? Double.POSITIVE_INFINITY : halfWidth / Math.abs(mean);
+        }
 
-            final double mean = mean(values);
-            double sumSquared = 0.0;
-            for (double value : values) {
-                final double delta = value - mean;
-                sumSquared += delta * delta;
+        /**
+         * Table value up to 30 degrees of freedom, then the first-order Cornish-Fisher expansion
+         * around the normal quantile, which is within 0.003 of the exact value from there on.
+         */
+        private static double tQuantile95(final long degreesOfFreedom) {
+            if (degreesOfFreedom <= T_95.length) {
+                return T_95[(int) degreesOfFreedom - 1];
             }
-
-            return Math.sqrt(sumSquared / (values.length - 1));
+            final double z = 1.959964;
+            return z + (z * z * z + z) / (4.0 * degreesOfFreedom);
         }
     }
 
-    private static final class HostEnergyAndCarbon {
+    /**
+     * Energy and carbon of one region over a run.
+     */
+    public static final class RegionMetrics {
+        private final String region;
+        private final int hosts;
+        private final double cpuUtilizationPct;
         private final double energyKwh;
         private final double carbonKg;
+        private final double intensity;
 
-        private HostEnergyAndCarbon(final double energyKwh, final double carbonKg) {
+        private RegionMetrics(
+                final String region,
+                final int hosts,
+                final double cpuUtilizationPct,
+                final double energyKwh,
+                final double carbonKg,
+                final double intensity) {
+            this.region = region;
+            this.hosts = hosts;
+            this.cpuUtilizationPct = cpuUtilizationPct;
             this.energyKwh = energyKwh;
             this.carbonKg = carbonKg;
+            this.intensity = intensity;
+        }
+
+        public String region() {
+            return region;
+        }
+
+        public int hosts() {
+            return hosts;
+        }
+
+        public double cpuUtilizationPct() {
+            return cpuUtilizationPct;
+        }
+
+        public double energyKwh() {
+            return energyKwh;
+        }
+
+        public double carbonKg() {
+            return carbonKg;
+        }
+
+        /**
+         * Mean carbon intensity (gCO2/kWh) the region's carbon was accounted at, weighted by
+         * energy; over the makespan for a region that drew none.
+         */
+        public double intensity() {
+            return intensity;
         }
     }
 }
@@ -0,0 +1,333 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of completed experiments, so an interrupted campaign can resume.
+ *
+ * <p>The file starts with a magic number and version. Each record is framed as
+ * {@code length (int), payload, CRC32C of payload (int)}, big-endian; the payload is
+ * the campaign configuration hash and a record kind. A campaign record marks where a
+ * campaign started without resuming; an experiment record holds the run's
+ * {@link ResultsLogger.EvaluationMetrics}, the hosts it used and its {@link PlacementStats}
+ * if it recorded any, so a resumed campaign reports replayed runs like new ones.
+ * Appends are buffered and made durable by {@link #sync()}, which writes and fsyncs every
+ * record since the last call as one batch.</p>
+ *
+ * <p>{@link #open(Path, long, boolean)} replays the log from a single read-only mapping.
+ * Replay stops at the first record that is truncated or fails its checksum, which is
+ * where a crash during a batch leaves the file, and the file is cut back to the last
+ * good record before anything is appended. Nothing else is ever removed: a fresh
+ * campaign appends its campaign record, and a later resume of its configuration only
+ * replays experiments logged after it. A file that is not a log of this version is left
+ * alone and the log is not opened.</p>
+ */
+public final class RunLog implements AutoCloseable {
+
+    private static final int MAGIC = 0x524C4F47; // "RLOG"
+    private static final int VERSION = 2;
+    private static final byte CAMPAIGN_RECORD = 0;
+    private static final byte EXPERIMENT_RECORD = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int FRAME_BYTES = 8;
+    private static final int MAX_PAYLOAD_BYTES = 1 << 20;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long configHash;
+    private final List<Entry> replayed;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final CRC32C crc = new CRC32C();
+    private int pendingRecords;
+    private final long replayNanos;
+
+    private RunLog(
+            final Path file,
+            final FileChannel channel,
+            final long configHash,
+            final List<Entry> replayed,
+            final long replayNanos) {
+        this.file = file;
+        this.channel = channel;
+        this.configHash = configHash;
+        this.replayed = replayed;
+        this.replayNanos = replayNanos;
+    }
+
+    /**
+     * Opens the log for a campaign with the given configuration hash.
+     *
+     * @param resume if true, experiments of this configuration logged since its last fresh
+     *               start are replayed; otherwise this campaign starts afresh, after a campaign
+     *               record that keeps earlier experiments from being replayed into it
+     */
+    public static RunLog open(final Path file, final long configHash, final boolean resume) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            final FileChannel channel = FileChannel.open(
+                    file,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE
+            );
+
+            final long start = System.nanoTime();
+            final List<Entry> replayed = new ArrayList<>();
+            if (channel.size() == 0L) {
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                channel.write(header, 0L);
+            } else {
+                channel.truncate(replay(file, channel, configHash, replayed));
+            }
+            channel.position(channel.size());
+            final RunLog runLog = new RunLog(
+                    file,
+                    channel,
+                    configHash,
+                    resume ? replayed : List.of(),
+                    System.nanoTime() - start
+            );
+            if (!resume) {
+                runLog.appendRecord(CAMPAIGN_RECORD, null, 0, null);
+            }
+            runLog.sync();
+            channel.force(true);
+            return runLog;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open run log " + file + ".", e);
+        }
+    }
+
+    /**
+     * Experiments of this configuration completed before the log was opened, in log order;
+     * empty unless the campaign resumes.
+     */
+    public List<Entry> getReplayed() {
+        return replayed;
+    }
+
+    public double getReplayMillis() {
+        return replayNanos / 1_000_000.0;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Buffers a completed experiment; it becomes durable with the next {@link #sync()}.
+     *
+     * @param placementStats the run's placement stats, or null if it recorded none
+     */
+    public synchronized void append(
+            final ResultsLogger.EvaluationMetrics metrics,
+            final int hostsUsed,
+            final PlacementStats placementStats) {
+        appendRecord(EXPERIMENT_RECORD, metrics, hostsUsed, placementStats);
+    }
+
+    private void appendRecord(
+            final byte kind,
+            final ResultsLogger.EvaluationMetrics metrics,
+            final int hostsUsed,
+            final PlacementStats placementStats) {
+        try {
+            final ByteArrayOutputStream payload = new ByteArrayOutputStream(128);
+            final DataOutputStream out = new DataOutputStream(payload);
+            out.writeLong(configHash);
+            out.writeByte(kind);
+            if (kind == EXPERIMENT_RECORD) {
+                metrics.writeTo(out);
+                out.writeInt(hostsUsed);
+                out.writeBoolean(placementStats != null);
+                if (placementStats != null) {
+                    placementStats.writeTo(out);
+                }
+            }
+            out.flush();
+
+            final byte[] bytes = payload.toByteArray();
+            crc.reset();
+            crc.update(bytes, 0, bytes.length);
+            final ByteBuffer frame = ByteBuffer.allocate(bytes.length + FRAME_BYTES);
+            frame.putInt(bytes.length).put(bytes).putInt((int) crc.getValue());
+            pending.write(frame.array(), 0, frame.position());
+            pendingRecords++;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to encode run log record.", e);
+        }
+    }
+
+    /**
+     * Writes and fsyncs every record appended since the last call.
+     */
+    public synchronized void sync() {
+        if (pendingRecords == 0) {
+            return;
+        }
+        try {
+            final ByteBuffer batch = ByteBuffer.wrap(pending.toByteArray());
+            while (batch.hasRemaining()) {
+                channel.write(batch);
+            }
+            channel.force(false);
+            pending.reset();
+            pendingRecords = 0;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to sync run log " + file + ".", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            sync();
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to close run log " + file + ".", e);
+            }
+        }
+    }
+
+    /**
+     * Decodes the experiments of the given configuration logged since its last campaign record
+     * into {@code replayed} and returns the length of the valid prefix of the file.
+     */
+    private static long replay(
+            final Path file,
+            final FileChannel channel,
+            final long configHash,
+            final List<Entry> replayed) throws IOException {
+        final long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Run log too large for one mapping: " + size + " bytes.");
+        }
+
+        final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+        if (size < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException(file + " is not a version " + VERSION
+                    + " run log; move it away to start a new one.");
+        }
+
+        final CRC32C crc = new CRC32C();
+        final ByteBufferInput input = new ByteBufferInput(buffer);
+        final DataInputStream in = new DataInputStream(input);
+        long valid = HEADER_BYTES;
+        while (buffer.remaining() >= FRAME_BYTES) {
+            final int start = buffer.position();
+            final int length = buffer.getInt();
+            if (length <= 0 || length > MAX_PAYLOAD_BYTES || buffer.remaining() < length + Integer.BYTES) {
+                break;
+            }
+
+            final ByteBuffer payload = buffer.slice();
+            payload.limit(length);
+            crc.reset();
+            crc.update(payload);
+            buffer.position(start + Integer.BYTES + length);
+            if ((int) crc.getValue() != buffer.getInt()) {
+                break;
+            }
+
+            buffer.position(start + Integer.BYTES);
+            if (in.readLong() == configHash) {
+                if (in.readByte() == CAMPAIGN_RECORD) {
+                    replayed.clear();
+                } else {
+                    final ResultsLogger.EvaluationMetrics metrics = ResultsLogger.EvaluationMetrics.readFrom(in);
+                    final int hostsUsed = in.readInt();
+                    replayed.add(new Entry(metrics, hostsUsed, in.readBoolean() ? PlacementStats.readFrom(in) : null));
+                }
+            }
+            buffer.position(start + FRAME_BYTES + length);
+            valid = buffer.position();
+        }
+        return valid;
+    }
+
+    /**
+     * Reads a byte buffer from its current position, advancing it.
+     */
+    private static final class ByteBufferInput extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInput(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+
+    /**
+     * One logged experiment.
+     */
+    public static final class Entry {
+        private final ResultsLogger.EvaluationMetrics metrics;
+        private final int hostsUsed;
+        private final PlacementStats placementStats;
+
+        private Entry(
+                final ResultsLogger.EvaluationMetrics metrics,
+                final int hostsUsed,
+                final PlacementStats placementStats) {
+            this.metrics = metrics;
+            this.hostsUsed = hostsUsed;
+            this.placementStats = placementStats;
+        }
+
+        public ResultsLogger.EvaluationMetrics metrics() {
+            return metrics;
+        }
+
+        public int hostsUsed() {
+            return hostsUsed;
+        }
+
+        /**
+         * The run's placement stats, or null if it recorded none.
+         */
+        public PlacementStats placementStats() {
+            return placementStats;
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a campaign's canonical configuration string.
+     */
+    public static long configHash(final String configuration) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : configuration.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
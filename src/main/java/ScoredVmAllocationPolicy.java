@@ -0,0 +1,422 @@
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.hosts.HostSuitability;
+import org.cloudsimplus.listeners.EventListener;
+import org.cloudsimplus.listeners.HostUpdatesVmsProcessingEventInfo;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Base for policies that place a VM on the suitable host with the lowest score.
+ *
+ * <p>A score is a function of host utilization, a per-region value (e.g. carbon
+ * intensity) and the host's {@link PowerCurve}, and must be non-decreasing in
+ * utilization. Hosts are either scanned
+ * in full for every VM or searched through a {@link HostPlacementIndex}; both
+ * modes select the same host. A scan reads scores from a {@link HostScoreCache}, so
+ * only hosts whose utilization or region value changed since the last scan are
+ * rescored. Batches are packed best-fit-decreasing over the scores taken at the
+ * start of the batch.</p>
+ *
+ * <p>A policy whose score is a {@link LinearScore} can instead score the whole fleet at
+ * once from a {@link HostScoreArrays} mirror, see {@link #setArrayScoring}. For fleets
+ * too large for any exact search, {@link #setSampledPlacement} trades optimality for a
+ * constant number of hosts per decision.</p>
+ */
+public abstract class ScoredVmAllocationPolicy extends BatchVmAllocationPolicy {
+
+    /**
+     * Recent winners kept as extra candidates of a sampled decision.
+     */
+    private static final int RECENT_BEST_HOSTS = 4;
+
+    /**
+     * Random draws per wanted sample before a sampled decision gives up on finding more
+     * suitable hosts.
+     */
+    private static final int DRAWS_PER_SAMPLE = 4;
+
+    private final boolean indexedPlacement;
+
+    /**
+     * Forwards host processing updates to the placement structures. One instance serves
+     * every host, and a host only gets it once it takes a VM: a host that never held one
+     * keeps its utilization and free capacity, so its updates could not change a structure.
+     */
+    private final EventListener<HostUpdatesVmsProcessingEventInfo> processingListener =
+            info -> processingUpdated(info.getHost());
+    private HostPlacementIndex hostIndex;
+    private HostScoreCache scoreCache;
+    private ArrayScoring arrayScoring = ArrayScoring.OFF;
+    private HostScoreArrays scoreArrays;
+    private int sampleSize;
+    private Random sampleRandom;
+    private final int[] recentBest = new int[RECENT_BEST_HOSTS];
+    private int nextRecentBest;
+
+    protected ScoredVmAllocationPolicy(final boolean indexedPlacement) {
+        this.indexedPlacement = indexedPlacement;
+        Arrays.fill(recentBest, -1);
+    }
+
+    /**
+     * Score of a host with the given CPU utilization (0..1) and power curve in a region with
+     * the given value. Lower is better.
+     */
+    protected abstract double score(double utilization, double regionValue, PowerCurve powerCurve);
+
+    /**
+     * Region id of a host; hosts of one region share the value passed to {@link #score(double, double, PowerCurve)}.
+     */
+    protected int regionOf(final Host host) {
+        return 0;
+    }
+
+    protected double regionValue(final int regionId) {
+        return 0.0;
+    }
+
+    protected PowerCurve powerCurveOf(final Host host) {
+        return PowerCurve.DEFAULT;
+    }
+
+    /**
+     * The score as a {@link LinearScore}, if it is one; {@link #score(double, double, PowerCurve)}
+     * must then return exactly {@code linearScore().score(u, powerCurve.watts(u), regionValue)}.
+     * Null, the default, leaves single placements to the scan or the index.
+     */
+    protected LinearScore linearScore() {
+        return null;
+    }
+
+    /**
+     * Places single VMs by scoring every host from a {@link HostScoreArrays} mirror, with the
+     * Vector API kernel or the scalar loop, instead of scanning or searching the index. Has no
+     * effect if the policy has no {@link #linearScore()}. Selects the same host either way.
+     */
+    public void setArrayScoring(final ArrayScoring arrayScoring) {
+        this.arrayScoring = arrayScoring;
+        this.scoreArrays = null;
+    }
+
+    public ArrayScoring getArrayScoring() {
+        return arrayScoring;
+    }
+
+    /**
+     * Places single VMs by power of d choices: the lowest-scoring of {@code sampleSize}
+     * randomly drawn suitable hosts and the last {@value #RECENT_BEST_HOSTS} hosts chosen,
+     * with ties going to the lower list position. Draws are uniform with replacement from a
+     * {@link Random} seeded with {@code seed}, so a run is reproducible, and stop after
+     * {@value #DRAWS_PER_SAMPLE} per wanted sample; if none of the candidates fits, the
+     * decision falls back to the configured exact search. 0 turns sampling off.
+     */
+    public void setSampledPlacement(final int sampleSize, final long seed) {
+        if (sampleSize < 0) {
+            throw new IllegalArgumentException("Sample size must not be negative.");
+        }
+        this.sampleSize = sampleSize;
+        this.sampleRandom = sampleSize > 0 ? new Random(seed) : null;
+        Arrays.fill(recentBest, -1);
+    }
+
+    /**
+     * Hosts sampled per decision; 0 if every decision is exact.
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    @Override
+    protected Optional<Host> findHostForSingleVm(final Vm vm) {
+        return sampleSize > 0 ? findSampled(vm) : findExact(vm);
+    }
+
+    private Optional<Host> findSampled(final Vm vm) {
+        final List<Host> hosts = getHostList();
+        if (hosts.isEmpty()) {
+            return Optional.empty();
+        }
+
+        final HostScoreCache cache = scoreCache();
+        cache.updateRegionValues(this::regionValue);
+        int best = -1;
+        double bestScore = 0.0;
+        int examined = 0;
+        for (int position : recentBest) {
+            if (position < 0 || position >= hosts.size()) {
+                continue;
+            }
+            examined++;
+            if (hosts.get(position).isSuitableForVm(vm)) {
+                final double score = cache.scoreAt(position);
+                if (best < 0 || score < bestScore || (score == bestScore && position < best)) {
+                    best = position;
+                    bestScore = score;
+                }
+            }
+        }
+        int sampled = 0;
+        for (int draw = 0; draw < sampleSize * DRAWS_PER_SAMPLE && sampled < sampleSize; draw++) {
+            final int position = sampleRandom.nextInt(hosts.size());
+            examined++;
+            if (!hosts.get(position).isSuitableForVm(vm)) {
+                continue;
+            }
+            sampled++;
+            final double score = cache.scoreAt(position);
+            if (best < 0 || score < bestScore || (score == bestScore && position < best)) {
+                best = position;
+                bestScore = score;
+            }
+        }
+
+        recordHostsExamined(examined);
+        final PlacementStats stats = getPlacementStats();
+        if (stats != null) {
+            stats.recordSampledDecision(best < 0);
+        }
+        if (best < 0) {
+            return findExact(vm);
+        }
+        rememberBest(best);
+        return Optional.of(hosts.get(best));
+    }
+
+    private void rememberBest(final int position) {
+        for (int recent : recentBest) {
+            if (recent == position) {
+                return;
+            }
+        }
+        recentBest[nextRecentBest] = position;
+        nextRecentBest = (nextRecentBest + 1) % RECENT_BEST_HOSTS;
+    }
+
+    private Optional<Host> findExact(final Vm vm) {
+        final LinearScore linearScore = arrayScoring == ArrayScoring.OFF ? null : linearScore();
+        if (linearScore != null) {
+            final HostScoreArrays arrays = scoreArrays(linearScore);
+            arrays.updateRegionValues(this::regionValue);
+            recordHostsExamined(arrays.hostCount());
+            final int best = arrays.findBest(vm);
+            return best < 0 ? Optional.empty() : Optional.of(getHostList().get(best));
+        }
+
+        if (indexedPlacement) {
+            final HostPlacementIndex index = hostIndex();
+            final Optional<Host> best = index.findBest(vm, this::regionValue, this::score);
+            recordHostsExamined(index.lastExamined());
+            return best;
+        }
+
+        final List<Host> hosts = getHostList();
+        final HostScoreCache cache = scoreCache();
+        cache.updateRegionValues(this::regionValue);
+        recordHostsExamined(hosts.size());
+        Host best = null;
+        double bestScore = 0.0;
+        for (int i = 0; i < hosts.size(); i++) {
+            final Host host = hosts.get(i);
+            if (!host.isSuitableForVm(vm)) {
+                continue;
+            }
+            final double score = cache.scoreAt(i);
+            if (best == null || score < bestScore) {
+                best = host;
+                bestScore = score;
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    /**
+     * Scores every host once for the batch.
+     */
+    @Override
+    protected double[] batchScores(final List<Host> hosts) {
+        final HostScoreCache cache = scoreCache();
+        cache.updateRegionValues(this::regionValue);
+        final double[] scores = new double[hosts.size()];
+        for (int i = 0; i < scores.length; i++) {
+            final int position = cache.position(hosts.get(i));
+            scores[i] = position >= 0 ? cache.scoreAt(position) : score(hosts.get(i));
+        }
+        return scores;
+    }
+
+    @Override
+    protected BatchPlanner.Strategy packingStrategy() {
+        return BatchPlanner.Strategy.BEST_FIT_DECREASING;
+    }
+
+    @Override
+    public HostSuitability allocateHostForVm(final Vm vm, final Host host) {
+        final HostSuitability suitability = super.allocateHostForVm(vm, host);
+        if (suitability.fully()) {
+            watchHost(host);
+        }
+        if (hostIndex != null) {
+            hostIndex.refresh(host);
+        }
+        if (scoreCache != null) {
+            scoreCache.invalidate(host);
+        }
+        if (scoreArrays != null) {
+            scoreArrays.refresh(host);
+        }
+        return suitability;
+    }
+
+    @Override
+    public void deallocateHostForVm(final Vm vm) {
+        final Host host = vm.getHost();
+        super.deallocateHostForVm(vm);
+        if (hostIndex != null) {
+            hostIndex.refresh(host);
+        }
+        if (scoreCache != null) {
+            scoreCache.invalidate(host);
+        }
+        if (scoreArrays != null) {
+            scoreArrays.refresh(host);
+        }
+    }
+
+    /**
+     * Also forwards the target's processing updates to the placement structures while it
+     * receives the VM.
+     */
+    @Override
+    void migrationStarted(final Host target) {
+        super.migrationStarted(target);
+        watchHost(target);
+    }
+
+    /**
+     * Starts forwarding the host's processing updates to the placement structures. Watching a
+     * host twice has no effect.
+     */
+    private void watchHost(final Host host) {
+        host.addOnUpdateProcessingListener(processingListener);
+    }
+
+    private void processingUpdated(final Host host) {
+        if (hostIndex != null) {
+            hostIndex.refresh(host);
+        }
+        if (scoreCache != null) {
+            scoreCache.processingUpdated(host);
+        }
+        if (scoreArrays != null) {
+            scoreArrays.refresh(host);
+        }
+    }
+
+    /**
+     * Current score of a host, comparable with the scores of other policy instances configured
+     * the same way.
+     */
+    double score(final Host host) {
+        return score(HostPlacementIndex.utilization(host), regionValue(regionOf(host)), powerCurveOf(host));
+    }
+
+    private HostScoreCache scoreCache() {
+        if (scoreCache == null || scoreCache.hostCount() != getHostList().size()) {
+            scoreCache = new HostScoreCache(
+                    getHostList(),
+                    this::regionOf,
+                    this::powerCurveOf,
+                    this::score,
+                    this::getPlacementStats
+            );
+        }
+        return scoreCache;
+    }
+
+    private HostScoreArrays scoreArrays(final LinearScore linearScore) {
+        if (scoreArrays == null || scoreArrays.hostCount() != getHostList().size()) {
+            scoreArrays = new HostScoreArrays(
+                    getHostList(),
+                    this::regionOf,
+                    this::powerCurveOf,
+                    linearScore,
+                    arrayScoring == ArrayScoring.VECTOR
+            );
+        }
+        return scoreArrays;
+    }
+
+    private HostPlacementIndex hostIndex() {
+        if (hostIndex == null || hostIndex.hostCount() != getHostList().size()) {
+            hostIndex = new HostPlacementIndex(getHostList(), this::regionOf, this::powerCurveOf);
+        }
+        return hostIndex;
+    }
+
+    /**
+     * Whether single placements score the fleet from a {@link HostScoreArrays} mirror.
+     * {@code VECTOR} runs the scalar loop when the JVM lacks the Vector API module.
+     */
+    public enum ArrayScoring {
+        OFF,
+        SCALAR,
+        VECTOR
+    }
+
+    /**
+     * A score of the form
+     * {@code utilizationWeight * u + powerWeight * (watts / powerScale) + regionWeight * (regionValue / regionScale)},
+     * evaluated in that order so that vectorized and scalar code agree exactly.
+     */
+    public static final class LinearScore {
+
+        private final double utilizationWeight;
+        private final double powerWeight;
+        private final double powerScale;
+        private final double regionWeight;
+        private final double regionScale;
+
+        public LinearScore(
+                final double utilizationWeight,
+                final double powerWeight,
+                final double powerScale,
+                final double regionWeight,
+                final double regionScale) {
+            this.utilizationWeight = utilizationWeight;
+            this.powerWeight = powerWeight;
+            this.powerScale = powerScale;
+            this.regionWeight = regionWeight;
+            this.regionScale = regionScale;
+        }
+
+        public double score(final double utilization, final double watts, final double regionValue) {
+            return utilizationWeight * utilization
+                    + powerWeight * (watts / powerScale)
+                    + regionWeight * (regionValue / regionScale);
+        }
+
+        public double utilizationWeight() {
+            return utilizationWeight;
+        }
+
+        public double powerWeight() {
+            return powerWeight;
+        }
+
+        public double powerScale() {
+            return powerScale;
+        }
+
+        public double regionWeight() {
+            return regionWeight;
+        }
+
+        public double regionScale() {
+            return regionScale;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+import org.cloudsimplus.brokers.DatacenterBroker;
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.core.CloudSimEntity;
+import org.cloudsimplus.core.CloudSimTag;
+import org.cloudsimplus.core.events.SimEvent;
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Holds deferrable cloudlets back from the broker and releases each one in the
+ * lowest-intensity window before its deadline.
+ *
+ * <p>Time is divided into steps of {@code stepSeconds}. When a deferrable cloudlet's VM
+ * has been placed, the cloudlet joins a queue for its host's region, ordered by the last
+ * step it can start in and still meet its deadline. The intensity forecast of a region
+ * is read from the provider once per step and, for every step, the next step with a
+ * strictly lower intensity is precomputed. A cloudlet is released at the first step
+ * whose intensity is the lowest of its remaining window, i.e. once that next lower step
+ * is past its last start step, so each wake-up only pops the released cloudlets off the
+ * front of each region's queue.</p>
+ *
+ * <p>The forecast is taken from {@link CarbonIntensityProvider#getIntensityGco2PerKwh(String, double)};
+ * providers without history report the same value at every step, and cloudlets are then
+ * released as soon as their VM is placed.</p>
+ *
+ * <p>A VM waiting for a held cloudlet keeps its host on, so the saving is reported net of
+ * the idle power the wait costs; see {@link #getCarbonSavedKg()}. The broker should only
+ * destroy idle VMs that are not {@linkplain #isHolding(Vm) held for}.</p>
+ */
+public final class TemporalShiftScheduler extends CloudSimEntity {
+
+    private static final Comparator<Pending> DEADLINE_ORDER = Comparator
+            .comparingInt((Pending pending) -> pending.lastStartStep)
+            .thenComparingLong(pending -> pending.sequence);
+
+    private final DatacenterBroker broker;
+    private final HostMetadata hostMetadata;
+    private final CarbonIntensityProvider carbonIntensityProvider;
+    private final IntensityProfile intensityProfile;
+    private final double stepSeconds;
+    private final Map<Vm, Integer> heldByVm = new IdentityHashMap<>();
+    private final Deque<Pending> unplaced = new ArrayDeque<>();
+    private final List<PriorityQueue<Pending>> queuedByRegion = new ArrayList<>();
+    private final double[][] forecastByRegion;
+    private final int[][] nextLowerByRegion;
+    private int forecastSteps;
+    private long sequence;
+    private boolean wakeUpScheduled;
+
+    private long deferredCloudlets;
+    private long releasedCloudlets;
+    private double delaySeconds;
+    private double slackSeconds;
+    private double carbonSavedKg;
+
+    /**
+     * Registers the scheduler with the broker's simulation; create it before the simulation starts.
+     */
+    public TemporalShiftScheduler(
+            final DatacenterBroker broker,
+            final HostMetadata hostMetadata,
+            final CarbonIntensityProvider carbonIntensityProvider,
+            final IntensityProfile intensityProfile,
+            final double stepSeconds) {
+        super(broker.getSimulation());
+        if (stepSeconds <= 0.0) {
+            throw new IllegalArgumentException("stepSeconds must be positive: " + stepSeconds);
+        }
+        this.broker = broker;
+        this.hostMetadata = hostMetadata;
+        this.carbonIntensityProvider = carbonIntensityProvider;
+        this.intensityProfile = intensityProfile;
+        this.stepSeconds = stepSeconds;
+        this.forecastByRegion = new double[hostMetadata.regionCount()][0];
+        this.nextLowerByRegion = new int[hostMetadata.regionCount()][0];
+        for (int region = 0; region < hostMetadata.regionCount(); region++) {
+            queuedByRegion.add(new PriorityQueue<>(DEADLINE_ORDER));
+        }
+    }
+
+    /**
+     * Holds a cloudlet bound to a VM until the best window before {@code deadlineSeconds}, the
+     * simulation time by which it should have finished. The cloudlet must not be submitted to the
+     * broker; the scheduler submits it on release.
+     */
+    public void defer(final Cloudlet cloudlet, final double deadlineSeconds) {
+        if (cloudlet.getVm() == Vm.NULL) {
+            throw new IllegalArgumentException("Cloudlet " + cloudlet.getId() + " is not bound to a VM.");
+        }
+
+        final double now = getSimulation().clock();
+        final double lastStart = Math.max(now, deadlineSeconds - expectedRuntime(cloudlet));
+        unplaced.add(new Pending(cloudlet, now, lastStart, step(lastStart), sequence++));
+        heldByVm.merge(cloudlet.getVm(), 1, Integer::sum);
+        deferredCloudlets++;
+        if (isStarted()) {
+            scheduleWakeUp(0.0);
+        }
+    }
+
+    @Override
+    protected void startInternal() {
+        if (!unplaced.isEmpty()) {
+            scheduleWakeUp(0.0);
+        }
+    }
+
+    @Override
+    public void processEvent(final SimEvent event) {
+        if (event.getTag() != CloudSimTag.NONE) {
+            return;
+        }
+
+        wakeUpScheduled = false;
+        final double now = getSimulation().clock();
+        final List<Cloudlet> released = new ArrayList<>();
+        queuePlaced(now, released);
+        releaseBest(now, released);
+        if (!released.isEmpty()) {
+            broker.submitCloudletList(released);
+        }
+
+        if (!unplaced.isEmpty()) {
+            // VMs are created shortly after they are submitted; look again as soon as possible.
+            scheduleWakeUp(getSimulation().getMinTimeBetweenEvents());
+        } else if (hasQueued()) {
+            scheduleWakeUp((step(now) + 1) * stepSeconds - now);
+        }
+    }
+
+    public long getDeferredCloudlets() {
+        return deferredCloudlets;
+    }
+
+    public long getReleasedCloudlets() {
+        return releasedCloudlets;
+    }
+
+    /**
+     * Whether a cloudlet bound to the VM is still held back.
+     */
+    public boolean isHolding(final Vm vm) {
+        return heldByVm.containsKey(vm);
+    }
+
+    /**
+     * Estimated carbon avoided by running released cloudlets when they were released rather than
+     * when they were deferred: their dynamic energy times the drop in their region's mean
+     * intensity over their runtime, less the carbon of the host's idle power while they were held,
+     * shared out by the PEs of the VMs the host held when theirs was placed. Negative when waiting
+     * cost more than the better window saved.
+     */
+    public double getCarbonSavedKg() {
+        return carbonSavedKg;
+    }
+
+    /**
+     * Delay of released cloudlets as a percentage of the slack their deadlines allowed.
+     */
+    public double getSlackUsedPercent() {
+        return slackSeconds <= 0.0 ? 0.0 : delaySeconds * 100.0 / slackSeconds;
+    }
+
+    public double getMeanDelaySeconds() {
+        return releasedCloudlets == 0 ? 0.0 : delaySeconds / releasedCloudlets;
+    }
+
+    /**
+     * Moves cloudlets whose VM has been placed into their region's queue. Cloudlets whose VM
+     * could not be placed are handed to the broker right away, which leaves them unfinished.
+     */
+    private void queuePlaced(final double now, final List<Cloudlet> released) {
+        for (int i = unplaced.size(); i > 0; i--) {
+            final Pending pending = unplaced.poll();
+            final Vm vm = pending.cloudlet.getVm();
+            if (vm.isFailed()) {
+                release(pending, now, released);
+                continue;
+            }
+            final Host host = vm.getHost();
+            if (host == Host.NULL) {
+                unplaced.add(pending);
+                continue;
+            }
+
+            pending.region = hostMetadata.regionId(host);
+            pending.hostPes = Math.max(1, host.getWorkingPesNumber());
+            pending.idleShare = Math.min(
+                    1.0,
+                    pending.cloudlet.getPesNumber() / (double) Math.max(1, host.getBusyPesNumber())
+            );
+            pending.powerCurve = hostMetadata.powerCurve(host, PowerCurve.DEFAULT);
+            ensureForecast(pending.lastStartStep);
+            queuedByRegion.get(pending.region).add(pending);
+        }
+    }
+
+    /**
+     * Releases every queued cloudlet for which the current step is the lowest-intensity step left
+     * in its window, and every cloudlet whose last start step has been reached.
+     */
+    private void releaseBest(final double now, final List<Cloudlet> released) {
+        final int currentStep = step(now);
+        for (int region = 0; region < queuedByRegion.size(); region++) {
+            final PriorityQueue<Pending> queue = queuedByRegion.get(region);
+            if (queue.isEmpty()) {
+                continue;
+            }
+
+            final int nextLower = currentStep < forecastSteps
+                    ? nextLowerByRegion[region][currentStep]
+                    : Integer.MAX_VALUE;
+            while (!queue.isEmpty() && queue.peek().lastStartStep < nextLower) {
+                release(queue.poll(), now, released);
+            }
+        }
+    }
+
+    private void release(final Pending pending, final double now, final List<Cloudlet> released) {
+        released.add(pending.cloudlet);
+        heldByVm.computeIfPresent(pending.cloudlet.getVm(), (vm, held) -> held == 1 ? null : held - 1);
+        releasedCloudlets++;
+        delaySeconds += now - pending.deferredAt;
+        slackSeconds += pending.lastStart - pending.deferredAt;
+        if (pending.region >= 0) {
+            final double runtime = expectedRuntime(pending.cloudlet);
+            final double dynamicKwh = ResultsLogger.dynamicEnergyKwh(
+                    runtime * pending.cloudlet.getPesNumber(),
+                    pending.hostPes,
+                    pending.powerCurve
+            );
+            final double deferredAt = pending.deferredAt;
+            final double idleKwh = pending.powerCurve.watts(0.0) * pending.idleShare * (now - deferredAt) / 3_600_000.0;
+            carbonSavedKg += intensityProfile.carbonKg(pending.region, dynamicKwh, deferredAt, deferredAt + runtime)
+                    - intensityProfile.carbonKg(pending.region, dynamicKwh, now, now + runtime)
+                    - intensityProfile.carbonKg(pending.region, idleKwh, deferredAt, now);
+        }
+    }
+
+    /**
+     * Extends the per-region forecast to cover {@code lastStep}, doubling its length, and recomputes
+     * the next strictly lower step of every step with a monotonic stack.
+     */
+    private void ensureForecast(final int lastStep) {
+        if (lastStep < forecastSteps) {
+            return;
+        }
+
+        final int steps = Math.max(lastStep + 1, Math.max(16, forecastSteps * 2));
+        for (int region = 0; region < forecastByRegion.length; region++) {
+            final double[] forecast = Arrays.copyOf(forecastByRegion[region], steps);
+            for (int step = forecastSteps; step < steps; step++) {
+                forecast[step] = carbonIntensityProvider.getIntensityGco2PerKwh(
+                        hostMetadata.regionName(region),
+                        step * stepSeconds
+                );
+            }
+
+            final int[] nextLower = new int[steps];
+            final int[] stack = new int[steps];
+            int depth = 0;
+            for (int step = steps - 1; step >= 0; step--) {
+                while (depth > 0 && forecast[stack[depth - 1]] >= forecast[step]) {
+                    depth--;
+                }
+                nextLower[step] = depth == 0 ? Integer.MAX_VALUE : stack[depth - 1];
+                stack[depth++] = step;
+            }
+
+            forecastByRegion[region] = forecast;
+            nextLowerByRegion[region] = nextLower;
+        }
+        forecastSteps = steps;
+    }
+
+    private boolean hasQueued() {
+        for (PriorityQueue<Pending> queue : queuedByRegion) {
+            if (!queue.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scheduleWakeUp(final double delay) {
+        if (!wakeUpScheduled) {
+            wakeUpScheduled = true;
+            schedule(delay, CloudSimTag.NONE);
+        }
+    }
+
+    private int step(final double time) {
+        return (int) Math.min(Integer.MAX_VALUE - 1, Math.floor(time / stepSeconds));
+    }
+
+    /**
+     * Seconds the cloudlet takes on its VM at full speed.
+     */
+    private static double expectedRuntime(final Cloudlet cloudlet) {
+        final double mips = cloudlet.getVm().getMips();
+        return mips <= 0.0 ? 0.0 : cloudlet.getLength() / mips;
+    }
+
+    private static final class Pending {
+        private final Cloudlet cloudlet;
+        private final double deferredAt;
+        private final double lastStart;
+        private final int lastStartStep;
+        private final long sequence;
+        private int region = -1;
+        private int hostPes = 1;
+        private double idleShare;
+        private PowerCurve powerCurve = PowerCurve.DEFAULT;
+
+        private Pending(
+                final Cloudlet cloudlet,
+                final double deferredAt,
+                final double lastStart,
+                final int lastStartStep,
+                final long sequence) {
+            this.cloudlet = cloudlet;
+            this.deferredAt = deferredAt;
+            this.lastStart = lastStart;
+            this.lastStartStep = lastStartStep;
+            this.sequence = sequence;
+        }
+    }
+}
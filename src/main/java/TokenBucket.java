@@ -0,0 +1,72 @@
+/**
+ * Token-bucket rate limiter: {@code ratePerSecond} tokens are added continuously up to
+ * {@code burst}, and each request takes one.
+ *
+ * <p>{@link #reserve()} never refuses. It takes a token even if the bucket is empty and
+ * returns how long the caller must wait before using it, so callers can schedule the request
+ * instead of blocking a thread, and queued requests keep their order. {@link #tryAcquire()}
+ * is the refusing variant for callers that would rather drop the request.</p>
+ */
+public final class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double burst;
+    private double tokens;
+    private long lastRefillNanos;
+    private long delayed;
+
+    public TokenBucket(final double ratePerSecond, final int burst) {
+        if (!(ratePerSecond > 0.0) || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be positive.");
+        }
+        this.tokensPerNano = ratePerSecond / 1_000_000_000.0;
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes a token and returns the nanoseconds until it may be used; 0 if it is available now.
+     */
+    public synchronized long reserve() {
+        refill();
+        tokens -= 1.0;
+        if (tokens >= 0.0) {
+            return 0L;
+        }
+        delayed++;
+        return (long) Math.ceil(-tokens / tokensPerNano);
+    }
+
+    /**
+     * Takes a token if one is available now.
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1.0) {
+            return false;
+        }
+        tokens -= 1.0;
+        return true;
+    }
+
+    /**
+     * Most requests let through at once.
+     */
+    public int getBurst() {
+        return (int) burst;
+    }
+
+    /**
+     * Reservations that had to wait for their token.
+     */
+    public synchronized long getDelayedCount() {
+        return delayed;
+    }
+
+    private void refill() {
+        final long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,306 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays historical carbon intensity from a memory-mapped trace file.
+ *
+ * <p>The binary trace holds one fixed-step series of float32 samples per zone.
+ * It starts with a header (magic, version, zone count, step seconds, start epoch
+ * seconds, samples per zone) followed by the zone names; the series are stored
+ * zone after zone. Each series is mapped on its own, so a lookup is one index
+ * computation and one read, and only the pages touched end up in memory.</p>
+ *
+ * <p>Traces are converted once from CSV rows of {@code timestamp,zone,intensity}
+ * (ISO-8601 or epoch seconds); see {@link #convertCsv(Path, Path, int)}.</p>
+ */
+public class TraceCarbonIntensityProvider implements CarbonIntensityProvider {
+
+    private static final int MAGIC = 0x43495452; // "CITR"
+    private static final int VERSION = 1;
+    private static final int SAMPLE_BYTES = Float.BYTES;
+
+    private final Map<String, MappedByteBuffer> seriesByZone;
+    private final int stepSeconds;
+    private final int samplesPerZone;
+    private final long traceStartEpochSeconds;
+    private final long simulationStartOffsetSeconds;
+    private final double fallbackIntensity;
+
+    private TraceCarbonIntensityProvider(
+            final Map<String, MappedByteBuffer> seriesByZone,
+            final int stepSeconds,
+            final int samplesPerZone,
+            final long traceStartEpochSeconds,
+            final long simulationStartOffsetSeconds,
+            final double fallbackIntensity) {
+        this.seriesByZone = seriesByZone;
+        this.stepSeconds = stepSeconds;
+        this.samplesPerZone = samplesPerZone;
+        this.traceStartEpochSeconds = traceStartEpochSeconds;
+        this.simulationStartOffsetSeconds = simulationStartOffsetSeconds;
+        this.fallbackIntensity = fallbackIntensity;
+    }
+
+    /**
+     * Opens a binary trace, or a CSV trace that is converted to {@code <csv>.citrace}
+     * next to it unless an up-to-date conversion already exists.
+     *
+     * @param simulationStart instant that simulation time 0 maps to; null for the start of the trace
+     */
+    public static TraceCarbonIntensityProvider open(
+            final Path trace,
+            final Instant simulationStart,
+            final double fallbackIntensity) {
+        try {
+            Path binary = trace;
+            if (trace.getFileName().toString().toLowerCase().endsWith(".csv")) {
+                binary = trace.resolveSibling(trace.getFileName() + ".citrace");
+                if (!Files.exists(binary)
+                        || Files.getLastModifiedTime(binary).compareTo(Files.getLastModifiedTime(trace)) < 0) {
+                    convertCsv(trace, binary, 300);
+                }
+            }
+            return map(binary, simulationStart, fallbackIntensity);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open carbon intensity trace " + trace + ".", e);
+        }
+    }
+
+    @Override
+    public double getIntensityGco2PerKwh(final String region) {
+        return getIntensityGco2PerKwh(region, 0.0);
+    }
+
+    @Override
+    public double getIntensityGco2PerKwh(final String region, final double simulationTimeSeconds) {
+        final MappedByteBuffer series = seriesByZone.get(region);
+        if (series == null) {
+            return fallbackIntensity;
+        }
+
+        final long index = (simulationStartOffsetSeconds + (long) Math.floor(simulationTimeSeconds)) / stepSeconds;
+        final int sample = (int) Math.max(0, Math.min(samplesPerZone - 1, index));
+        final float intensity = series.getFloat(sample * SAMPLE_BYTES);
+        return Float.isNaN(intensity) ? fallbackIntensity : intensity;
+    }
+
+    public Instant getTraceStart() {
+        return Instant.ofEpochSecond(traceStartEpochSeconds);
+    }
+
+    /**
+     * Seconds between samples; intensity is constant within a step.
+     */
+    public int getStepSeconds() {
+        return stepSeconds;
+    }
+
+    /**
+     * Converts a CSV trace into the binary format with the given sample step.
+     * Rows are bucketed into steps (last row wins), gaps are forward-filled and
+     * leading gaps keep NaN, which lookups answer with the fallback intensity.
+     * The CSV is read twice and the output is written through a mapping, so
+     * conversion does not hold the trace on the heap.
+     */
+    public static void convertCsv(final Path csv, final Path binary, final int stepSeconds) throws IOException {
+        if (stepSeconds <= 0) {
+            throw new IllegalArgumentException("stepSeconds must be positive: " + stepSeconds);
+        }
+
+        // Pass 1: zones and time range.
+        final Map<String, Integer> zoneIndex = new LinkedHashMap<>();
+        long minEpoch = Long.MAX_VALUE;
+        long maxEpoch = Long.MIN_VALUE;
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = splitRow(line);
+                if (fields == null) {
+                    continue;
+                }
+                final long epoch = parseEpochSeconds(fields[0]);
+                zoneIndex.putIfAbsent(fields[1], zoneIndex.size());
+                minEpoch = Math.min(minEpoch, epoch);
+                maxEpoch = Math.max(maxEpoch, epoch);
+            }
+        }
+        if (zoneIndex.isEmpty()) {
+            throw new IOException("No intensity rows in " + csv + ".");
+        }
+
+        final long start = Math.floorDiv(minEpoch, stepSeconds) * stepSeconds;
+        final long samples = (maxEpoch - start) / stepSeconds + 1;
+        if (samples * SAMPLE_BYTES > Integer.MAX_VALUE) {
+            throw new IOException("Trace series too long for one mapping: " + samples + " samples.");
+        }
+
+        final byte[][] names = new byte[zoneIndex.size()][];
+        int headerBytes = 4 + 4 + 4 + 4 + 8 + 4;
+        for (Map.Entry<String, Integer> zone : zoneIndex.entrySet()) {
+            names[zone.getValue()] = zone.getKey().getBytes(StandardCharsets.UTF_8);
+            headerBytes += 2 + names[zone.getValue()].length;
+        }
+        final long seriesBytes = samples * SAMPLE_BYTES;
+
+        try (FileChannel channel = FileChannel.open(
+                binary,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            final ByteBuffer header = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(names.length)
+                    .putInt(stepSeconds)
+                    .putLong(start)
+                    .putInt((int) samples);
+            for (byte[] name : names) {
+                header.putShort((short) name.length).put(name);
+            }
+            header.flip();
+            channel.write(header, 0);
+
+            final List<MappedByteBuffer> series = new ArrayList<>();
+            for (int zone = 0; zone < names.length; zone++) {
+                final MappedByteBuffer buffer = channel.map(
+                        FileChannel.MapMode.READ_WRITE,
+                        headerBytes + zone * seriesBytes,
+                        seriesBytes
+                );
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < samples; i++) {
+                    buffer.putFloat(i * SAMPLE_BYTES, Float.NaN);
+                }
+                series.add(buffer);
+            }
+
+            // Pass 2: samples.
+            try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final String[] fields = splitRow(line);
+                    if (fields == null) {
+                        continue;
+                    }
+                    final int sample = (int) ((parseEpochSeconds(fields[0]) - start) / stepSeconds);
+                    series.get(zoneIndex.get(fields[1]))
+                            .putFloat(sample * SAMPLE_BYTES, Float.parseFloat(fields[2]));
+                }
+            }
+
+            for (MappedByteBuffer buffer : series) {
+                float last = Float.NaN;
+                for (int i = 0; i < samples; i++) {
+                    final float value = buffer.getFloat(i * SAMPLE_BYTES);
+                    if (Float.isNaN(value)) {
+                        buffer.putFloat(i * SAMPLE_BYTES, last);
+                    } else {
+                        last = value;
+                    }
+                }
+                buffer.force();
+            }
+        }
+    }
+
+    private static TraceCarbonIntensityProvider map(
+            final Path binary,
+            final Instant simulationStart,
+            final double fallbackIntensity) throws IOException {
+        try (FileChannel channel = FileChannel.open(binary, StandardOpenOption.READ)) {
+            final ByteBuffer fixed = ByteBuffer.allocate(28).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(fixed, 0);
+            fixed.flip();
+            if (fixed.remaining() < 28 || fixed.getInt() != MAGIC || fixed.getInt() != VERSION) {
+                throw new IOException("Not a carbon intensity trace: " + binary + ".");
+            }
+            final int zoneCount = fixed.getInt();
+            final int stepSeconds = fixed.getInt();
+            final long startEpoch = fixed.getLong();
+            final int samples = fixed.getInt();
+
+            final MappedByteBuffer names = channel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    28,
+                    Math.min(channel.size() - 28, zoneCount * (2L + Short.MAX_VALUE))
+            );
+            names.order(ByteOrder.LITTLE_ENDIAN);
+            final List<String> zones = new ArrayList<>(zoneCount);
+            for (int i = 0; i < zoneCount; i++) {
+                final byte[] name = new byte[names.getShort()];
+                names.get(name);
+                zones.add(new String(name, StandardCharsets.UTF_8));
+            }
+
+            final long dataStart = 28L + names.position();
+            final long seriesBytes = (long) samples * SAMPLE_BYTES;
+            final Map<String, MappedByteBuffer> seriesByZone = new HashMap<>();
+            for (int i = 0; i < zoneCount; i++) {
+                final MappedByteBuffer series = channel.map(
+                        FileChannel.MapMode.READ_ONLY,
+                        dataStart + i * seriesBytes,
+                        seriesBytes
+                );
+                series.order(ByteOrder.LITTLE_ENDIAN);
+                seriesByZone.put(zones.get(i), series);
+            }
+
+            final long offset = simulationStart == null
+                    ? 0L
+                    : Math.max(0L, simulationStart.getEpochSecond() - startEpoch);
+            return new TraceCarbonIntensityProvider(
+                    seriesByZone,
+                    stepSeconds,
+                    samples,
+                    startEpoch,
+                    offset,
+                    fallbackIntensity
+            );
+        }
+    }
+
+    /**
+     * Returns {@code [timestamp, zone, intensity]}, or null for blank, header and incomplete rows.
+     */
+    private static String[] splitRow(final String line) {
+        final String[] fields = line.split(",");
+        if (fields.length < 3 || fields[2].isBlank()) {
+            return null;
+        }
+        for (int i = 0; i < 3; i++) {
+            fields[i] = fields[i].trim();
+        }
+        if (fields[0].isEmpty() || !Character.isDigit(fields[0].charAt(0)) || fields[1].isEmpty()) {
+            return null;
+        }
+        return fields;
+    }
+
+    private static long parseEpochSeconds(final String timestamp) {
+        if (timestamp.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(timestamp);
+        }
+        try {
+            return Instant.parse(timestamp).getEpochSecond();
+        } catch (DateTimeParseException e) {
+            return OffsetDateTime.parse(timestamp).toEpochSecond();
+        }
+    }
+}
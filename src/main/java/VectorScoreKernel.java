@@ -0,0 +1,107 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link HostScoreArrays} pass with the JDK Vector API, a full vector of hosts per step at
+ * the widest shape the CPU supports.
+ *
+ * <p>The score is the {@link ScoredVmAllocationPolicy.LinearScore} formula with the same
+ * operations in the same order, so every lane equals the scalar score bit for bit and the
+ * selected host does not depend on the kernel. The capacity test is four lane-wise compares
+ * combined into one mask; masked-out lanes are blended to +infinity before the running
+ * minimum. The tail shorter than a vector is done in scalar code.</p>
+ *
+ * <p>Only loaded when {@link HostScoreArrays#VECTOR_API_AVAILABLE}.</p>
+ */
+final class VectorScoreKernel implements HostScoreArrays.Kernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public String name() {
+        return "SIMD " + SPECIES.vectorBitSize() + "-bit x" + SPECIES.length();
+    }
+
+    @Override
+    public double scoreAll(
+            final HostScoreArrays arrays,
+            final ScoredVmAllocationPolicy.LinearScore linearScore,
+            final double requestedMips,
+            final double requestedPes,
+            final double requestedRam,
+            final double requestedBw) {
+        final double[] scores = arrays.scores;
+        final int length = scores.length;
+        final int bound = SPECIES.loopBound(length);
+        final DoubleVector infinity = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        final DoubleVector utilizationWeight = DoubleVector.broadcast(SPECIES, linearScore.utilizationWeight());
+        final DoubleVector powerWeight = DoubleVector.broadcast(SPECIES, linearScore.powerWeight());
+        final DoubleVector powerScale = DoubleVector.broadcast(SPECIES, linearScore.powerScale());
+        final DoubleVector regionWeight = DoubleVector.broadcast(SPECIES, linearScore.regionWeight());
+        final DoubleVector regionScale = DoubleVector.broadcast(SPECIES, linearScore.regionScale());
+
+        DoubleVector min = infinity;
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            final VectorMask<Double> fits = DoubleVector.fromArray(SPECIES, arrays.freeMips, i)
+                    .compare(VectorOperators.GE, requestedMips)
+                    .and(DoubleVector.fromArray(SPECIES, arrays.workingPes, i).compare(VectorOperators.GE, requestedPes))
+                    .and(DoubleVector.fromArray(SPECIES, arrays.freeRam, i).compare(VectorOperators.GE, requestedRam))
+                    .and(DoubleVector.fromArray(SPECIES, arrays.freeBw, i).compare(VectorOperators.GE, requestedBw));
+            final DoubleVector score = utilizationWeight.mul(DoubleVector.fromArray(SPECIES, arrays.utilization, i))
+                    .add(powerWeight.mul(DoubleVector.fromArray(SPECIES, arrays.watts, i).div(powerScale)))
+                    .add(regionWeight.mul(DoubleVector.fromArray(SPECIES, arrays.regionValue, i).div(regionScale)));
+            final DoubleVector masked = infinity.blend(score, fits);
+            masked.intoArray(scores, i);
+            min = min.min(masked);
+        }
+
+        double result = min.reduceLanes(VectorOperators.MIN);
+        for (; i < length; i++) {
+            final boolean fits = arrays.freeMips[i] >= requestedMips
+                    && arrays.workingPes[i] >= requestedPes
+                    && arrays.freeRam[i] >= requestedRam
+                    && arrays.freeBw[i] >= requestedBw;
+            scores[i] = fits
+                    ? linearScore.score(arrays.utilization[i], arrays.watts[i], arrays.regionValue[i])
+                    : Double.POSITIVE_INFINITY;
+            result = Math.min(result, scores[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public int firstIndexOf(final double[] values, final int length, final double value) {
+        final int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            final VectorMask<Double> equal = DoubleVector.fromArray(SPECIES, values, i).compare(VectorOperators.EQ, value);
+            if (equal.anyTrue()) {
+                return i + equal.firstTrue();
+            }
+        }
+        for (; i < length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Value " + value + " not found.");
+    }
+
+    @Override
+    public double min(final double[] values, final int length) {
+        final int bound = SPECIES.loopBound(length);
+        DoubleVector min = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            min = min.min(DoubleVector.fromArray(SPECIES, values, i));
+        }
+        double result = min.reduceLanes(VectorOperators.MIN);
+        for (; i < length; i++) {
+            result = Math.min(result, values[i]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,252 @@
+import org.cloudsimplus.brokers.DatacenterBroker;
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.cloudlets.CloudletSimple;
+import org.cloudsimplus.core.CloudSimEntity;
+import org.cloudsimplus.core.CloudSimTag;
+import org.cloudsimplus.core.events.SimEvent;
+import org.cloudsimplus.utilizationmodels.UtilizationModelDynamic;
+import org.cloudsimplus.utilizationmodels.UtilizationModelFull;
+import org.cloudsimplus.vms.Vm;
+import org.cloudsimplus.vms.VmSimple;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Feeds a workload trace to a broker lazily, as the simulation clock advances.
+ *
+ * <p>Each CSV row is one job: {@code arrival_seconds,pes,mips_per_pe,ram_mb,duration_seconds[,cpu_utilization]},
+ * sorted by arrival time, the shape Google/Azure cluster traces reduce to. A job becomes
+ * one VM and one cloudlet bound to it, sized so the cloudlet runs for about its duration
+ * at full speed. A job whose VM cannot be placed on arrival is rejected and its cloudlet
+ * left unfinished, as the broker does not retry failed VM creations.</p>
+ *
+ * <p>The reader is a simulation entity that wakes up at each arrival time, submits every
+ * job that has arrived and schedules itself for the next one. It holds only the next
+ * unsubmitted row and the batch of jobs being submitted, so the trace file never has to
+ * fit in the heap, and the pending wake-up keeps the simulation alive through idle gaps
+ * in the trace. The broker, however, keeps every cloudlet it is given until the run
+ * ends, so a run's heap still grows with the number of jobs in the trace.</p>
+ */
+public final class WorkloadTraceReader extends CloudSimEntity implements AutoCloseable {
+
+    private static final double DEFAULT_UTILIZATION = 0.7;
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private final Path trace;
+    private final BufferedReader reader;
+    private final DatacenterBroker broker;
+    private TraceJob next;
+    private long lineNumber;
+    private long records;
+    private long ingestNanos;
+    private int peakBatchJobs;
+    private long peakHeapBytes;
+
+    /**
+     * Registers the reader with the broker's simulation; create it before the simulation starts.
+     */
+    public WorkloadTraceReader(final Path trace, final DatacenterBroker broker) {
+        super(broker.getSimulation());
+        try {
+            this.trace = trace;
+            this.reader = Files.newBufferedReader(trace, StandardCharsets.UTF_8);
+            this.broker = broker;
+            this.next = readJob();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open workload trace " + trace + ".", e);
+        }
+    }
+
+    @Override
+    protected void startInternal() {
+        scheduleNextArrival();
+    }
+
+    @Override
+    public void processEvent(final SimEvent event) {
+        if (event.getTag() == CloudSimTag.NONE) {
+            submitArrived(getSimulation().clock());
+            scheduleNextArrival();
+        }
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public double getIngestSeconds() {
+        return ingestNanos / 1_000_000_000.0;
+    }
+
+    /**
+     * Records read and submitted per second of time spent parsing and submitting them.
+     */
+    public double getRecordsPerSecond() {
+        return ingestNanos == 0 ? 0.0 : records / getIngestSeconds();
+    }
+
+    /**
+     * Most jobs the reader has held at once: the largest batch of arrivals it submitted together.
+     */
+    public int getPeakBatchJobs() {
+        return peakBatchJobs;
+    }
+
+    /**
+     * Largest used heap of the JVM seen after submitting a batch of arrivals. The heap is
+     * shared by every run in the JVM, so this is the run's own peak only with
+     * EVAL_WORKERS=1; with more workers it also counts the runs going on alongside.
+     */
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    /**
+     * Jobs in the trace: the rows {@link WorkloadTraceReader} would submit, counted without parsing them.
+     */
+    public static long countJobs(final Path trace) {
+        try (BufferedReader lines = Files.newBufferedReader(trace, StandardCharsets.UTF_8)) {
+            long jobs = 0;
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (isJob(line.trim())) {
+                    jobs++;
+                }
+            }
+            return jobs;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read workload trace " + trace + ".", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to close workload trace " + trace + ".", e);
+        }
+    }
+
+    private void scheduleNextArrival() {
+        if (next != null) {
+            schedule(Math.max(0.0, next.arrival - getSimulation().clock()), CloudSimTag.NONE);
+        }
+    }
+
+    /**
+     * Submits every job whose arrival time has been reached, as one batch.
+     */
+    private void submitArrived(final double now) {
+        final long start = System.nanoTime();
+        final List<Vm> vms = new ArrayList<>();
+        final List<Cloudlet> cloudlets = new ArrayList<>();
+        try {
+            while (next != null && next.arrival <= now) {
+                final Vm vm = new VmSimple(next.mipsPerPe, next.pes);
+                vm.setRam(next.ramMb).setBw(1000).setSize(10000);
+
+                final Cloudlet cloudlet = new CloudletSimple(
+                        Math.max(1L, Math.round(next.durationSeconds * next.mipsPerPe)),
+                        next.pes
+                );
+                // Only CPU follows the trace: partial RAM/BW use is not returned to the
+                // host when a VM is destroyed, so it would leak capacity job after job.
+                cloudlet.setUtilizationModelCpu(new UtilizationModelDynamic(next.utilization))
+                        .setUtilizationModelRam(new UtilizationModelFull())
+                        .setUtilizationModelBw(new UtilizationModelFull());
+                cloudlet.setVm(vm);
+
+                vms.add(vm);
+                cloudlets.add(cloudlet);
+                records++;
+                next = readJob();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read workload trace " + trace + ".", e);
+        }
+
+        // Without creation retries a rejected VM never comes back; drop its cloudlet so the
+        // broker stops re-checking it on every later submission.
+        broker.getCloudletWaitingList().removeIf(cloudlet -> cloudlet.getVm().isFailed());
+        if (!vms.isEmpty()) {
+            broker.submitVmList(vms);
+            broker.submitCloudletList(cloudlets);
+        }
+
+        ingestNanos += System.nanoTime() - start;
+        peakBatchJobs = Math.max(peakBatchJobs, vms.size());
+        peakHeapBytes = Math.max(peakHeapBytes, MEMORY.getHeapMemoryUsage().getUsed());
+    }
+
+    /**
+     * Next job in the trace, skipping blank, comment and header lines; null at the end.
+     */
+    private TraceJob readJob() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            final String trimmed = line.trim();
+            if (!isJob(trimmed)) {
+                continue;
+            }
+
+            final String[] fields = trimmed.split(",");
+            if (fields.length < 5) {
+                throw new IOException("Expected at least 5 columns at " + trace + ":" + lineNumber + ".");
+            }
+            try {
+                return new TraceJob(
+                        Double.parseDouble(fields[0].trim()),
+                        Integer.parseInt(fields[1].trim()),
+                        Double.parseDouble(fields[2].trim()),
+                        Long.parseLong(fields[3].trim()),
+                        Double.parseDouble(fields[4].trim()),
+                        fields.length > 5 ? Double.parseDouble(fields[5].trim()) : DEFAULT_UTILIZATION
+                );
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid number at " + trace + ":" + lineNumber + ".", e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether a trimmed line is a job rather than blank, a comment or a header.
+     */
+    private static boolean isJob(final String trimmed) {
+        return !trimmed.isEmpty() && !trimmed.startsWith("#") && Character.isDigit(trimmed.charAt(0));
+    }
+
+    private static final class TraceJob {
+        private final double arrival;
+        private final int pes;
+        private final double mipsPerPe;
+        private final long ramMb;
+        private final double durationSeconds;
+        private final double utilization;
+
+        private TraceJob(
+                final double arrival,
+                final int pes,
+                final double mipsPerPe,
+                final long ramMb,
+                final double durationSeconds,
+                final double utilization) {
+            this.arrival = arrival;
+            this.pes = pes;
+            this.mipsPerPe = mipsPerPe;
+            this.ramMb = ramMb;
+            this.durationSeconds = durationSeconds;
+            this.utilization = utilization;
+        }
+    }
+}